@@ -0,0 +1,84 @@
+package com.starling.roundup.benchmark;
+
+import com.starling.roundup.model.common.Amount;
+import com.starling.roundup.model.response.StarlingFeedItem;
+import com.starling.roundup.model.response.StarlingFeedResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static com.starling.roundup.model.response.TransactionDirection.IN;
+import static com.starling.roundup.model.response.TransactionDirection.OUT;
+
+/**
+ * Builds deterministic synthetic transaction feeds for the benchmarks. Roughly 90% of the items are card
+ * payments going OUT, the rest are incoming payments. {@code foreignPercent} of the items use a non GBP
+ * currency, spread across the currencies in currencyRates.json plus one currency that is not supported.
+ */
+public class SyntheticFeeds {
+
+    public static final LocalDate WEEK_COMMENCING = LocalDate.of(2025, 3, 3);
+
+    private static final String[] FOREIGN_CURRENCIES = {"USD", "EUR", "TND", "JPY"};
+    private static final long SEED = 20250303L;
+
+    public static StarlingFeedResponse feed(int feedSize, int foreignPercent) {
+        Random random = new Random(SEED);
+        ZonedDateTime start = WEEK_COMMENCING.atStartOfDay(ZoneOffset.UTC);
+        List<StarlingFeedItem> items = new ArrayList<>(feedSize);
+        for (int i = 0; i < feedSize; i++) {
+            StarlingFeedItem item = new StarlingFeedItem();
+            item.setTransactionId(new UUID(random.nextLong(), random.nextLong()).toString());
+            item.setAmount(new Amount(currency(random, foreignPercent), 1 + random.nextInt(20_000)));
+            item.setDirection(random.nextInt(10) == 0 ? IN : OUT);
+            item.setTransactionTime(start.plusSeconds(random.nextInt(6 * 24 * 60 * 60)));
+            items.add(item);
+        }
+        StarlingFeedResponse response = new StarlingFeedResponse();
+        response.setFeedItems(items);
+        return response;
+    }
+
+    /**
+     * Serialises the feed in the shape returned by the Starling settled-transactions endpoint, including
+     * fields the service does not map so that deserialisation pays the cost of skipping them.
+     */
+    public static byte[] json(StarlingFeedResponse response) {
+        StringBuilder json = new StringBuilder(response.getFeedItems().size() * 420 + 16);
+        json.append("{\"feedItems\":[");
+        List<StarlingFeedItem> items = response.getFeedItems();
+        for (int i = 0; i < items.size(); i++) {
+            StarlingFeedItem item = items.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"feedItemUid\":\"").append(item.getTransactionId()).append('"')
+                    .append(",\"categoryUid\":\"9b1ff8f6-42c1-4a47-8a2f-46b5f3a3f6a1\"")
+                    .append(",\"amount\":{\"currency\":\"").append(item.getAmount().getCurrency())
+                    .append("\",\"minorUnits\":").append(item.getAmount().getMinorUnits()).append('}')
+                    .append(",\"sourceAmount\":{\"currency\":\"").append(item.getAmount().getCurrency())
+                    .append("\",\"minorUnits\":").append(item.getAmount().getMinorUnits()).append('}')
+                    .append(",\"direction\":\"").append(item.getDirection()).append('"')
+                    .append(",\"updatedAt\":\"").append(item.getTransactionTime()).append('"')
+                    .append(",\"transactionTime\":\"").append(item.getTransactionTime()).append('"')
+                    .append(",\"settlementTime\":\"").append(item.getTransactionTime()).append('"')
+                    .append(",\"source\":\"MASTER_CARD\",\"status\":\"SETTLED\"")
+                    .append(",\"counterPartyType\":\"MERCHANT\",\"counterPartyName\":\"Benchmark Coffee Ltd\"")
+                    .append(",\"reference\":\"BENCHMARK\",\"country\":\"GB\",\"spendingCategory\":\"EATING_OUT\"")
+                    .append(",\"hasAttachment\":false,\"hasReceipt\":false}");
+        }
+        json.append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String currency(Random random, int foreignPercent) {
+        if (random.nextInt(100) >= foreignPercent) {
+            return "GBP";
+        }
+        return FOREIGN_CURRENCIES[random.nextInt(FOREIGN_CURRENCIES.length)];
+    }
+}
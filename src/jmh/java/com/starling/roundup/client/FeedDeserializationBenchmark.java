@@ -0,0 +1,42 @@
+package com.starling.roundup.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.starling.roundup.benchmark.SyntheticFeeds;
+import com.starling.roundup.model.response.StarlingFeedResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a settled-transactions payload into a {@link StarlingFeedResponse}. The mapper is built
+ * the same way as the one used by RestTemplate's Jackson message converter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FeedDeserializationBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int feedSize;
+
+    @Param({"0", "20", "100"})
+    private int foreignPercent;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = SyntheticFeeds.json(SyntheticFeeds.feed(feedSize, foreignPercent));
+    }
+
+    @Benchmark
+    public StarlingFeedResponse deserializeFeed() throws IOException {
+        return objectMapper.readValue(payload, StarlingFeedResponse.class);
+    }
+}
@@ -0,0 +1,42 @@
+package com.starling.roundup.client;
+
+import com.starling.roundup.benchmark.SyntheticFeeds;
+import com.starling.roundup.util.RoundUpAccumulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of computing the round-up straight from a settled-transactions payload with {@link StarlingFeedParser},
+ * to compare with deserialising the feed and then calculating.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class StreamingFeedBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int feedSize;
+
+    @Param({"0", "20", "100"})
+    private int foreignPercent;
+
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = SyntheticFeeds.json(SyntheticFeeds.feed(feedSize, foreignPercent));
+    }
+
+    @Benchmark
+    public long streamRoundUp() throws IOException {
+        RoundUpAccumulator accumulator = new RoundUpAccumulator("benchmark");
+        StarlingFeedParser.parse(new ByteArrayInputStream(payload), accumulator);
+        return accumulator.getTotal();
+    }
+}
@@ -0,0 +1,38 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.benchmark.SyntheticFeeds;
+import com.starling.roundup.model.response.StarlingFeedResponse;
+import com.starling.roundup.util.CurrencyConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the round-up calculation over an already deserialised feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RoundUpCalculationBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int feedSize;
+
+    @Param({"0", "20", "100"})
+    private int foreignPercent;
+
+    private StarlingFeedResponse feed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        feed = SyntheticFeeds.feed(feedSize, foreignPercent);
+    }
+
+    @Benchmark
+    public long calculateRoundUpAmount() {
+        return RoundUpAsyncService.calculateRoundUpAmount("benchmark", CurrencyConverter.currentRates(), feed);
+    }
+}
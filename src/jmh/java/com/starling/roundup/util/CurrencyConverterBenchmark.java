@@ -0,0 +1,42 @@
+package com.starling.roundup.util;
+
+import com.starling.roundup.benchmark.SyntheticFeeds;
+import com.starling.roundup.model.common.Amount;
+import com.starling.roundup.model.response.StarlingFeedItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of converting a single foreign amount to GBP minor units. Each invocation converts a batch of
+ * {@link #BATCH} amounts so the per operation score is the cost of one conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CurrencyConverterBenchmark {
+
+    private static final int BATCH = 1024;
+
+    private Amount[] amounts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<StarlingFeedItem> items = SyntheticFeeds.feed(BATCH, 100).getFeedItems();
+        amounts = items.stream().map(StarlingFeedItem::getAmount).toArray(Amount[]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long convertToGBP() {
+        long total = 0;
+        for (Amount amount : amounts) {
+            total += CurrencyConverter.convertToGBP("benchmark", amount);
+        }
+        return total;
+    }
+}
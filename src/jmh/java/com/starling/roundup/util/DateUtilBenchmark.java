@@ -0,0 +1,36 @@
+package com.starling.roundup.util;
+
+import com.starling.roundup.benchmark.SyntheticFeeds;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the date parameters sent to the Starling API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateUtilBenchmark {
+
+    private final LocalDate weekCommencing = SyntheticFeeds.WEEK_COMMENCING;
+
+    @Benchmark
+    public String toStarlingDateFormat() {
+        return DateUtil.toStarlingDateFormat(weekCommencing);
+    }
+
+    @Benchmark
+    public String toStarlingEndDate() {
+        return DateUtil.toStarlingEndDate(weekCommencing);
+    }
+
+    @Benchmark
+    public String getCurrentDateTime() {
+        return DateUtil.getCurrentDateTime();
+    }
+}
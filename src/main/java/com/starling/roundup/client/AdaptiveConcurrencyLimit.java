@@ -0,0 +1,52 @@
+package com.starling.roundup.client;
+
+/**
+ * Additive increase, multiplicative decrease limit on the calls in flight to one endpoint. The limit grows by one
+ * for each healthy response while it is at least half used, and is cut by the backoff ratio for each response that
+ * was slow, an error or a throttle, so it settles just under the concurrency Starling can serve at normal latency.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private int limit;
+    private int inFlight;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * @param overloaded the call was slower than the endpoint's slow call threshold or failed in a way that points at
+     *                   Starling being overloaded
+     */
+    synchronized void release(boolean overloaded) {
+        if (overloaded) {
+            limit = Math.max(minLimit, (int) (limit * backoffRatio));
+        } else if (inFlight * 2 >= limit) {
+            // Only grow when the limit is actually being used, otherwise an idle endpoint drifts up to the maximum
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        inFlight--;
+    }
+
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,46 @@
+package com.starling.roundup.client;
+
+import java.util.Arrays;
+
+/**
+ * The most recent call latencies of one endpoint, used to pick the hedging delay. The percentile is worked out again
+ * every {@link #RECOMPUTE_EVERY} samples rather than on every read, sorting the window each call would cost more than
+ * the calls it saves.
+ */
+final class LatencyWindow {
+
+    private static final int RECOMPUTE_EVERY = 32;
+    private static final int MIN_SAMPLES = 64;
+
+    private final long[] samples;
+    private final double percentile;
+    private int next;
+    private int count;
+    private int sinceComputed;
+    private long percentileNanos;
+
+    LatencyWindow(int size, double percentile) {
+        this.samples = new long[size];
+        this.percentile = percentile;
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (++sinceComputed >= RECOMPUTE_EVERY) {
+            sinceComputed = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            percentileNanos = sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+
+    /**
+     * @param fallbackNanos returned until the window holds enough samples for the percentile to mean anything
+     */
+    synchronized long percentileNanos(long fallbackNanos) {
+        return count < MIN_SAMPLES ? fallbackNanos : percentileNanos;
+    }
+}
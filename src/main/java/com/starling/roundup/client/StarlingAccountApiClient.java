@@ -27,6 +27,9 @@ public class StarlingAccountApiClient {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private StarlingHedger starlingHedger;
+
     /**
      * Retry logic using Rellience4j, not using fallback method to return a value as can not return old values
      * as data consistency is very important. Also as mentioned in the config, retries do not occur for client
@@ -37,10 +40,10 @@ public class StarlingAccountApiClient {
         String maskedAccountUid = maskSensitiveData(accountUid);
         log.info("Fetching account balance for accountUid: {}", maskedAccountUid);
         try {
-            ResponseEntity<StarlingBalanceResponse> response = restTemplate.exchange(
+            ResponseEntity<StarlingBalanceResponse> response = starlingHedger.call(StarlingEndpoint.BALANCE, () -> restTemplate.exchange(
                     API_BASE_URL + API_ACCOUNT_BALANCE,
                     GET, getHttpEntity(authToken), StarlingBalanceResponse.class,
-                    accountUid);
+                    accountUid));
 
             if (response.getBody() == null) {
                 log.error("Starling API returned null for balance check.");
@@ -53,7 +56,7 @@ public class StarlingAccountApiClient {
             throw new StarlingApiException(e.getStatusCode(), e.getResponseBodyAsString());
         } catch (RestClientException e) {
             log.error("Error fetching balance for accountUid: {} - Exception: {}", maskedAccountUid, e.getMessage());
-            throw new StarlingApiException("An error occurred when calling Starling API balance check: " + e.getMessage());
+            throw new StarlingApiException("An error occurred when calling Starling API balance check: " + e.getMessage(), e);
         }
     }
 
@@ -62,9 +65,9 @@ public class StarlingAccountApiClient {
         String maskedToken = maskSensitiveData(authToken);
         log.info("Fetching account details using Auth Token: {}", maskedToken);
         try {
-            ResponseEntity<StarlingAPIAccountsResponse> response = restTemplate.exchange(
+            ResponseEntity<StarlingAPIAccountsResponse> response = starlingHedger.call(StarlingEndpoint.ACCOUNTS, () -> restTemplate.exchange(
                     API_BASE_URL + API_ACCOUNT_DETAILS,
-                    GET, getHttpEntity(authToken), StarlingAPIAccountsResponse.class);
+                    GET, getHttpEntity(authToken), StarlingAPIAccountsResponse.class));
 
             StarlingAPIAccountsResponse responseBody = response.getBody();
             if (responseBody == null || responseBody.getAccounts() == null || responseBody.getAccounts().isEmpty()) {
@@ -87,7 +90,7 @@ public class StarlingAccountApiClient {
             throw new StarlingApiException(e.getStatusCode(), e.getResponseBodyAsString());
         } catch (RestClientException e) {
             log.error("Error fetching accounts for token: {} - Exception: {}", maskedToken, e.getMessage());
-            throw new StarlingApiException("An error occurred when calling Starling API balance check: " + e.getMessage());
+            throw new StarlingApiException("An error occurred when calling Starling API balance check: " + e.getMessage(), e);
         }
     }
 }
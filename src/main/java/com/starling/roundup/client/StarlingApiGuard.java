@@ -0,0 +1,228 @@
+package com.starling.roundup.client;
+
+import com.starling.roundup.exception.StarlingApiException;
+import com.starling.roundup.exception.StarlingApiLimitExceededException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Client side protection for the Starling API, applied to every call made through the RestTemplate and the reactive
+ * WebClient. Each endpoint has a circuit breaker and a rate limiter, the starling-{endpoint} Resilience4j instances,
+ * and an {@link AdaptiveConcurrencyLimit} that backs off when responses slow down or Starling answers 429 or 5xx.
+ * While the breaker is open calls fail straight away with {@link CallNotPermittedException}, and a call over either
+ * limit fails straight away with {@link StarlingApiLimitExceededException}, instead of queueing, so a slow Starling
+ * is not made slower by our own backlog and retries. Neither is retried.
+ * <p>
+ * Calls are counted from sending the request until the response status arrives, the time spent reading the body
+ * is not part of the latency or the concurrency.
+ */
+@Slf4j
+@Component
+public class StarlingApiGuard implements ClientHttpRequestInterceptor {
+
+    // Values of the status tag of starling.client.requests, 429 is kept apart from the other 4xx as it means Starling is overloaded
+    private static final String[] STATUS_GROUPS = {"1xx", "2xx", "3xx", "4xx", "5xx", "429", "IO_ERROR"};
+    private static final int TOO_MANY_REQUESTS_GROUP = 5;
+    private static final int IO_ERROR_GROUP = 6;
+
+    private final boolean enabled;
+    private final Map<StarlingEndpoint, CircuitBreaker> circuitBreakers = new EnumMap<>(StarlingEndpoint.class);
+    private final Map<StarlingEndpoint, RateLimiter> rateLimiters = new EnumMap<>(StarlingEndpoint.class);
+    private final Map<StarlingEndpoint, AdaptiveConcurrencyLimit> concurrencyLimits = new EnumMap<>(StarlingEndpoint.class);
+    private final Map<StarlingEndpoint, Long> slowCallNanos = new EnumMap<>(StarlingEndpoint.class);
+    private final Map<StarlingEndpoint, Counter> rateRejections = new EnumMap<>(StarlingEndpoint.class);
+    private final Map<StarlingEndpoint, Counter> concurrencyRejections = new EnumMap<>(StarlingEndpoint.class);
+    // Indexed by statusGroup, created up front so recording a call is an array lookup
+    private final Map<StarlingEndpoint, Timer[]> requestTimers = new EnumMap<>(StarlingEndpoint.class);
+
+    public StarlingApiGuard(@Value("${starling.limits.enabled:true}") boolean enabled,
+                            @Value("${starling.limits.initial-concurrency:20}") int initialConcurrency,
+                            @Value("${starling.limits.min-concurrency:2}") int minConcurrency,
+                            @Value("${starling.limits.max-concurrency:100}") int maxConcurrency,
+                            @Value("${starling.limits.backoff-ratio:0.9}") double backoffRatio,
+                            @Value("${starling.limits.slow-call-ratio:0.5}") double slowCallRatio,
+                            CircuitBreakerRegistry circuitBreakerRegistry, RateLimiterRegistry rateLimiterRegistry, StarlingTimeouts starlingTimeouts,
+                            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = enabled;
+        for (StarlingEndpoint endpoint : StarlingEndpoint.values()) {
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("starling-" + endpoint.propertyName());
+            circuitBreaker.getEventPublisher().onStateTransition(event -> log.warn("Starling {} endpoint circuit breaker {}",
+                    endpoint, event.getStateTransition()));
+            circuitBreakers.put(endpoint, circuitBreaker);
+            rateLimiters.put(endpoint, rateLimiterRegistry.rateLimiter("starling-" + endpoint.propertyName()));
+            concurrencyLimits.put(endpoint, new AdaptiveConcurrencyLimit(initialConcurrency, minConcurrency, maxConcurrency, backoffRatio));
+            slowCallNanos.put(endpoint, (long) (starlingTimeouts.readTimeout(endpoint).toNanos() * slowCallRatio));
+        }
+        meterRegistry.ifAvailable(this::bindMetrics);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        StarlingEndpoint endpoint = StarlingEndpoint.fromPath(request.getURI().getPath());
+        acquire(endpoint);
+        long startNanos = System.nanoTime();
+        HttpStatusCode status = null;
+        Throwable error = null;
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            status = response.getStatusCode();
+            return response;
+        } catch (IOException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            if (error != null && StarlingHedger.isCurrentAttemptCancelled()) {
+                // Lost to a hedged request and was cancelled, says nothing about Starling's health
+                cancel(endpoint);
+            } else {
+                release(endpoint, startNanos, status, error);
+            }
+        }
+    }
+
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> Mono.defer(() -> {
+            StarlingEndpoint endpoint = StarlingEndpoint.fromPath(request.url().getPath());
+            acquire(endpoint);
+            long startNanos = System.nanoTime();
+            AtomicReference<HttpStatusCode> status = new AtomicReference<>();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            return next.exchange(request)
+                    .doOnNext(response -> status.set(response.statusCode()))
+                    .doOnError(error::set)
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            // A cancelled call says nothing about Starling's health
+                            cancel(endpoint);
+                        } else {
+                            release(endpoint, startNanos, status.get(), error.get());
+                        }
+                    });
+        });
+    }
+
+    private void acquire(StarlingEndpoint endpoint) {
+        // Throws CallNotPermittedException while the breaker is open
+        circuitBreakers.get(endpoint).acquirePermission();
+        if (!enabled) {
+            return;
+        }
+        if (!rateLimiters.get(endpoint).acquirePermission()) {
+            circuitBreakers.get(endpoint).releasePermission();
+            countRejection(rateRejections, endpoint);
+            log.warn("Rejected call to Starling {} endpoint, over its rate limit", endpoint);
+            throw new StarlingApiLimitExceededException("Too many calls to the Starling " + endpoint + " endpoint, rate limit reached.");
+        }
+        if (!concurrencyLimits.get(endpoint).tryAcquire()) {
+            circuitBreakers.get(endpoint).releasePermission();
+            countRejection(concurrencyRejections, endpoint);
+            log.warn("Rejected call to Starling {} endpoint, {} calls already in flight", endpoint, concurrencyLimits.get(endpoint).getInFlight());
+            throw new StarlingApiLimitExceededException("Too many calls to the Starling " + endpoint + " endpoint in flight, concurrency limit reached.");
+        }
+    }
+
+    /**
+     * @param status the response status, null if the call failed before a response arrived
+     * @param error what the call failed with, null if a response arrived
+     */
+    private void release(StarlingEndpoint endpoint, long startNanos, HttpStatusCode status, Throwable error) {
+        long durationNanos = System.nanoTime() - startNanos;
+        // Empty when there is no MeterRegistry
+        Timer[] timers = requestTimers.get(endpoint);
+        if (timers != null) {
+            timers[statusGroup(status)].record(durationNanos, NANOSECONDS);
+        }
+        boolean overloaded = status == null || isOverloaded(status);
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        if (!overloaded) {
+            circuitBreaker.onSuccess(durationNanos, NANOSECONDS);
+        } else if (status != null) {
+            circuitBreaker.onError(durationNanos, NANOSECONDS, new StarlingApiException(status, "Starling API responded " + status));
+        } else {
+            circuitBreaker.onError(durationNanos, NANOSECONDS, error != null ? error : new IOException("No response from Starling API"));
+        }
+        if (enabled) {
+            concurrencyLimits.get(endpoint).release(overloaded || durationNanos > slowCallNanos.get(endpoint));
+        }
+    }
+
+    private void cancel(StarlingEndpoint endpoint) {
+        circuitBreakers.get(endpoint).releasePermission();
+        if (enabled) {
+            concurrencyLimits.get(endpoint).release(false);
+        }
+    }
+
+    private static void countRejection(Map<StarlingEndpoint, Counter> counters, StarlingEndpoint endpoint) {
+        // Empty when there is no MeterRegistry
+        Counter counter = counters.get(endpoint);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private static int statusGroup(HttpStatusCode status) {
+        if (status == null) {
+            return IO_ERROR_GROUP;
+        }
+        if (status.value() == 429) {
+            return TOO_MANY_REQUESTS_GROUP;
+        }
+        // Anything above 5xx is not a valid HTTP status, count it with the server errors
+        return Math.min(status.value() / 100, 5) - 1;
+    }
+
+    private static boolean isOverloaded(HttpStatusCode status) {
+        return status.value() == 429 || status.is5xxServerError();
+    }
+
+    private void bindMetrics(MeterRegistry registry) {
+        for (StarlingEndpoint endpoint : StarlingEndpoint.values()) {
+            String name = endpoint.propertyName();
+            Timer[] timers = new Timer[STATUS_GROUPS.length];
+            for (int group = 0; group < STATUS_GROUPS.length; group++) {
+                // Histogram buckets for this timer are turned on in application.yaml
+                timers[group] = Timer.builder("starling.client.requests")
+                        .description("Calls to the Starling API, up to the response status arriving")
+                        .tag("endpoint", name)
+                        .tag("status", STATUS_GROUPS[group])
+                        .register(registry);
+            }
+            requestTimers.put(endpoint, timers);
+            AdaptiveConcurrencyLimit limit = concurrencyLimits.get(endpoint);
+            Gauge.builder("starling.client.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit).tag("endpoint", name).register(registry);
+            Gauge.builder("starling.client.concurrency.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight).tag("endpoint", name).register(registry);
+            rateRejections.put(endpoint, Counter.builder("starling.client.rejected").tag("endpoint", name).tag("limit", "rate").register(registry));
+            concurrencyRejections.put(endpoint, Counter.builder("starling.client.rejected").tag("endpoint", name).tag("limit", "concurrency").register(registry));
+            // State and call counts are published by Resilience4j as resilience4j.circuitbreaker.*, transitions are counted here
+            circuitBreakers.get(endpoint).getEventPublisher().onStateTransition(event -> registry.counter("starling.client.circuit.transitions",
+                    "endpoint", name, "from", event.getStateTransition().getFromState().name(), "to", event.getStateTransition().getToState().name()).increment());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.starling.roundup.client;
+
+/**
+ * The Starling API endpoints this service calls, used to apply settings per endpoint to calls that all go
+ * through the same RestTemplate.
+ */
+public enum StarlingEndpoint {
+    FEED,
+    BALANCE,
+    TRANSFER,
+    ACCOUNTS,
+    SAVINGS_GOALS;
+
+    /**
+     * Name used for this endpoint in property keys, instance names and metric tags, e.g. savings-goals.
+     */
+    public String propertyName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    /**
+     * Works out the endpoint from the path of a request URI, see the API paths in
+     * {@link com.starling.roundup.util.Constants}. Order matters as paths share prefixes.
+     */
+    public static StarlingEndpoint fromPath(String path) {
+        if (path == null) {
+            return ACCOUNTS;
+        }
+        if (path.contains("/feed/")) {
+            return FEED;
+        }
+        if (path.contains("/add-money/")) {
+            return TRANSFER;
+        }
+        if (path.endsWith("/balance")) {
+            return BALANCE;
+        }
+        if (path.contains("/savings-goals")) {
+            return SAVINGS_GOALS;
+        }
+        return ACCOUNTS;
+    }
+}
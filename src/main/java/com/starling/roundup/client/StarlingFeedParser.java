@@ -0,0 +1,276 @@
+package com.starling.roundup.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.starling.roundup.model.response.StreamedFeedItem;
+import com.starling.roundup.util.CurrencyCodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import static com.fasterxml.jackson.core.JsonToken.*;
+import static com.starling.roundup.model.response.TransactionDirection.IN;
+import static com.starling.roundup.model.response.TransactionDirection.OUT;
+
+/**
+ * Reads a settled-transactions payload token by token and hands each feed item to a consumer as soon as it
+ * has been read, so memory use does not grow with the size of the feed. Fields the round-up does not use
+ * are skipped without being materialised. The feedItemUid and transactionTime are only needed to place an item
+ * in a slice or a week, so they are skipped too unless the caller asks for them.
+ * <p>
+ * {@link #parse} reads a blocking InputStream. {@link #nonBlocking} is fed the body a chunk at a time as it
+ * arrives, for the reactive pipeline. Both hand every token to the same {@link FeedReader}.
+ */
+public final class StarlingFeedParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private StarlingFeedParser() {
+    }
+
+    /**
+     * Reads only the direction and amount of each item, feedItemUid and transactionTime are left null.
+     */
+    public static void parse(InputStream body, Consumer<StreamedFeedItem> consumer) throws IOException {
+        parse(body, false, consumer);
+    }
+
+    /**
+     * @param readItemDetails whether to read the feedItemUid and transactionTime of each item, which allocates a
+     *                        String for each of them
+     */
+    public static void parse(InputStream body, boolean readItemDetails, Consumer<StreamedFeedItem> consumer) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            FeedReader reader = new FeedReader(readItemDetails, consumer);
+            JsonToken token;
+            while (!reader.isDone() && (token = parser.nextToken()) != null) {
+                reader.onToken(parser, token);
+            }
+            reader.finish(parser);
+        }
+    }
+
+    /**
+     * @param readItemDetails as for {@link #parse(InputStream, boolean, Consumer)}
+     * @return a parser to feed the body to, items are handed to the consumer as soon as their last byte is fed
+     */
+    public static NonBlockingFeedParser nonBlocking(boolean readItemDetails, Consumer<StreamedFeedItem> consumer) throws IOException {
+        return new NonBlockingFeedParser(JSON_FACTORY.createNonBlockingByteBufferParser(), new FeedReader(readItemDetails, consumer));
+    }
+
+    /**
+     * Parses a feed that arrives in chunks without blocking while it waits for the next one. Not thread safe, the
+     * chunks must be fed one after another, as a Flux delivers them.
+     */
+    public static final class NonBlockingFeedParser {
+
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        private final FeedReader reader;
+
+        private NonBlockingFeedParser(JsonParser parser, FeedReader reader) {
+            this.parser = parser;
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            this.reader = reader;
+        }
+
+        /**
+         * Reads every token that the chunk completes. The whole chunk has been read when this returns, so the
+         * buffer can be released or reused straight away.
+         */
+        public void feed(ByteBuffer chunk) throws IOException {
+            feeder.feedInput(chunk);
+            readAvailableTokens();
+        }
+
+        /**
+         * Reads the tokens left once the whole body has been fed.
+         * @throws IOException if the body was empty, not a JSON object or ended part way through
+         */
+        public void endOfInput() throws IOException {
+            feeder.endOfInput();
+            readAvailableTokens();
+            reader.finish(parser);
+            parser.close();
+        }
+
+        private void readAvailableTokens() throws IOException {
+            JsonToken token;
+            while (!reader.isDone() && (token = parser.nextToken()) != NOT_AVAILABLE && token != null) {
+                reader.onToken(parser, token);
+            }
+        }
+    }
+
+    /**
+     * Handles the tokens of the feed one at a time, keeping just enough state to know where in the feed the
+     * current token is. Values in structures the round-up does not use are skipped by counting the depth.
+     */
+    private static final class FeedReader {
+
+        private enum Position { BEFORE_FEED, FEED, FEED_ITEMS, FEED_ITEM, AMOUNT, DONE }
+
+        private final boolean readItemDetails;
+        private final Consumer<StreamedFeedItem> consumer;
+        // A single instance is reused for every item, see StreamedFeedItem
+        private final StreamedFeedItem item = new StreamedFeedItem();
+        private Position position = Position.BEFORE_FEED;
+        // Field whose value is the next token, null when the next token is a field name or the end of an object
+        private String field;
+        // Depth inside a value that is being skipped, 0 when not skipping
+        private int skipDepth;
+
+        private FeedReader(boolean readItemDetails, Consumer<StreamedFeedItem> consumer) {
+            this.readItemDetails = readItemDetails;
+            this.consumer = consumer;
+        }
+
+        boolean isDone() {
+            return position == Position.DONE;
+        }
+
+        void onToken(JsonParser parser, JsonToken token) throws IOException {
+            if (skipDepth > 0) {
+                skip(token);
+                return;
+            }
+            if (token == FIELD_NAME) {
+                field = parser.currentName();
+                return;
+            }
+            String valueOf = field;
+            field = null;
+            switch (position) {
+                case BEFORE_FEED -> {
+                    if (token != START_OBJECT) {
+                        throw new JsonParseException(parser, "Expected transaction feed to be a JSON object");
+                    }
+                    position = Position.FEED;
+                }
+                case FEED -> {
+                    if (token == END_OBJECT) {
+                        position = Position.DONE;
+                    } else if ("feedItems".equals(valueOf) && token == START_ARRAY) {
+                        position = Position.FEED_ITEMS;
+                    } else {
+                        skip(token);
+                    }
+                }
+                case FEED_ITEMS -> {
+                    if (token == END_ARRAY) {
+                        position = Position.FEED;
+                    } else if (token == START_OBJECT) {
+                        // A cancelled slice fetch is interrupted, stop reading rather than finish a feed nobody will use
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedIOException("Interrupted while reading transaction feed");
+                        }
+                        item.clear();
+                        position = Position.FEED_ITEM;
+                    } else {
+                        throw new JsonParseException(parser, "Expected feed item to be a JSON object");
+                    }
+                }
+                case FEED_ITEM -> {
+                    if (token == END_OBJECT) {
+                        position = Position.FEED_ITEMS;
+                        consumer.accept(item);
+                    } else {
+                        readFeedItemField(parser, token, valueOf);
+                    }
+                }
+                case AMOUNT -> {
+                    if (token == END_OBJECT) {
+                        position = Position.FEED_ITEM;
+                    } else {
+                        readAmountField(parser, token, valueOf);
+                    }
+                }
+                case DONE -> {
+                }
+            }
+        }
+
+        void finish(JsonParser parser) throws IOException {
+            if (position == Position.BEFORE_FEED) {
+                throw new JsonParseException(parser, "Expected transaction feed to be a JSON object");
+            }
+            if (position != Position.DONE) {
+                throw new JsonParseException(parser, "Transaction feed ended part way through");
+            }
+        }
+
+        private void readFeedItemField(JsonParser parser, JsonToken token, String name) throws IOException {
+            switch (name) {
+                case "feedItemUid" -> {
+                    if (readItemDetails && token.isScalarValue()) item.setFeedItemUid(parser.getValueAsString());
+                    else skip(token);
+                }
+                case "transactionTime" -> {
+                    if (readItemDetails && token.isScalarValue()) item.setTransactionTime(parser.getValueAsString());
+                    else skip(token);
+                }
+                case "direction" -> {
+                    if (token.isScalarValue()) item.setDirection(textEquals(parser, "OUT") ? OUT : textEquals(parser, "IN") ? IN : null);
+                    else skip(token);
+                }
+                case "amount" -> {
+                    if (token == START_OBJECT) position = Position.AMOUNT;
+                    else skip(token);
+                }
+                default -> skip(token);
+            }
+        }
+
+        private void readAmountField(JsonParser parser, JsonToken token, String name) throws IOException {
+            switch (name) {
+                case "currency" -> {
+                    if (token.isScalarValue()) item.setCurrencyCode(currencyCode(parser));
+                    else skip(token);
+                }
+                case "minorUnits" -> {
+                    if (token.isScalarValue()) item.setMinorUnits(token == VALUE_NUMBER_INT ? parser.getLongValue() : parser.getValueAsLong());
+                    else skip(token);
+                }
+                default -> skip(token);
+            }
+        }
+
+        // Scalars need nothing skipping, objects and arrays are skipped up to their matching end token
+        private void skip(JsonToken token) {
+            if (token.isStructStart()) {
+                skipDepth++;
+            } else if (token.isStructEnd()) {
+                skipDepth--;
+            }
+        }
+    }
+
+    // Packs the currency straight from the parser's buffer, no String is made for it
+    private static int currencyCode(JsonParser parser) throws IOException {
+        if (parser.currentToken() != VALUE_STRING) {
+            return CurrencyCodes.UNKNOWN;
+        }
+        return CurrencyCodes.pack(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    // Compares the current string value without copying it out of the parser's buffer
+    private static boolean textEquals(JsonParser parser, String expected) throws IOException {
+        if (parser.currentToken() != VALUE_STRING || parser.getTextLength() != expected.length()) {
+            return false;
+        }
+        char[] text = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        for (int i = 0; i < expected.length(); i++) {
+            if (text[offset + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
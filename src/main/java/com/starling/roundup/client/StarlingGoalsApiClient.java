@@ -25,7 +25,6 @@ import java.util.stream.Collectors;
 import static com.starling.roundup.util.Constants.*;
 import static com.starling.roundup.util.DateUtil.getCurrentDateTime;
 import static com.starling.roundup.util.HttpEntityFactory.getHttpEntity;
-import static com.starling.roundup.util.IdUtils.generateUUID;
 import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
@@ -39,13 +38,18 @@ public class StarlingGoalsApiClient {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private StarlingHedger starlingHedger;
+
     /**
      * Retry logic using Rellience4j, not using fallback method to return a value as can not return old values
      * as data consistency is very important. Also as mentioned in the config, retries do not occur for client
      * side 4xx errors. Only server side errors.
+     * Starling treats a repeated PUT with the same transferUid as the same transfer, so every retry reuses the
+     * transferUid passed in, and a caller that may run the same round-up twice passes the one it used the first time.
      */
     @Retry(name = "starlingApiRetry")
-    public void transferToSavingsGoal(String authToken, String accountUid, String goalUid, long totalRoundUpAmount) {
+    public void transferToSavingsGoal(String authToken, String accountUid, String goalUid, long totalRoundUpAmount, String transferUid) {
         String maskedAccountId = maskSensitiveData(accountUid);
         String maskedGoalId = maskSensitiveData(goalUid);
         log.info("Transferring {} minor units to savings goal {} for accountUid: {}", totalRoundUpAmount, maskedGoalId, maskedAccountId);
@@ -55,7 +59,7 @@ public class StarlingGoalsApiClient {
             ResponseEntity<StarlingTransferSavingsGoalResponse> response = restTemplate.exchange(
                     API_BASE_URL + API_SAVINGS_GOAL_TRANSFER,
                     PUT, getHttpEntity(authToken, request), StarlingTransferSavingsGoalResponse.class,
-                    accountUid, goalUid, generateUUID());
+                    accountUid, goalUid, transferUid);
 
             if (response.getStatusCode().isError()) {
                 log.error("Failed to transfer funds to savings goal for accountUid: {} - Status: {}", maskedAccountId, response.getStatusCode());
@@ -67,7 +71,7 @@ public class StarlingGoalsApiClient {
             throw new StarlingApiException(e.getStatusCode(), e.getResponseBodyAsString());
         } catch (RestClientException e) {
             log.error("Error transferring funds for accountUid: {} - Exception: {}", maskedAccountId, e.getMessage());
-            throw new StarlingApiException("An error occurred when calling Starling API: " + e.getMessage());
+            throw new StarlingApiException("An error occurred when calling Starling API: " + e.getMessage(), e);
         }
     }
 
@@ -75,9 +79,9 @@ public class StarlingGoalsApiClient {
         String maskedAccountUid = maskSensitiveData(accountUid);
         log.info("Fetching savings goal details for account: {}", maskedAccountUid);
         try {
-            ResponseEntity<StarlingAPISavingGoalsResponse> response = restTemplate.exchange(
+            ResponseEntity<StarlingAPISavingGoalsResponse> response = starlingHedger.call(StarlingEndpoint.SAVINGS_GOALS, () -> restTemplate.exchange(
                     API_BASE_URL + API_FETCH_ALL_SAVINGS_GOAL,
-                    GET, getHttpEntity(authToken), StarlingAPISavingGoalsResponse.class, accountUid);
+                    GET, getHttpEntity(authToken), StarlingAPISavingGoalsResponse.class, accountUid));
 
             StarlingAPISavingGoalsResponse responseBody = response.getBody();
             if (responseBody == null || CollectionUtils.isEmpty((responseBody.getSavingsGoalList()))) {
@@ -101,7 +105,7 @@ public class StarlingGoalsApiClient {
             throw new StarlingApiException(e.getStatusCode(), e.getResponseBodyAsString());
         } catch (RestClientException e) {
             log.error("Error fetching saving goals for accountUid: {} - Exception: {}", accountUid, e.getMessage());
-            throw new StarlingApiException("An error occurred when calling Starling API to retrieve savings goals: " + e.getMessage());
+            throw new StarlingApiException("An error occurred when calling Starling API to retrieve savings goals: " + e.getMessage(), e);
         }
     }
 
@@ -127,7 +131,7 @@ public class StarlingGoalsApiClient {
             throw new StarlingApiException(e.getStatusCode(), e.getResponseBodyAsString());
         } catch (RestClientException e) {
             log.error("Error creating new savings goal for accountUid: {} - Exception: {}", maskedAccountUid, e.getMessage());
-            throw new StarlingApiException("An error occurred when calling Starling API to create a new savings goal: " + e.getMessage());
+            throw new StarlingApiException("An error occurred when calling Starling API to create a new savings goal: " + e.getMessage(), e);
         }
     }
 
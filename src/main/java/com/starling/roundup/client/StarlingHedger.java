@@ -0,0 +1,232 @@
+package com.starling.roundup.client;
+
+import com.starling.roundup.exception.StarlingApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Hedges idempotent Starling GETs. When starling.hedging.enabled is on, a call that has not answered within the
+ * endpoint's recent starling.hedging.percentile latency is sent a second time, the first successful answer is used and
+ * the other HTTP request is cancelled, closing its connection. A budget earned at starling.hedging.max-percent of calls
+ * caps how many hedges are sent, so a slow Starling never sees more than that much extra load.
+ * <p>
+ * Attempts run on virtual threads. The HTTP request made by an attempt is registered through
+ * {@link #onRequestCreated(Cancellable)} by the RestTemplate's request factory so it can be cancelled.
+ */
+@Slf4j
+@Component
+public class StarlingHedger {
+
+    // Hedges the budget can save up after a quiet spell, so a burst of slow calls can not hedge all at once
+    private static final double MAX_SAVED_HEDGES = 10;
+    private static final int LATENCY_WINDOW_SIZE = 1024;
+    private static final ThreadLocal<Attempt<?>> CURRENT_ATTEMPT = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final long initialDelayNanos;
+    private final long minDelayNanos;
+    private final double hedgesPerCall;
+    private final Map<StarlingEndpoint, LatencyWindow> latencies = new EnumMap<>(StarlingEndpoint.class);
+    private final Map<StarlingEndpoint, Counter> hedgesSent = new EnumMap<>(StarlingEndpoint.class);
+    private final Map<StarlingEndpoint, Counter> hedgesWon = new EnumMap<>(StarlingEndpoint.class);
+    private final ExecutorService attempts = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("starling-hedge-", 0).factory());
+    private double hedgeBudget;
+
+    public StarlingHedger(@Value("${starling.hedging.enabled:false}") boolean enabled,
+                          @Value("${starling.hedging.percentile:95}") double percentile,
+                          @Value("${starling.hedging.initial-delay:1s}") Duration initialDelay,
+                          @Value("${starling.hedging.min-delay:50ms}") Duration minDelay,
+                          @Value("${starling.hedging.max-percent:5}") double maxPercent,
+                          ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = enabled;
+        this.initialDelayNanos = initialDelay.toNanos();
+        this.minDelayNanos = minDelay.toNanos();
+        this.hedgesPerCall = maxPercent / 100;
+        for (StarlingEndpoint endpoint : StarlingEndpoint.values()) {
+            latencies.put(endpoint, new LatencyWindow(LATENCY_WINDOW_SIZE, percentile));
+        }
+        meterRegistry.ifAvailable(registry -> {
+            for (StarlingEndpoint endpoint : StarlingEndpoint.values()) {
+                hedgesSent.put(endpoint, registry.counter("starling.client.hedges", "endpoint", endpoint.propertyName(), "outcome", "sent"));
+                hedgesWon.put(endpoint, registry.counter("starling.client.hedges", "endpoint", endpoint.propertyName(), "outcome", "won"));
+            }
+        });
+    }
+
+    /**
+     * Makes the call, hedging it if enabled. Only pass calls that are safe to make twice.
+     * @return the first successful result, or the error of the last attempt to fail
+     */
+    public <T> T call(StarlingEndpoint endpoint, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        long startNanos = System.nanoTime();
+        earnHedge();
+        Attempt<T> primary = start(call);
+        Attempt<T> hedge = null;
+        try {
+            long delayNanos = Math.max(minDelayNanos, latencies.get(endpoint).percentileNanos(initialDelayNanos));
+            T result;
+            try {
+                result = primary.result.get(delayNanos, NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (!trySpendHedge()) {
+                    result = primary.result.get();
+                } else {
+                    log.debug("No response from Starling {} endpoint after {} ms, sending a hedged request", endpoint, NANOSECONDS.toMillis(delayNanos));
+                    increment(hedgesSent, endpoint);
+                    hedge = start(call);
+                    Attempt<T> winner = firstSuccess(primary, hedge).get();
+                    if (winner == hedge) {
+                        increment(hedgesWon, endpoint);
+                    }
+                    result = winner.result.join();
+                }
+            }
+            latencies.get(endpoint).record(System.nanoTime() - startNanos);
+            return result;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new StarlingApiException("An error occurred when calling Starling API: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StarlingApiException("Interrupted waiting for Starling API", e);
+        } finally {
+            // The attempt that answered has finished with its request already, this only stops the other one
+            primary.cancelIfRunning();
+            if (hedge != null) {
+                hedge.cancelIfRunning();
+            }
+        }
+    }
+
+    /**
+     * Called by the RestTemplate's request factory for each HTTP request it creates, ties the request to the hedging
+     * attempt running on this thread, if there is one.
+     */
+    public static void onRequestCreated(Cancellable request) {
+        Attempt<?> attempt = CURRENT_ATTEMPT.get();
+        if (attempt != null) {
+            attempt.setRequest(request);
+        }
+    }
+
+    /**
+     * True on the thread of a hedging attempt that lost, its call fails because it was cancelled rather than because
+     * Starling had a problem.
+     */
+    static boolean isCurrentAttemptCancelled() {
+        Attempt<?> attempt = CURRENT_ATTEMPT.get();
+        return attempt != null && attempt.cancelled;
+    }
+
+    @PreDestroy
+    public void stop() {
+        attempts.shutdownNow();
+    }
+
+    private <T> Attempt<T> start(Supplier<T> call) {
+        Attempt<T> attempt = new Attempt<>();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        attempts.execute(() -> {
+            CURRENT_ATTEMPT.set(attempt);
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            try {
+                attempt.result.complete(call.get());
+            } catch (Throwable e) {
+                attempt.result.completeExceptionally(e);
+            } finally {
+                CURRENT_ATTEMPT.remove();
+                MDC.clear();
+            }
+        });
+        return attempt;
+    }
+
+    private static <T> CompletableFuture<Attempt<T>> firstSuccess(Attempt<T> primary, Attempt<T> hedge) {
+        CompletableFuture<Attempt<T>> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (Attempt<T> attempt : List.of(primary, hedge)) {
+            attempt.result.whenComplete((result, error) -> {
+                if (error == null) {
+                    first.complete(attempt);
+                } else if (failures.incrementAndGet() == 2) {
+                    first.completeExceptionally(error);
+                }
+            });
+        }
+        return first;
+    }
+
+    private synchronized void earnHedge() {
+        hedgeBudget = Math.min(MAX_SAVED_HEDGES, hedgeBudget + hedgesPerCall);
+    }
+
+    private synchronized boolean trySpendHedge() {
+        if (hedgeBudget < 1) {
+            return false;
+        }
+        hedgeBudget -= 1;
+        return true;
+    }
+
+    private static void increment(Map<StarlingEndpoint, Counter> counters, StarlingEndpoint endpoint) {
+        // Empty when there is no MeterRegistry
+        Counter counter = counters.get(endpoint);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private static final class Attempt<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private Cancellable request;
+        private volatile boolean cancelled;
+
+        private synchronized void setRequest(Cancellable request) {
+            this.request = request;
+            if (cancelled) {
+                request.cancel();
+            }
+        }
+
+        private synchronized void cancelIfRunning() {
+            if (result.isDone()) {
+                return;
+            }
+            cancelled = true;
+            if (request != null) {
+                request.cancel();
+            }
+        }
+    }
+}
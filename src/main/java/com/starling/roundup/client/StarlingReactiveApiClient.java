@@ -0,0 +1,154 @@
+package com.starling.roundup.client;
+
+import com.starling.roundup.client.StarlingFeedParser.NonBlockingFeedParser;
+import com.starling.roundup.exception.StarlingApiException;
+import com.starling.roundup.exception.StarlingApiLimitExceededException;
+import com.starling.roundup.model.common.Amount;
+import com.starling.roundup.model.request.StarlingTransferSavingsGoalRequest;
+import com.starling.roundup.model.response.StarlingBalanceResponse;
+import com.starling.roundup.model.response.StarlingTransferSavingsGoalResponse;
+import com.starling.roundup.model.response.StreamedFeedItem;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.starling.roundup.util.Constants.*;
+import static com.starling.roundup.util.DateUtil.toStarlingDateFormat;
+import static com.starling.roundup.util.DateUtil.toStarlingEndDate;
+import static com.starling.roundup.util.IdUtils.generateUUID;
+
+/**
+ * Non-blocking versions of the Starling calls made by the round-up pipeline. Failures are turned into the same
+ * {@link StarlingApiException}s as the blocking clients. Retries use the starlingApiReactiveRetry instance, which
+ * like the blocking one only retries I/O errors and 5xx responses.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "roundup.pipeline", havingValue = "reactive")
+public class StarlingReactiveApiClient {
+
+    private final WebClient starlingWebClient;
+    private final StarlingTimeouts starlingTimeouts;
+    private final Retry retry;
+
+    public StarlingReactiveApiClient(WebClient starlingWebClient, StarlingTimeouts starlingTimeouts, RetryRegistry retryRegistry) {
+        this.starlingWebClient = starlingWebClient;
+        this.starlingTimeouts = starlingTimeouts;
+        this.retry = retryRegistry.retry("starlingApiReactiveRetry");
+    }
+
+    /**
+     * Streams the settled transactions for the week into a consumer as the body arrives, without ever holding the
+     * whole feed, the same as the blocking {@link StarlingTransactionApiClient#streamTransactions}. Each chunk is
+     * parsed on the thread that delivers it and released straight away. A new consumer is created for every
+     * attempt so a retry after a partially read response starts from scratch.
+     * @param collectorFactory creates the consumer that receives each feed item, it is emitted once the feed is read
+     */
+    public <C extends Consumer<StreamedFeedItem>> Mono<C> streamTransactions(String authToken, String accountUid, String maskedAccountUid,
+                                                                             LocalDate weekCommencing, Supplier<C> collectorFactory) {
+        return Mono.defer(() -> {
+                    C collector = collectorFactory.get();
+                    // The whole week goes into one total, so the feedItemUid and transactionTime of the items are never read
+                    NonBlockingFeedParser parser = newFeedParser(collector);
+                    return starlingWebClient.get()
+                            .uri(API_SETTLED_TRANSACTIONS, accountUid, toStarlingDateFormat(weekCommencing), toStarlingEndDate(weekCommencing))
+                            .headers(headers -> headers.setBearerAuth(authToken))
+                            .httpRequest(request -> setReadTimeout(request.getNativeRequest(), StarlingEndpoint.FEED))
+                            .retrieve()
+                            .bodyToFlux(DataBuffer.class)
+                            .doOnNext(buffer -> {
+                                // Read in place, the bytes are not copied out of the buffer
+                                try (DataBuffer.ByteBufferIterator chunks = buffer.readableByteBuffers()) {
+                                    while (chunks.hasNext()) {
+                                        parser.feed(chunks.next());
+                                    }
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                } finally {
+                                    DataBufferUtils.release(buffer);
+                                }
+                            })
+                            .then(Mono.fromCallable(() -> {
+                                parser.endOfInput();
+                                return collector;
+                            }));
+                })
+                .transformDeferred(RetryOperator.of(retry))
+                .doOnSuccess(collector -> log.info("Starling API successfully streamed transactions for accountUid: {}", maskedAccountUid))
+                .onErrorMap(error -> toStarlingApiException("streaming transactions", maskedAccountUid, error));
+    }
+
+    public Mono<StarlingBalanceResponse> getAccountBalance(String authToken, String accountUid, String maskedAccountUid) {
+        return starlingWebClient.get()
+                .uri(API_ACCOUNT_BALANCE, accountUid)
+                .headers(headers -> headers.setBearerAuth(authToken))
+                .httpRequest(request -> setReadTimeout(request.getNativeRequest(), StarlingEndpoint.BALANCE))
+                .retrieve()
+                .bodyToMono(StarlingBalanceResponse.class)
+                .switchIfEmpty(Mono.error(() -> new StarlingApiException("Starling API returned null for balance check.")))
+                .transformDeferred(RetryOperator.of(retry))
+                .onErrorMap(error -> toStarlingApiException("fetching balance", maskedAccountUid, error));
+    }
+
+    public Mono<Void> transferToSavingsGoal(String authToken, String accountUid, String maskedAccountUid, String goalUid, long totalRoundUpAmount) {
+        // One transferUid for every attempt so Starling can recognise a retried transfer
+        String transferUid = generateUUID();
+        StarlingTransferSavingsGoalRequest request = new StarlingTransferSavingsGoalRequest(new Amount(GBP, totalRoundUpAmount));
+        return starlingWebClient.put()
+                .uri(API_SAVINGS_GOAL_TRANSFER, accountUid, goalUid, transferUid)
+                .headers(headers -> headers.setBearerAuth(authToken))
+                .httpRequest(httpRequest -> setReadTimeout(httpRequest.getNativeRequest(), StarlingEndpoint.TRANSFER))
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(StarlingTransferSavingsGoalResponse.class)
+                .transformDeferred(RetryOperator.of(retry))
+                .doOnSuccess(response -> log.info("Successfully transferred {} minor units to savings goal for accountUid: {}", totalRoundUpAmount, maskedAccountUid))
+                .onErrorMap(error -> toStarlingApiException("transferring funds", maskedAccountUid, error))
+                .then();
+    }
+
+    private static NonBlockingFeedParser newFeedParser(Consumer<StreamedFeedItem> collector) {
+        try {
+            return StarlingFeedParser.nonBlocking(false, collector);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void setReadTimeout(Object nativeRequest, StarlingEndpoint endpoint) {
+        if (nativeRequest instanceof HttpClientRequest reactorRequest) {
+            reactorRequest.responseTimeout(starlingTimeouts.readTimeout(endpoint));
+        }
+    }
+
+    private static Throwable toStarlingApiException(String action, String maskedAccountUid, Throwable error) {
+        if (error instanceof StarlingApiException || error instanceof StarlingApiLimitExceededException || error instanceof CallNotPermittedException) {
+            return error;
+        }
+        if (error instanceof WebClientResponseException e) {
+            log.error("Error {} for accountUid: {} - Status: {}, Response: {}", action, maskedAccountUid, e.getStatusCode(), e.getResponseBodyAsString());
+            return new StarlingApiException(e.getStatusCode(), e.getResponseBodyAsString());
+        }
+        if (error instanceof WebClientRequestException) {
+            log.error("Error {} for accountUid: {} - Exception: {}", action, maskedAccountUid, error.getMessage());
+        }
+        return new StarlingApiException("An error occurred when calling Starling API: " + error.getMessage());
+    }
+}
@@ -0,0 +1,34 @@
+package com.starling.roundup.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Access token used to call Starling when there is no client request to take a token from, which is the case for
+ * the weekly schedule and for round-up jobs run from the queue. Both only run the round-ups of enrolled accounts.
+ * Client tokens are never stored, so these round-ups use this one instead. Set starling.service-access-token from a secret, it is never logged.
+ */
+@Component
+public class StarlingServiceCredential {
+
+    private final String accessToken;
+
+    public StarlingServiceCredential(@Value("${starling.service-access-token:}") String accessToken) {
+        this.accessToken = accessToken;
+    }
+
+    public boolean isConfigured() {
+        return accessToken != null && !accessToken.isBlank();
+    }
+
+    /**
+     * @param usedBy what needs the token, for the error when it is not set
+     * @throws IllegalStateException if starling.service-access-token is not set
+     */
+    public String getAccessToken(String usedBy) {
+        if (!isConfigured()) {
+            throw new IllegalStateException("starling.service-access-token must be set to use " + usedBy);
+        }
+        return accessToken;
+    }
+}
@@ -0,0 +1,34 @@
+package com.starling.roundup.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Read timeouts for each Starling endpoint, shared by the blocking and reactive HTTP clients.
+ */
+@Component
+public class StarlingTimeouts {
+
+    @Value("${starling.http.read-timeout.feed:20s}")
+    private Duration feed;
+    @Value("${starling.http.read-timeout.balance:3s}")
+    private Duration balance;
+    @Value("${starling.http.read-timeout.transfer:10s}")
+    private Duration transfer;
+    @Value("${starling.http.read-timeout.accounts:3s}")
+    private Duration accounts;
+    @Value("${starling.http.read-timeout.savings-goals:5s}")
+    private Duration savingsGoals;
+
+    public Duration readTimeout(StarlingEndpoint endpoint) {
+        return switch (endpoint) {
+            case FEED -> feed;
+            case BALANCE -> balance;
+            case TRANSFER -> transfer;
+            case ACCOUNTS -> accounts;
+            case SAVINGS_GOALS -> savingsGoals;
+        };
+    }
+}
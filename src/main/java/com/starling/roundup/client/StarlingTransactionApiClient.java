@@ -2,6 +2,7 @@ package com.starling.roundup.client;
 
 import com.starling.roundup.exception.StarlingApiException;
 import com.starling.roundup.model.response.StarlingFeedResponse;
+import com.starling.roundup.model.response.StreamedFeedItem;
 import io.github.resilience4j.retry.annotation.Retry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +13,9 @@ import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static com.starling.roundup.util.HttpEntityFactory.getHttpEntity;
 import static com.starling.roundup.util.Constants.API_BASE_URL;
@@ -19,6 +23,7 @@ import static com.starling.roundup.util.Constants.API_SETTLED_TRANSACTIONS;
 import static com.starling.roundup.util.DateUtil.toStarlingDateFormat;
 import static com.starling.roundup.util.DateUtil.toStarlingEndDate;
 import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 @Slf4j
 @Component
@@ -27,6 +32,9 @@ public class StarlingTransactionApiClient {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private StarlingHedger starlingHedger;
+
     /**
      * Retry logic using Rellience4j, not using fallback method to return a value as can not return old values
      * as data consistency is very important. Also as mentioned in the config, retries do not occur for client
@@ -42,10 +50,10 @@ public class StarlingTransactionApiClient {
             String startDate = toStarlingDateFormat(weekCommencing);
             String endDate = toStarlingEndDate(weekCommencing);
 
-            ResponseEntity<StarlingFeedResponse> response = restTemplate.exchange(
+            ResponseEntity<StarlingFeedResponse> response = starlingHedger.call(StarlingEndpoint.FEED, () -> restTemplate.exchange(
                     API_BASE_URL + API_SETTLED_TRANSACTIONS,
                     GET, getHttpEntity(authToken), StarlingFeedResponse.class,
-                    accountUid, startDate, endDate);
+                    accountUid, startDate, endDate));
             if (response.getBody() == null) {
                 log.error("Starling API returned null for transaction feed.");
                 throw new StarlingApiException("Starling API returned null for transaction feed.");
@@ -58,9 +66,63 @@ public class StarlingTransactionApiClient {
             throw new StarlingApiException(e.getStatusCode(), e.getResponseBodyAsString());
         } catch (RestClientException e) {
             log.error("Error fetching transactions for accountUid: {} - Exception: {}", maskedAccountUid, e.getMessage());
-            throw new StarlingApiException("An error occurred when calling Starling API: " + e.getMessage());
+            throw new StarlingApiException("An error occurred when calling Starling API: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Streams the settled transactions for the week into a consumer without building a {@link StarlingFeedResponse}.
+     * A new consumer is created for every attempt so a retry after a partially read response starts from scratch.
+     * @param collectorFactory creates the consumer that receives each feed item, it is returned once the feed is read
+     */
+    @Retry(name = "starlingApiRetry")
+    public <C extends Consumer<StreamedFeedItem>> C streamTransactions(String authToken, String accountUid, String maskedAccountUid,
+                                                                      LocalDate weekCommencing, Supplier<C> collectorFactory) {
+        log.info("Streaming settled transactions for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
+        // The whole week goes into one total, so the feedItemUid and transactionTime of the items are never read
+        return stream(authToken, accountUid, maskedAccountUid, toStarlingDateFormat(weekCommencing), toStarlingEndDate(weekCommencing), false, collectorFactory);
+    }
+
+    /**
+     * Same as {@link #streamTransactions} for an arbitrary window. Used to fetch a week in slices, each slice is
+     * retried on its own, and to fetch a range of weeks. The feedItemUid and transactionTime of every item are read
+     * so the consumer can place it in its slice or week.
+     */
+    @Retry(name = "starlingApiRetry")
+    public <C extends Consumer<StreamedFeedItem>> C streamTransactionsBetween(String authToken, String accountUid, String maskedAccountUid,
+                                                                             String startDate, String endDate, Supplier<C> collectorFactory) {
+        log.info("Streaming settled transactions for accountUid: {}, between: {} and {}", maskedAccountUid, startDate, endDate);
+        return stream(authToken, accountUid, maskedAccountUid, startDate, endDate, true, collectorFactory);
+    }
 
+    private <C extends Consumer<StreamedFeedItem>> C stream(String authToken, String accountUid, String maskedAccountUid,
+                                                           String startDate, String endDate, boolean readItemDetails, Supplier<C> collectorFactory) {
+        try {
+            // A hedged attempt parses into its own collector, only the winner's is returned
+            C collector = starlingHedger.call(StarlingEndpoint.FEED, () -> restTemplate.execute(
+                    API_BASE_URL + API_SETTLED_TRANSACTIONS, GET,
+                    request -> {
+                        request.getHeaders().setBearerAuth(authToken);
+                        request.getHeaders().setAccept(List.of(APPLICATION_JSON));
+                    },
+                    response -> {
+                        C itemCollector = collectorFactory.get();
+                        StarlingFeedParser.parse(response.getBody(), readItemDetails, itemCollector);
+                        return itemCollector;
+                    },
+                    accountUid, startDate, endDate));
+            if (collector == null) {
+                log.error("Starling API returned null for transaction feed.");
+                throw new StarlingApiException("Starling API returned null for transaction feed.");
+            }
+            log.info("Starling API successfully streamed transactions for accountUid: {}", maskedAccountUid);
+            return collector;
+        } catch (HttpStatusCodeException e) {
+            log.error("Error streaming transactions for accountUid: {} - Status: {}, Response: {}", maskedAccountUid, e.getStatusCode(), e.getResponseBodyAsString());
+            throw new StarlingApiException(e.getStatusCode(), e.getResponseBodyAsString());
+        } catch (RestClientException e) {
+            log.error("Error streaming transactions for accountUid: {} - Exception: {}", maskedAccountUid, e.getMessage());
+            throw new StarlingApiException("An error occurred when calling Starling API: " + e.getMessage(), e);
+        }
+    }
 }
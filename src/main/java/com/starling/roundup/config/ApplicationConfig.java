@@ -1,14 +1,114 @@
 package com.starling.roundup.config;
 
+import com.starling.roundup.client.StarlingApiGuard;
+import com.starling.roundup.client.StarlingEndpoint;
+import com.starling.roundup.client.StarlingHedger;
+import com.starling.roundup.client.StarlingTimeouts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
 @Configuration
 public class ApplicationConfig {
 
+    @Value("${starling.http.max-connections:200}")
+    private int maxConnections;
+    @Value("${starling.http.max-connections-per-route:100}")
+    private int maxConnectionsPerRoute;
+    @Value("${starling.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+    // How long to wait for a free connection from the pool before failing
+    @Value("${starling.http.pool-timeout:1s}")
+    private Duration poolTimeout;
+    // Idle connections are kept open this long so later calls skip the TCP and TLS handshake
+    @Value("${starling.http.keep-alive:60s}")
+    private Duration keepAlive;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager starlingConnectionManager(ObjectProvider<MeterRegistry> meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setTimeToLive(TimeValue.ofMinutes(10))
+                        // Check a connection that has been idle for a while is still open before reusing it
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        meterRegistry.ifAvailable(registry ->
+                new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "starling").bindTo(registry));
+        return connectionManager;
+    }
+
+    /**
+     * Content compression is on by default in HttpClient 5, every request sends Accept-Encoding: gzip, x-gzip, deflate
+     * and compressed responses are decoded before they reach the message converters or the feed parser.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient starlingHttpClient(PoolingHttpClientConnectionManager starlingConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(starlingConnectionManager)
+                .setKeepAliveStrategy((response, context) -> TimeValue.of(keepAlive))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(keepAlive))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate(){
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient starlingHttpClient, StarlingTimeouts starlingTimeouts, StarlingApiGuard starlingApiGuard){
+        Map<StarlingEndpoint, RequestConfig> requestConfigs = new EnumMap<>(StarlingEndpoint.class);
+        for (StarlingEndpoint endpoint : StarlingEndpoint.values()) {
+            requestConfigs.put(endpoint, requestConfig(starlingTimeouts.readTimeout(endpoint)));
+        }
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(starlingHttpClient) {
+            @Override
+            protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+                ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+                // Lets a hedged call cancel the request that lost
+                if (request instanceof Cancellable cancellable) {
+                    StarlingHedger.onRequestCreated(cancellable);
+                }
+                return request;
+            }
+        };
+        // Every call shares the same pool, the read timeout is picked from the endpoint being called
+        requestFactory.setHttpContextFactory((method, uri) -> {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(requestConfigs.get(StarlingEndpoint.fromPath(uri.getPath())));
+            return context;
+        });
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(starlingApiGuard);
+        return restTemplate;
+    }
+
+    private RequestConfig requestConfig(Duration readTimeout) {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(poolTimeout))
+                .setResponseTimeout(Timeout.of(readTimeout))
+                .build();
     }
 }
@@ -1,25 +1,120 @@
 package com.starling.roundup.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 
-@EnableAsync
+@Slf4j
+@EnableAsync(proxyTargetClass = true)  // RoundUpAsyncService is injected by class as well as through RoundUpProcessor
 @Configuration
 public class AsyncConfig implements AsyncConfigurer {
+
+    private static final String THREAD_NAME_PREFIX = "starling-round-up-";
+
+    // platform: fixed thread pool, virtual: a virtual thread per round-up capped by maxConcurrentRoundUps
+    @Value("${roundup.async.executor:platform}")
+    private String executorMode;
+
+    @Value("${roundup.async.max-concurrent-round-ups:200}")
+    private int maxConcurrentRoundUps;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public AsyncConfig(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Override
     public Executor getAsyncExecutor() {
+        if ("virtual".equalsIgnoreCase(executorMode)) {
+            log.info("Using virtual thread executor for round-ups with at most {} running at once", maxConcurrentRoundUps);
+            BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor(THREAD_NAME_PREFIX + "vt-", maxConcurrentRoundUps);
+            meterRegistry.ifAvailable(registry -> registerGauges(registry, executor));
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(10);
         executor.setMaxPoolSize(20);
         executor.setQueueCapacity(50);
-        executor.setThreadNamePrefix("starling-round-up-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        executor.setRejectedExecutionHandler(countingCallerRuns("roundup", meterRegistry));
+        executor.initialize();
+        // Not a bean so Spring Boot does not bind executor metrics for it
+        meterRegistry.ifAvailable(registry ->
+                new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "roundup", Tags.empty()).bindTo(registry));
+        return executor;
+    }
+
+    /**
+     * CallerRunsPolicy that counts each time the queue was full and the submitting thread ran the task itself, which
+     * for round-ups means a request thread doing the whole round-up before answering.
+     */
+    private static RejectedExecutionHandler countingCallerRuns(String executorName, ObjectProvider<MeterRegistry> meterRegistry) {
+        ThreadPoolExecutor.CallerRunsPolicy callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+        return (task, executor) -> {
+            meterRegistry.ifAvailable(registry -> registry.counter("roundup.executor.caller.runs", "name", executorName).increment());
+            callerRuns.rejectedExecution(task, executor);
+        };
+    }
+
+    // Slices log under the requestId of the round-up that submitted them
+    private static Runnable copyMdc(Runnable task) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        if (mdc == null) {
+            return task;
+        }
+        return () -> {
+            MDC.setContextMap(mdc);
+            try {
+                task.run();
+            } finally {
+                MDC.clear();
+            }
+        };
+    }
+
+    static void registerGauges(MeterRegistry registry, BoundedVirtualThreadExecutor executor) {
+        Gauge.builder("roundup.executor.virtual.threads.active", executor, BoundedVirtualThreadExecutor::getActiveThreads)
+                .description("Round-up virtual threads that have started and not finished")
+                .register(registry);
+        Gauge.builder("roundup.executor.virtual.tasks.running", executor, BoundedVirtualThreadExecutor::getRunningTasks)
+                .description("Round-ups holding a permit to run")
+                .register(registry);
+        Gauge.builder("roundup.executor.virtual.tasks.waiting", executor, BoundedVirtualThreadExecutor::getWaitingTasks)
+                .description("Round-ups waiting for a permit to run")
+                .register(registry);
+    }
+
+    /**
+     * Runs the day sliced transaction fetches for a single round-up in parallel. Kept separate from the
+     * round-up executor so that a round-up waiting on its slices can never starve them of threads.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor feedSliceExecutor(@Value("${roundup.feed.slice-threads:16}") int sliceThreads) {
+        // Active, queued and completed counts are bound by Spring Boot as executor.* with name feedSliceExecutor
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(sliceThreads);
+        executor.setMaxPoolSize(sliceThreads);
+        executor.setQueueCapacity(sliceThreads * 10);
+        executor.setThreadNamePrefix("starling-feed-slice-");
+        executor.setTaskDecorator(AsyncConfig::copyMdc);
+        executor.setRejectedExecutionHandler(countingCallerRuns("feedSliceExecutor", meterRegistry));
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.starling.roundup.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every task on its own virtual thread. A round-up spends nearly all of its time blocked on Starling API
+ * calls, so a virtual thread per round-up lets thousands be in flight without sizing a platform thread pool.
+ * The semaphore caps how many round-ups run at the same time, the rest wait on a permit, which costs nothing
+ * more than a parked virtual thread. Nothing is ever rejected so the caller never ends up running the round-up
+ * itself.
+ * <p>
+ * A permit covers a whole round-up, not a single Starling call: its feed fetch, including any slices run on the
+ * feed slice executor, its balance check and its transfer. So the cap bounds the round-ups in flight, and with
+ * them the memory and database work they hold, while the calls made to each Starling endpoint are capped
+ * separately by the adaptive concurrency limits in {@link com.starling.roundup.client.StarlingApiGuard}.
+ */
+@Slf4j
+public class BoundedVirtualThreadExecutor implements Executor {
+
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+    // Virtual threads that have been started and not finished yet, both waiting for a permit and running
+    private final AtomicInteger activeThreads = new AtomicInteger();
+    // Virtual threads holding a permit, i.e. round-ups currently running
+    private final AtomicInteger runningTasks = new AtomicInteger();
+
+    public BoundedVirtualThreadExecutor(String threadNamePrefix, int maxConcurrentTasks) {
+        this.threadFactory = Thread.ofVirtual().name(threadNamePrefix, 0).factory();
+        this.permits = new Semaphore(maxConcurrentTasks, true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Thread thread = threadFactory.newThread(() -> runWithPermit(task));
+        activeThreads.incrementAndGet();
+        thread.start();
+    }
+
+    private void runWithPermit(Runnable task) {
+        try {
+            permits.acquire();
+            runningTasks.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                runningTasks.decrementAndGet();
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting to run round-up task, task was not run");
+        } finally {
+            activeThreads.decrementAndGet();
+        }
+    }
+
+    public int getActiveThreads() {
+        return activeThreads.get();
+    }
+
+    public int getRunningTasks() {
+        return runningTasks.get();
+    }
+
+    public int getWaitingTasks() {
+        return Math.max(0, activeThreads.get() - runningTasks.get());
+    }
+}
@@ -0,0 +1,56 @@
+package com.starling.roundup.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.starling.roundup.model.response.SavingsGoal;
+import com.starling.roundup.model.response.StarlingAccount;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Short lived caches in front of the Starling account and savings goal lookups. Hit, miss and eviction counts
+ * are published as cache.gets and cache.evictions with the cache name as a tag.
+ */
+@Configuration
+public class CacheConfig {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public CacheConfig(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Keyed by a hash of the auth token so that tokens are never held in memory as map keys
+    @Bean
+    public Cache<String, StarlingAccount> primaryAccountCache(@Value("${roundup.cache.primary-account.ttl:10m}") Duration ttl,
+                                                              @Value("${roundup.cache.primary-account.max-size:10000}") long maxSize) {
+        return monitor(Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build(), "primaryAccounts");
+    }
+
+    // Keyed by accountUid
+    @Bean
+    public Cache<String, List<SavingsGoal>> activeGoalsCache(@Value("${roundup.cache.active-goals.ttl:2m}") Duration ttl,
+                                                             @Value("${roundup.cache.active-goals.max-size:10000}") long maxSize) {
+        return monitor(Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build(), "activeSavingsGoals");
+    }
+
+    private <K, V> Cache<K, V> monitor(Cache<K, V> cache, String name) {
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, name));
+        return cache;
+    }
+}
@@ -9,9 +9,12 @@ import org.redisson.config.Config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import redis.embedded.RedisServer;
 
+// Not loaded with the single-node profile, which runs without Redis
 @Configuration
+@Profile("!single-node")
 public class RedissonConfig {
 
     @Value("${spring.redis.host}")
@@ -0,0 +1,81 @@
+package com.starling.roundup.config;
+
+import io.github.resilience4j.common.retry.configuration.RetryConfigCustomizer;
+import io.github.resilience4j.core.IntervalBiFunction;
+import io.github.resilience4j.core.registry.EntryAddedEvent;
+import io.github.resilience4j.core.registry.EntryRemovedEvent;
+import io.github.resilience4j.core.registry.EntryReplacedEvent;
+import io.github.resilience4j.core.registry.RegistryEventConsumer;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Waits between Starling retries use exponential backoff with full jitter: attempt n waits a random time between
+ * zero and min(max-backoff, initial-backoff * 2^(n-1)). Callers that failed together then retry at different times
+ * instead of all hitting Starling again at the same moment.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Value("${starling.retry.initial-backoff:200ms}")
+    private Duration initialBackoff;
+    @Value("${starling.retry.max-backoff:5s}")
+    private Duration maxBackoff;
+
+    /**
+     * Counts every retry attempt by instance. Resilience4j's own resilience4j.retry.calls only counts calls by how they
+     * ended, not how many attempts they took.
+     */
+    @Bean
+    public RegistryEventConsumer<Retry> retryAttemptCounter(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new RegistryEventConsumer<>() {
+            @Override
+            public void onEntryAddedEvent(EntryAddedEvent<Retry> event) {
+                Retry retry = event.getAddedEntry();
+                meterRegistry.ifAvailable(registry -> retry.getEventPublisher().onRetry(retryEvent ->
+                        registry.counter("starling.client.retry.attempts", "name", retry.getName()).increment()));
+            }
+
+            @Override
+            public void onEntryRemovedEvent(EntryRemovedEvent<Retry> event) {
+            }
+
+            @Override
+            public void onEntryReplacedEvent(EntryReplacedEvent<Retry> event) {
+            }
+        };
+    }
+
+    @Bean
+    public RetryConfigCustomizer starlingApiRetryCustomizer() {
+        return RetryConfigCustomizer.of("starlingApiRetry", this::useFullJitterBackoff);
+    }
+
+    @Bean
+    public RetryConfigCustomizer starlingApiReactiveRetryCustomizer() {
+        return RetryConfigCustomizer.of("starlingApiReactiveRetry", this::useFullJitterBackoff);
+    }
+
+    // RetryConfigCustomizer hands over a raw Builder, taking it as Builder<?> lets the backoff be typed to its result type
+    private void useFullJitterBackoff(RetryConfig.Builder<?> builder) {
+        builder.intervalBiFunction(fullJitterBackoff());
+    }
+
+    private <T> IntervalBiFunction<T> fullJitterBackoff() {
+        long initialMillis = initialBackoff.toMillis();
+        long maxMillis = maxBackoff.toMillis();
+        return (attempt, result) -> {
+            // Shift capped so a long run of attempts can not overflow
+            long ceiling = Math.min(maxMillis, initialMillis << Math.min(attempt - 1, 30));
+            return ThreadLocalRandom.current().nextLong(ceiling + 1);
+        };
+    }
+}
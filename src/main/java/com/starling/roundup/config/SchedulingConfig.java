@@ -0,0 +1,12 @@
+package com.starling.roundup.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// The weekly round-up schedule is opt-in, without this @Scheduled methods are never called
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "roundup.schedule.enabled", havingValue = "true")
+public class SchedulingConfig {
+}
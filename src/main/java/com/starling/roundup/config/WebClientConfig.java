@@ -0,0 +1,59 @@
+package com.starling.roundup.config;
+
+import com.starling.roundup.client.StarlingApiGuard;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+import static com.starling.roundup.util.Constants.API_BASE_URL;
+
+/**
+ * Non-blocking HTTP client for the reactive round-up pipeline. Uses the same pool sizes, connect timeout and
+ * keep-alive as the RestTemplate, read timeouts are set per request by the client. The feed is streamed through
+ * the parser rather than decoded in memory, so the codecs keep their default in-memory limit for the small
+ * balance and transfer responses.
+ */
+@Configuration
+@ConditionalOnProperty(name = "roundup.pipeline", havingValue = "reactive")
+public class WebClientConfig {
+
+    @Value("${starling.http.max-connections:200}")
+    private int maxConnections;
+    @Value("${starling.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+    @Value("${starling.http.pool-timeout:1s}")
+    private Duration poolTimeout;
+    @Value("${starling.http.keep-alive:60s}")
+    private Duration keepAlive;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider starlingConnectionProvider() {
+        return ConnectionProvider.builder("starling")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(poolTimeout)
+                .maxIdleTime(keepAlive)
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient starlingWebClient(WebClient.Builder builder, ConnectionProvider starlingConnectionProvider, StarlingApiGuard starlingApiGuard) {
+        HttpClient httpClient = HttpClient.create(starlingConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                // Sends Accept-Encoding: gzip and decompresses responses
+                .compress(true);
+        return builder
+                .baseUrl(API_BASE_URL)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(starlingApiGuard.exchangeFilter())
+                .build();
+    }
+}
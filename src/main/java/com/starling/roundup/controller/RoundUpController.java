@@ -1,17 +1,27 @@
 package com.starling.roundup.controller;
 
+import com.starling.roundup.model.request.EnrolmentRequest;
+import com.starling.roundup.model.request.RoundUpBatchRequest;
+import com.starling.roundup.model.request.RoundUpRangeRequest;
 import com.starling.roundup.model.request.RoundUpRequest;
 import com.starling.roundup.model.response.AccountDetailsResponse;
+import com.starling.roundup.model.response.RoundUpBatchResponse;
 import com.starling.roundup.model.response.RoundUpStatusResponse;
 import com.starling.roundup.service.AccountDetailsService;
 import com.starling.roundup.service.RoundUpService;
+import com.starling.roundup.service.RoundUpStatusWatcher;
+import com.starling.roundup.service.ScheduledRoundUpService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.time.LocalDate;
 
 import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
@@ -29,6 +39,12 @@ public class RoundUpController {
     @Autowired
     private RoundUpService roundUpService;
 
+    @Autowired
+    private RoundUpStatusWatcher roundUpStatusWatcher;
+
+    @Autowired
+    private ScheduledRoundUpService scheduledRoundUpService;
+
     @GetMapping("/account/saving-goals")
     public ResponseEntity<AccountDetailsResponse> getAccountDetails(@RequestHeader("Authorization") String bearerToken) {
         AccountDetailsResponse response = accountDetailsService.getAccountDetails(extractToken(bearerToken));
@@ -36,10 +52,11 @@ public class RoundUpController {
     }
 
     @PostMapping("/round-up")
-    public ResponseEntity<RoundUpStatusResponse> roundUp(@Valid @RequestBody RoundUpRequest request) {
+    public ResponseEntity<RoundUpStatusResponse> roundUp(@RequestHeader("Authorization") String bearerToken, @Valid @RequestBody RoundUpRequest request) {
         String maskedAccountId = maskSensitiveData(request.getAccountUid());
         log.info("Received request to calculate roundup for accountId: {}", maskedAccountId);
         ResponseEntity<RoundUpStatusResponse> response =  roundUpService.initiateRoundUp(
+                extractToken(bearerToken),
                 request.getAccountUid(),
                 maskedAccountId,
                 request.getSavingsGoalUid(),
@@ -49,6 +66,32 @@ public class RoundUpController {
 
     }
 
+    @PostMapping("/round-up/batch")
+    public ResponseEntity<RoundUpBatchResponse> roundUpBatch(@RequestHeader("Authorization") String bearerToken, @Valid @RequestBody RoundUpBatchRequest request) {
+        log.info("Received request to calculate roundup for a batch of {} account weeks", request.getRoundUps().size());
+        // Validate every week before starting any round-up so that a bad item rejects the whole batch
+        request.getRoundUps().forEach(RoundUpRequest::isWeekCommencingValid);
+        RoundUpBatchResponse response = roundUpService.initiateRoundUpBatch(extractToken(bearerToken), request.getRoundUps());
+        log.info("Initiated roundup for a batch of {} account weeks", request.getRoundUps().size());
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/round-up/range")
+    public ResponseEntity<RoundUpBatchResponse> roundUpRange(@RequestHeader("Authorization") String bearerToken, @Valid @RequestBody RoundUpRangeRequest request) {
+        String maskedAccountId = maskSensitiveData(request.getAccountUid());
+        log.info("Received request to calculate roundup for accountId: {} from week commencing {} to {}", maskedAccountId,
+                request.getFromWeekCommencing(), request.getToWeekCommencing());
+        ResponseEntity<RoundUpBatchResponse> response = roundUpService.initiateRoundUpRange(
+                extractToken(bearerToken),
+                request.getAccountUid(),
+                maskedAccountId,
+                request.getSavingsGoalUid(),
+                request.validWeeksCommencing());
+        log.info("Initiated roundup for accountId: {} from week commencing {} to {}", maskedAccountId,
+                request.getFromWeekCommencing(), request.getToWeekCommencing());
+        return response;
+    }
+
     @GetMapping("/round-up/status/{accountId}/{weekCommencing}")
     public ResponseEntity<RoundUpStatusResponse> checkRoundUpStatus(
             @PathVariable String accountId, @PathVariable @DateTimeFormat(iso = DATE) LocalDate weekCommencing) {
@@ -59,4 +102,31 @@ public class RoundUpController {
         return response;
     }
 
+    // Long poll, waits up to waitSeconds (capped by roundup.status-watch.max-wait) for the round-up to finish
+    @GetMapping("/round-up/status/{accountId}/{weekCommencing}/wait")
+    public DeferredResult<ResponseEntity<RoundUpStatusResponse>> awaitRoundUpStatus(
+            @PathVariable String accountId, @PathVariable @DateTimeFormat(iso = DATE) LocalDate weekCommencing,
+            @RequestParam(defaultValue = "30") long waitSeconds) {
+        String maskedAccountId = maskSensitiveData(accountId);
+        log.info("Received request to wait for status of roundup for accountId: {} and weekCommencing: {}", maskedAccountId, weekCommencing);
+        return roundUpStatusWatcher.awaitStatus(accountId, maskedAccountId, weekCommencing, Duration.ofSeconds(Math.max(waitSeconds, 0)));
+    }
+
+    @GetMapping(value = "/round-up/status/{accountId}/{weekCommencing}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamRoundUpStatus(@PathVariable String accountId, @PathVariable @DateTimeFormat(iso = DATE) LocalDate weekCommencing) {
+        String maskedAccountId = maskSensitiveData(accountId);
+        log.info("Received request to stream status of roundup for accountId: {} and weekCommencing: {}", maskedAccountId, weekCommencing);
+        return roundUpStatusWatcher.streamStatus(accountId, maskedAccountId, weekCommencing);
+    }
+
+    // Enrols the account in the weekly scheduled round-up, enrolling again replaces the savings goal. The schedule runs
+    // it with the service credential, so only the owner of the account and goal may enrol them
+    @PostMapping("/round-up/enrolments")
+    public ResponseEntity<Void> enrol(@RequestHeader("Authorization") String bearerToken, @Valid @RequestBody EnrolmentRequest request) {
+        log.info("Received request to enrol accountId: {} in the weekly round-up", maskSensitiveData(request.getAccountUid()));
+        accountDetailsService.verifyOwnership(extractToken(bearerToken), request.getAccountUid(), request.getSavingsGoalUid());
+        scheduledRoundUpService.enrol(request.getAccountUid(), request.getSavingsGoalUid());
+        return ResponseEntity.noContent().build();
+    }
+
 }
@@ -0,0 +1,7 @@
+package com.starling.roundup.entity;
+
+public enum JobState {
+    PENDING,
+    LEASED,
+    DONE
+}
@@ -0,0 +1,35 @@
+package com.starling.roundup.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * An account whose round-up is run every week by the schedule, into the given savings goal.
+ */
+@Entity
+@Table(name = "round_up_enrolments", indexes = {
+        @Index(columnList = "active, accountUid")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoundUpEnrolment {
+
+    @Id
+    private String accountUid;
+
+    @Column(nullable = false)
+    private String savingsGoalUid;
+
+    @Column(nullable = false)
+    private boolean active;
+
+    @Column(nullable = false)
+    private Instant enrolledAt;
+}
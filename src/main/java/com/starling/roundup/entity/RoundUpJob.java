@@ -0,0 +1,62 @@
+package com.starling.roundup.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static jakarta.persistence.EnumType.STRING;
+
+/**
+ * A round-up waiting to be processed, or being processed, by one of the queue workers. A worker owns a LEASED job
+ * until leaseExpiresAt and keeps extending the lease while it works, a job whose lease has run out is picked up
+ * again by any instance.
+ */
+@Entity
+@Table(name = "round_up_jobs", indexes = {
+        @Index(columnList = "state, leaseExpiresAt"),
+        @Index(columnList = "requestId")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoundUpJob {
+
+    @Id
+    private String jobId;
+
+    @Column(nullable = false)
+    private String requestId;
+
+    @Column(nullable = false)
+    private String accountId;
+
+    @Column(nullable = false)
+    private LocalDate weekCommencing;
+
+    @Column(nullable = false)
+    private String goalUid;
+
+    // Kept for the life of the job so a rerun after a crash repeats the same transfer rather than making a new one
+    @Column(nullable = false)
+    private String transferUid;
+
+    @Enumerated(STRING)
+    @Column(nullable = false)
+    private JobState state;
+
+    private String leaseOwner;
+
+    private Instant leaseExpiresAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
@@ -36,6 +36,12 @@ public class RoundUpRequest {
     @Column(nullable = false)
     private long roundUpAmount;
 
+    // Version of the currency rates the amount was calculated with, only set once COMPLETED
+    private String rateVersion;
+
+    // Null until the row is first saved, which is how Spring Data tells a new request from an existing one
+    @Version
+    private Long version;
 
 }
 
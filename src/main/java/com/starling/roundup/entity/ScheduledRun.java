@@ -0,0 +1,53 @@
+package com.starling.roundup.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static jakarta.persistence.EnumType.STRING;
+
+/**
+ * Progress of the scheduled round-up of every enrolled account for one week. Saved after each page of enrolments,
+ * so a run that was interrupted carries on after lastAccountUid.
+ */
+@Entity
+@Table(name = "round_up_scheduled_runs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledRun {
+
+    @Id
+    private LocalDate weekCommencing;
+
+    @Enumerated(STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    // Enrolments are walked in accountUid order, everything up to and including this one has been processed
+    private String lastAccountUid;
+
+    @Column(nullable = false)
+    private int processed;
+
+    @Column(nullable = false)
+    private int completed;
+
+    @Column(nullable = false)
+    private int failed;
+
+    // Round-ups that had already been completed or started, e.g. by the client
+    @Column(nullable = false)
+    private int skipped;
+
+    @Column(nullable = false)
+    private Instant startedAt;
+
+    private Instant finishedAt;
+}
@@ -0,0 +1,23 @@
+package com.starling.roundup.event;
+
+import com.starling.roundup.entity.Status;
+
+import java.time.LocalDate;
+
+/**
+ * Published on every instance once a round-up has reached COMPLETED or FAILED.
+ */
+public record RoundUpStatusChangedEvent(String accountId, LocalDate weekCommencing, Status status, long roundUpAmount) {
+
+    private static final char SEPARATOR = ':';
+
+    // Sent over Redis pub/sub as accountId:weekCommencing:STATUS:amount, account ids are UUIDs so never contain ':'
+    public String encode() {
+        return accountId + SEPARATOR + weekCommencing + SEPARATOR + status.name() + SEPARATOR + roundUpAmount;
+    }
+
+    public static RoundUpStatusChangedEvent decode(String message) {
+        String[] parts = message.split(String.valueOf(SEPARATOR), 4);
+        return new RoundUpStatusChangedEvent(parts[0], LocalDate.parse(parts[1]), Status.valueOf(parts[2]), Long.parseLong(parts[3]));
+    }
+}
@@ -0,0 +1,8 @@
+package com.starling.roundup.exception;
+
+// The account or savings goal in a request does not belong to the holder of the bearer token
+public class AccountOwnershipException extends RuntimeException {
+    public AccountOwnershipException(String message) {
+        super(message);
+    }
+}
@@ -4,7 +4,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.starling.roundup.model.response.ErrorResponse;
 import com.starling.roundup.model.response.StarlingError;
 import com.starling.roundup.model.response.StarlingErrorResponse;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
@@ -52,6 +54,28 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponse(ex.getMessage()));
     }
 
+    @ExceptionHandler(AccountOwnershipException.class)
+    public ResponseEntity<ErrorResponse> handleAccountOwnershipException(AccountOwnershipException ex) {
+        log.warn("Rejected request for an account or savings goal not owned by the caller: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(new ErrorResponse(ex.getMessage()));
+    }
+
+    @ExceptionHandler(StarlingApiLimitExceededException.class)
+    public ResponseEntity<ErrorResponse> handleStarlingApiLimitExceededException(StarlingApiLimitExceededException ex) {
+        log.warn("Starling API call shed: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse("Starling API is busy. Please try again later."));
+    }
+
+    @ExceptionHandler(CallNotPermittedException.class)
+    public ResponseEntity<ErrorResponse> handleCallNotPermittedException(CallNotPermittedException ex) {
+        log.warn("Starling API call not made: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ErrorResponse("Starling API is currently unavailable. Please try again later."));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception ex) {
         log.error("Unexpected error occurred: {}", ex.getMessage(), ex);
@@ -66,6 +90,10 @@ public class GlobalExceptionHandler {
 
         log.error("An error occurred when calling Starling API: Status: {}, Error: {}", status, ex.getMessage());
 
+        if (status == null) {
+            // No response from Starling, or one this service could not use
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(new ErrorResponse("Starling API could not be reached. Please try again later."));
+        }
         if (status.is4xxClientError()) {
             StarlingErrorResponse starlingError = parseStarlingErrorResponse(ex.getResponseBody());
             errorMessage = starlingError.getConcatenatedErrorMessages();
@@ -0,0 +1,29 @@
+package com.starling.roundup.exception;
+
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.function.Predicate;
+
+/**
+ * Decides which failures of the blocking Starling clients are retried. The clients wrap every RestTemplate error in a
+ * {@link StarlingApiException}, so the I/O error or 5xx response is picked out from the wrapper. Client errors,
+ * unexpected responses, and calls rejected by the circuit breaker or our own limits are not retried. Nor is a call made
+ * by a thread that has been interrupted, its caller has cancelled it and is no longer waiting for the answer.
+ */
+public class RetryableStarlingApiFailure implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable throwable) {
+        if (Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        if (throwable instanceof StarlingApiException e) {
+            if (e.getStatus() != null) {
+                return e.getStatus().is5xxServerError();
+            }
+            return e.getCause() instanceof ResourceAccessException;
+        }
+        return throwable instanceof ResourceAccessException || throwable instanceof HttpServerErrorException;
+    }
+}
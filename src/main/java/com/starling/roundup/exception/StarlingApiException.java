@@ -12,6 +12,11 @@ public class StarlingApiException extends RuntimeException {
         super(message);
     }
 
+    // Starling could not be reached or did not answer in time, the cause is the I/O error
+    public StarlingApiException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
     public StarlingApiException(HttpStatusCode status, String responseBody) {
         super(responseBody);  // Store response body as message
         this.status = status;
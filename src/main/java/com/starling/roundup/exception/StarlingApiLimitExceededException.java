@@ -0,0 +1,12 @@
+package com.starling.roundup.exception;
+
+/**
+ * Thrown without calling Starling when a call would go over the client side rate or concurrency limit of its
+ * endpoint. Not retried, retrying would only add to the load the limits are there to shed.
+ */
+public class StarlingApiLimitExceededException extends RuntimeException {
+
+    public StarlingApiLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,156 @@
+package com.starling.roundup.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Actuator endpoint managing a continuous Java Flight Recorder recording, bounded by age and size so it can be left
+ * running. Uses the JDK's default settings, which are meant to be always on, plus the round-up events.
+ * <ul>
+ *     <li>GET /actuator/jfr shows whether it is recording</li>
+ *     <li>POST /actuator/jfr/start starts it, optionally with maxAge and maxSize</li>
+ *     <li>POST /actuator/jfr/dump writes what has been recorded so far to roundup.jfr.dump-dir and keeps recording</li>
+ *     <li>POST /actuator/jfr/stop writes the recording to roundup.jfr.dump-dir and stops it</li>
+ * </ul>
+ * The endpoint writes to disk, so it is not exposed over the web by default. Expose it over JMX, or on a management
+ * port only operators can reach. maxAge and maxSize can only lower roundup.jfr.max-age and roundup.jfr.max-size,
+ * and only the newest roundup.jfr.max-dumps dumps are kept.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "jfr")
+public class JfrRecordingEndpoint {
+
+    private static final String RECORDING_NAME = "roundup-continuous";
+    private static final String DUMP_PREFIX = "roundup-";
+    private static final String DUMP_SUFFIX = ".jfr";
+
+    @Value("${roundup.jfr.record-on-startup:false}")
+    private boolean recordOnStartup;
+    @Value("${roundup.jfr.max-age:6h}")
+    private Duration defaultMaxAge;
+    @Value("${roundup.jfr.max-size:250MB}")
+    private DataSize defaultMaxSize;
+    @Value("${roundup.jfr.dump-dir:${java.io.tmpdir}}")
+    private Path dumpDir;
+    @Value("${roundup.jfr.max-dumps:5}")
+    private int maxDumps;
+
+    private Recording recording;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() throws IOException, ParseException {
+        if (recordOnStartup) {
+            start(null, null);
+        }
+    }
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("recording", recording != null);
+        if (recording != null) {
+            status.put("startTime", recording.getStartTime());
+            status.put("maxAge", recording.getMaxAge());
+            status.put("maxSize", DataSize.ofBytes(recording.getMaxSize()).toString());
+        }
+        return status;
+    }
+
+    /**
+     * @param action start, dump or stop
+     * @param maxAge only used by start, e.g. 1h, at most roundup.jfr.max-age
+     * @param maxSize only used by start, e.g. 100MB, at most roundup.jfr.max-size
+     */
+    @WriteOperation
+    public synchronized Map<String, Object> action(@Selector String action, @Nullable String maxAge, @Nullable String maxSize) throws IOException, ParseException {
+        return switch (action) {
+            case "start" -> start(maxAge, maxSize);
+            case "dump" -> recording == null ? status() : Map.of("recording", true, "dumped", dump().toString());
+            case "stop" -> {
+                if (recording == null) {
+                    yield status();
+                }
+                Path file = dump();
+                close();
+                yield Map.of("recording", false, "dumped", file.toString());
+            }
+            default -> throw new IllegalArgumentException("Unknown JFR action: " + action + ", use start, dump or stop");
+        };
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+            log.info("Stopped JFR recording");
+        }
+    }
+
+    private synchronized Map<String, Object> start(String maxAge, String maxSize) throws IOException, ParseException {
+        if (recording != null) {
+            return status();
+        }
+        Recording newRecording = new Recording(Configuration.getConfiguration("default"));
+        newRecording.setName(RECORDING_NAME);
+        newRecording.setToDisk(true);
+        Duration requestedMaxAge = maxAge != null ? DurationStyle.detectAndParse(maxAge) : defaultMaxAge;
+        long requestedMaxSize = maxSize != null ? DataSize.parse(maxSize).toBytes() : defaultMaxSize.toBytes();
+        newRecording.setMaxAge(requestedMaxAge.compareTo(defaultMaxAge) < 0 ? requestedMaxAge : defaultMaxAge);
+        newRecording.setMaxSize(Math.min(requestedMaxSize, defaultMaxSize.toBytes()));
+        newRecording.enable(RoundUpStageEvent.class);
+        newRecording.enable(RoundUpClaimEvent.class);
+        newRecording.start();
+        recording = newRecording;
+        log.info("Started JFR recording, max age: {}, max size: {}", recording.getMaxAge(), DataSize.ofBytes(recording.getMaxSize()));
+        return status();
+    }
+
+    private Path dump() throws IOException {
+        Files.createDirectories(dumpDir);
+        Path file = dumpDir.resolve(DUMP_PREFIX + Instant.now().toString().replace(':', '-') + DUMP_SUFFIX);
+        recording.dump(file);
+        log.info("Dumped JFR recording to {}", file);
+        deleteOldDumps();
+        return file;
+    }
+
+    // Dump names start with the time they were written, so sorting them by name sorts them oldest first
+    private void deleteOldDumps() throws IOException {
+        List<Path> dumps;
+        try (Stream<Path> files = Files.list(dumpDir)) {
+            dumps = files.filter(file -> file.getFileName().toString().startsWith(DUMP_PREFIX) && file.getFileName().toString().endsWith(DUMP_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (Path dump : dumps.subList(0, Math.max(0, dumps.size() - maxDumps))) {
+            Files.deleteIfExists(dump);
+            log.info("Deleted old JFR dump {}", dump);
+        }
+    }
+}
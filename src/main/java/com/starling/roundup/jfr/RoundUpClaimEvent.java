@@ -0,0 +1,38 @@
+package com.starling.roundup.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Deciding whether a round-up request may be processed, the lock, gate or conditional insert depending on
+ * roundup.idempotency.mode. Filled in and written the same way as {@link RoundUpStageEvent}.
+ */
+@Name("com.starling.roundup.RoundUpClaim")
+@Label("Round-up Lock Acquisition")
+@Category({"Starling", "Round-up"})
+@Description("Idempotency check and lock taken before a round-up is processed")
+@StackTrace(false)
+public class RoundUpClaimEvent extends Event {
+
+    @Label("Request Id")
+    @Description("Empty when the round-up was turned away before a request was saved")
+    public String requestId;
+
+    @Label("Account")
+    @Description("Masked accountUid")
+    public String accountUid;
+
+    @Label("Week Commencing")
+    public String weekCommencing;
+
+    @Label("Mode")
+    public String mode;
+
+    @Label("Outcome")
+    @Description("IN_PROGRESS when this request may process the round-up, otherwise the status it was answered with")
+    public String outcome;
+}
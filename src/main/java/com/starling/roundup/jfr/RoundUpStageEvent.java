@@ -0,0 +1,73 @@
+package com.starling.roundup.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.function.Supplier;
+
+/**
+ * One stage of processing a round-up, so a recording shows where a particular slow round-up spent its time.
+ * Stack traces are off and the fields are only filled in when the event is going to be written, so with no
+ * recording running, or the event below the recording's threshold, a stage costs a couple of clock reads.
+ */
+@Name("com.starling.roundup.RoundUpStage")
+@Label("Round-up Stage")
+@Category({"Starling", "Round-up"})
+@Description("A stage of processing one round-up")
+@StackTrace(false)
+public class RoundUpStageEvent extends Event {
+
+    public static final String FEED_FETCH = "FEED_FETCH";
+    public static final String COMPUTE = "COMPUTE";
+    public static final String BALANCE_CHECK = "BALANCE_CHECK";
+    public static final String TRANSFER = "TRANSFER";
+    public static final String STATUS_UPDATE = "STATUS_UPDATE";
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Account")
+    @Description("Masked accountUid")
+    String accountUid;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    /**
+     * Runs the stage and records it, whether it returns or throws.
+     * @param maskedAccountUid already masked, the event is written to disk
+     */
+    public static <T> T record(String stage, String requestId, String maskedAccountUid, Supplier<T> work) {
+        RoundUpStageEvent event = new RoundUpStageEvent();
+        event.begin();
+        boolean succeeded = false;
+        try {
+            T result = work.get();
+            succeeded = true;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage;
+                event.requestId = requestId;
+                event.accountUid = maskedAccountUid;
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+    }
+
+    public static void record(String stage, String requestId, String maskedAccountUid, Runnable work) {
+        record(stage, requestId, maskedAccountUid, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,32 @@
+package com.starling.roundup.lock;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-JVM locks for a single instance, no network call and no lock objects kept once released. A lock is held while
+ * its name is in the set, so taking and releasing one is a single atomic add or remove on the concurrent set.
+ * Locks are not striped on purpose, with tryLock two round-ups sharing a stripe would turn away each other.
+ */
+@Component
+@Profile("single-node")
+public class LocalLockProvider implements LockProvider {
+
+    private final Set<String> heldLocks = ConcurrentHashMap.newKeySet();
+    private final LockMetrics lockMetrics;
+
+    public LocalLockProvider(LockMetrics lockMetrics) {
+        this.lockMetrics = lockMetrics;
+    }
+
+    @Override
+    public Optional<HeldLock> tryLock(String name) {
+        boolean acquired = heldLocks.add(name);
+        lockMetrics.record("local", name, acquired);
+        return acquired ? Optional.of(() -> heldLocks.remove(name)) : Optional.empty();
+    }
+}
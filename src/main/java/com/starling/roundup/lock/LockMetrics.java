@@ -0,0 +1,26 @@
+package com.starling.roundup.lock;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts lock attempts by result, tagged with the part of the lock name before the first ':' so that the account and
+ * week in the name do not become tags.
+ */
+@Component
+public class LockMetrics {
+
+    private final MeterRegistry registry;
+
+    public LockMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    void record(String provider, String name, boolean acquired) {
+        int separator = name.indexOf(':');
+        registry.counter("roundup.lock.acquire", "provider", provider, "lock", separator < 0 ? name : name.substring(0, separator),
+                "result", acquired ? "acquired" : "busy").increment();
+    }
+}
@@ -0,0 +1,23 @@
+package com.starling.roundup.lock;
+
+import java.util.Optional;
+
+/**
+ * Non-blocking named locks used to stop the same round-up from being started twice at once. The Redisson
+ * implementation works across instances, the local one only within this JVM and is meant for single-node
+ * deployments (the single-node profile).
+ */
+public interface LockProvider {
+
+    /**
+     * Takes the lock if nobody holds it, without waiting.
+     * @return the held lock, to be closed by the same thread, or empty if the lock is held elsewhere
+     */
+    Optional<HeldLock> tryLock(String name);
+
+    interface HeldLock extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,29 @@
+package com.starling.roundup.lock;
+
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+@Component
+@Profile("!single-node")
+public class RedissonLockProvider implements LockProvider {
+
+    private final RedissonClient redissonClient;
+    private final LockMetrics lockMetrics;
+
+    public RedissonLockProvider(RedissonClient redissonClient, LockMetrics lockMetrics) {
+        this.redissonClient = redissonClient;
+        this.lockMetrics = lockMetrics;
+    }
+
+    @Override
+    public Optional<HeldLock> tryLock(String name) {
+        RLock lock = redissonClient.getLock(name);
+        boolean acquired = lock.tryLock();
+        lockMetrics.record("redisson", name, acquired);
+        return acquired ? Optional.of(lock::unlock) : Optional.empty();
+    }
+}
@@ -2,21 +2,34 @@ package com.starling.roundup.model.common;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import lombok.AllArgsConstructor;
+import com.starling.roundup.util.CurrencyCodes;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.math.BigDecimal;
 
 @Getter
-@Setter
-@AllArgsConstructor
 public class Amount {
     private String currency;
 
+    // Packed by CurrencyCodes when the currency is set, so converting the amount never has to pack the String again
+    @JsonIgnore
+    private int currencyCode;
+
+    @Setter
     @JsonProperty("minorUnits")
     private long minorUnits;
 
+    public Amount(String currency, long minorUnits) {
+        setCurrency(currency);
+        this.minorUnits = minorUnits;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+        this.currencyCode = CurrencyCodes.pack(currency);
+    }
+
     @JsonIgnore
     public BigDecimal getAmountInPounds() {
         return BigDecimal.valueOf(minorUnits).divide(BigDecimal.valueOf(100)); // Convert to pounds
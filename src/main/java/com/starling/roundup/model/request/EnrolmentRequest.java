@@ -0,0 +1,16 @@
+package com.starling.roundup.model.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class EnrolmentRequest {
+
+    @NotBlank(message = "accountUid is required.")
+    private String accountUid;
+
+    @NotBlank(message = "savingsGoalUid is required.")
+    private String savingsGoalUid;
+}
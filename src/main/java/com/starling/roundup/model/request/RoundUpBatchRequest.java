@@ -0,0 +1,18 @@
+package com.starling.roundup.model.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class RoundUpBatchRequest {
+
+    @NotEmpty(message = "roundUps must contain at least one round-up request.")
+    @Size(max = 1000, message = "A batch can contain at most 1000 round-up requests.")
+    private List<@Valid RoundUpRequest> roundUps;
+}
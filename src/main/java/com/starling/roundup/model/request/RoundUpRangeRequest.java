@@ -0,0 +1,53 @@
+package com.starling.roundup.model.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.starling.roundup.model.request.RoundUpRequest.validateWeekCommencing;
+
+@Getter
+@Setter
+public class RoundUpRangeRequest {
+
+    public static final int MAX_WEEKS = 52;
+
+    @NotNull(message = "accountUid is required.")
+    private String accountUid;
+
+    @NotBlank(message = "savingsGoalUid is required.")
+    private String savingsGoalUid;
+
+    @NotBlank(message = "fromWeekCommencing date is required.")
+    @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}", message = "Date must be in the format yyyy-MM-dd.")
+    private String fromWeekCommencing;
+
+    @NotBlank(message = "toWeekCommencing date is required.")
+    @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}", message = "Date must be in the format yyyy-MM-dd.")
+    private String toWeekCommencing;
+
+    // Both ends must be Mondays of completed weeks, the range is inclusive and at most MAX_WEEKS long
+    public List<LocalDate> validWeeksCommencing() {
+        LocalDate from = validateWeekCommencing(this.fromWeekCommencing);
+        LocalDate to = validateWeekCommencing(this.toWeekCommencing);
+
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("toWeekCommencing must not be before fromWeekCommencing");
+        }
+
+        List<LocalDate> weeks = new ArrayList<>();
+        for (LocalDate week = from; !week.isAfter(to); week = week.plusWeeks(1)) {
+            if (weeks.size() == MAX_WEEKS) {
+                throw new IllegalArgumentException("A range can cover at most " + MAX_WEEKS + " weeks");
+            }
+            weeks.add(week);
+        }
+        return weeks;
+    }
+}
@@ -26,9 +26,13 @@ public class RoundUpRequest {
 
     // Week commencing should be Monday and the week has already ended
     public LocalDate isWeekCommencingValid() {
+        return validateWeekCommencing(this.weekCommencing);
+    }
+
+    static LocalDate validateWeekCommencing(String weekCommencing) {
         LocalDate date;
         try {
-            date = LocalDate.parse(this.weekCommencing);
+            date = LocalDate.parse(weekCommencing);
         } catch (Exception e) {
             throw new IllegalArgumentException("Invalid date format. Could not parse weekCommencing DATE");
         }
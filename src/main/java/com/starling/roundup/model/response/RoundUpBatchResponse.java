@@ -0,0 +1,15 @@
+package com.starling.roundup.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class RoundUpBatchResponse {
+
+    private List<RoundUpBatchItemResponse> results;
+}
@@ -0,0 +1,30 @@
+package com.starling.roundup.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.starling.roundup.entity.Status;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledRunProgressResponse {
+
+    private String weekCommencing;
+    private Status status;
+    private long enrolled;
+    private int processed;
+    private int completed;
+    private int failed;
+    private int skipped;
+    private Instant startedAt;
+    @JsonInclude(NON_NULL)
+    private Instant finishedAt;
+}
@@ -0,0 +1,34 @@
+package com.starling.roundup.model.response;
+
+import com.starling.roundup.util.CurrencyCodes;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The fields of a settled transaction that the round-up calculation needs, as read by
+ * {@link com.starling.roundup.client.StarlingFeedParser}. A single instance is reused for every item
+ * in a feed so consumers must copy anything they want to keep.
+ */
+@Getter
+@Setter
+public class StreamedFeedItem {
+
+    private String feedItemUid;
+    private TransactionDirection direction;
+    // Packed by CurrencyCodes
+    private int currencyCode = CurrencyCodes.UNKNOWN;
+    private long minorUnits;
+    private String transactionTime;
+
+    public void clear() {
+        feedItemUid = null;
+        direction = null;
+        currencyCode = CurrencyCodes.UNKNOWN;
+        minorUnits = 0;
+        transactionTime = null;
+    }
+
+    public String getCurrency() {
+        return CurrencyCodes.unpack(currencyCode);
+    }
+}
@@ -0,0 +1,18 @@
+package com.starling.roundup.repository;
+
+import com.starling.roundup.entity.RoundUpEnrolment;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RoundUpEnrolmentRepository extends JpaRepository<RoundUpEnrolment, String> {
+
+    // Keyset paging, each page starts after the last accountUid of the previous one so the cost of a page does not
+    // grow with how far into the run it is
+    List<RoundUpEnrolment> findByActiveTrueAndAccountUidGreaterThanOrderByAccountUidAsc(String accountUid, Limit limit);
+
+    long countByActiveTrue();
+}
@@ -0,0 +1,50 @@
+package com.starling.roundup.repository;
+
+import com.starling.roundup.entity.RoundUpJob;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Claims are conditional updates rather than SELECT ... FOR UPDATE SKIP LOCKED so that they work the same on every
+ * database. Several instances may see the same candidate, the one whose update changes the row owns the job.
+ */
+@Repository
+public interface RoundUpJobRepository extends JpaRepository<RoundUpJob, String> {
+
+    @Query("SELECT j.jobId FROM RoundUpJob j WHERE j.state = com.starling.roundup.entity.JobState.PENDING " +
+            "OR (j.state = com.starling.roundup.entity.JobState.LEASED AND j.leaseExpiresAt < :now) ORDER BY j.createdAt")
+    List<String> findClaimableJobIds(Instant now, Pageable page);
+
+    boolean existsByRequestId(String requestId);
+
+    @Query("SELECT j.requestId FROM RoundUpJob j WHERE j.requestId IN :requestIds")
+    Set<String> findQueuedRequestIds(Collection<String> requestIds);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE RoundUpJob j SET j.state = com.starling.roundup.entity.JobState.LEASED, j.leaseOwner = :owner, j.leaseExpiresAt = :leaseExpiresAt, " +
+            "j.attempts = j.attempts + 1 WHERE j.jobId = :jobId AND (j.state = com.starling.roundup.entity.JobState.PENDING " +
+            "OR (j.state = com.starling.roundup.entity.JobState.LEASED AND j.leaseExpiresAt < :now))")
+    int claim(String jobId, String owner, Instant now, Instant leaseExpiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE RoundUpJob j SET j.leaseExpiresAt = :leaseExpiresAt WHERE j.jobId IN :jobIds AND j.leaseOwner = :owner " +
+            "AND j.state = com.starling.roundup.entity.JobState.LEASED")
+    int extendLeases(Collection<String> jobIds, String owner, Instant leaseExpiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE RoundUpJob j SET j.state = com.starling.roundup.entity.JobState.DONE, j.leaseExpiresAt = null " +
+            "WHERE j.jobId = :jobId AND j.leaseOwner = :owner")
+    int complete(String jobId, String owner);
+}
@@ -9,16 +9,40 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RoundUpRequestRepository extends JpaRepository<RoundUpRequest, String> {
     Optional<RoundUpRequest> findByAccountIdAndWeekCommencing(String accountUid, LocalDate weekCommencing);
 
+    // Single IN query for a batch, may return extra account/week combinations which the caller filters out
+    List<RoundUpRequest> findByAccountIdInAndWeekCommencingIn(Collection<String> accountIds, Collection<LocalDate> weeksCommencing);
+
     boolean existsByAccountIdAndWeekCommencingAndStatus(String accountId, LocalDate weekCommencing, Status status);
 
     @Modifying
     @Transactional
-    @Query("UPDATE RoundUpRequest r SET r.status = :status, r.roundUpAmount = :amount WHERE r.accountId = :accountId AND r.weekCommencing = :weekCommencing")
-    void updateStatusAndAmountByAccountAndWeek(String accountId, LocalDate weekCommencing, Status status, long amount);
+    @Query("UPDATE RoundUpRequest r SET r.status = :status, r.roundUpAmount = :amount, r.rateVersion = :rateVersion, r.version = r.version + 1 " +
+            "WHERE r.accountId = :accountId AND r.weekCommencing = :weekCommencing")
+    void updateStatusAndAmountByAccountAndWeek(String accountId, LocalDate weekCommencing, Status status, long amount, String rateVersion);
+
+    // Inserts the request unless the account and week already has one. Returns 1 if this call inserted it, 0 otherwise.
+    // A concurrent insert of the same account and week fails on the unique constraint instead
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = "INSERT INTO round_up_requests (request_id, account_id, week_commencing, status, round_up_amount, version) " +
+            "SELECT :requestId, :accountId, :weekCommencing, 'IN_PROGRESS', 0, 0 WHERE NOT EXISTS " +
+            "(SELECT 1 FROM round_up_requests WHERE account_id = :accountId AND week_commencing = :weekCommencing)")
+    int insertInProgressIfAbsent(String requestId, String accountId, LocalDate weekCommencing);
+
+    // Moves a FAILED request back to IN_PROGRESS. Returns 1 for the one caller that made the change, the version stops a
+    // request that failed again in the meantime from being claimed with an out of date read
+    @Modifying
+    @Transactional
+    @Query("UPDATE RoundUpRequest r SET r.status = com.starling.roundup.entity.Status.IN_PROGRESS, r.version = r.version + 1 " +
+            "WHERE r.accountId = :accountId AND r.weekCommencing = :weekCommencing " +
+            "AND r.status = com.starling.roundup.entity.Status.FAILED AND r.version = :version")
+    int retryFailed(String accountId, LocalDate weekCommencing, long version);
 }
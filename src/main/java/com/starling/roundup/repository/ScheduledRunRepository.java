@@ -0,0 +1,17 @@
+package com.starling.roundup.repository;
+
+import com.starling.roundup.entity.ScheduledRun;
+import com.starling.roundup.entity.Status;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface ScheduledRunRepository extends JpaRepository<ScheduledRun, LocalDate> {
+
+    Optional<ScheduledRun> findFirstByOrderByWeekCommencingDesc();
+
+    Optional<ScheduledRun> findFirstByStatusOrderByWeekCommencingDesc(Status status);
+}
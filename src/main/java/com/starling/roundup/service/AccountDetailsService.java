@@ -1,7 +1,9 @@
 package com.starling.roundup.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.starling.roundup.client.StarlingAccountApiClient;
 import com.starling.roundup.client.StarlingGoalsApiClient;
+import com.starling.roundup.exception.AccountOwnershipException;
 import com.starling.roundup.model.response.AccountDetailsResponse;
 import com.starling.roundup.model.response.SavingsGoal;
 import com.starling.roundup.model.response.StarlingAccount;
@@ -12,6 +14,7 @@ import org.springframework.stereotype.Service;
 import java.util.List;
 
 import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
+import static com.starling.roundup.util.TokenUtils.hashToken;
 
 @Slf4j
 @Service
@@ -19,10 +22,15 @@ public class AccountDetailsService {
 
     private final StarlingAccountApiClient accountsApiClient;
     private final StarlingGoalsApiClient goalsApiClient;
+    private final Cache<String, StarlingAccount> primaryAccountCache;
+    private final Cache<String, List<SavingsGoal>> activeGoalsCache;
 
-    public AccountDetailsService(StarlingAccountApiClient accountsApiClient, StarlingGoalsApiClient goalsApiClient) {
+    public AccountDetailsService(StarlingAccountApiClient accountsApiClient, StarlingGoalsApiClient goalsApiClient,
+                                 Cache<String, StarlingAccount> primaryAccountCache, Cache<String, List<SavingsGoal>> activeGoalsCache) {
         this.accountsApiClient = accountsApiClient;
         this.goalsApiClient = goalsApiClient;
+        this.primaryAccountCache = primaryAccountCache;
+        this.activeGoalsCache = activeGoalsCache;
     }
 
     public AccountDetailsResponse getAccountDetails(String authToken) {
@@ -36,27 +44,54 @@ public class AccountDetailsService {
         return buildAccountDetailsResponse(account, savingGoals);
     }
 
+    /**
+     * Checks that the account is the primary account of the token holder and the savings goal is one of its active
+     * goals, using the same cached /accounts and /savings-goals lookups as {@link #getAccountDetails}.
+     * @throws AccountOwnershipException if either belongs to someone else or does not exist
+     */
+    public void verifyOwnership(String authToken, String accountUid, String savingsGoalUid) {
+        StarlingAccount account = fetchPrimaryAccount(authToken);
+        if (!account.getAccountUid().equals(accountUid)) {
+            throw new AccountOwnershipException("Account is not the primary account of the token holder");
+        }
+        // The account has just been checked, so the goals cached for it were fetched by its owner
+        List<SavingsGoal> savingsGoals = fetchActiveGoals(authToken, accountUid);
+        if (savingsGoals == null || savingsGoals.stream().noneMatch(goal -> goal.getSavingsGoalUid().equals(savingsGoalUid))) {
+            throw new AccountOwnershipException("Savings goal is not an active savings goal of the account");
+        }
+        log.info("Verified ownership of accountUid: {} and savingsGoalUid: {}", maskSensitiveData(accountUid), maskSensitiveData(savingsGoalUid));
+    }
+
     private StarlingAccount fetchPrimaryAccount(String authToken) {
         String maskedToken = maskSensitiveData(authToken);
-        // Fetch accounts and return primary  account
-        StarlingAccount account = accountsApiClient.getPrimaryAccount(authToken);
+        // Fetch accounts and return primary account, unless it was fetched for this token recently
+        StarlingAccount account = primaryAccountCache.get(hashToken(authToken), key -> accountsApiClient.getPrimaryAccount(authToken));
         log.info("Successfully retrieved Primary account for token: {}", maskedToken);
         return account;
     }
 
     private SavingsGoalsWrapper fetchOrCreateActiveGoals(String authToken, String accountUid) {
-        // Fetch all active GBP savings goals
-        List<SavingsGoal> savingsGoals = goalsApiClient.getActiveGoals(authToken, accountUid);
+        List<SavingsGoal> savingsGoals = fetchActiveGoals(authToken, accountUid);
         boolean createdNewGoal = false;
-        if (savingsGoals.isEmpty()) {
+        if (savingsGoals == null) {
             // Create a new goal if none exists
             savingsGoals = goalsApiClient.createNewGoal(authToken, accountUid);
+            // The cached list is now out of date, the next call fetches the goals including the new one
+            activeGoalsCache.invalidate(accountUid);
             createdNewGoal = true;
         }
 
         return new SavingsGoalsWrapper(savingsGoals, createdNewGoal);
     }
 
+    // Fetch all active GBP savings goals. An empty result is not cached so the next call creates a goal straight away
+    private List<SavingsGoal> fetchActiveGoals(String authToken, String accountUid) {
+        return activeGoalsCache.get(accountUid, key -> {
+            List<SavingsGoal> activeGoals = goalsApiClient.getActiveGoals(authToken, accountUid);
+            return activeGoals.isEmpty() ? null : activeGoals;
+        });
+    }
+
     private AccountDetailsResponse buildAccountDetailsResponse(StarlingAccount account, SavingsGoalsWrapper savingsGoals) {
         AccountDetailsResponse response = new AccountDetailsResponse();
         response.setAccountUid(account.getAccountUid());
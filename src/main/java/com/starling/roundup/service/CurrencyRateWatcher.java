@@ -0,0 +1,103 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.util.CurrencyConverter;
+import com.starling.roundup.util.CurrencyRateTable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Loads the currency rates from roundup.currency-rates.file instead of the bundled currencyRates.json, and loads
+ * them again whenever the file changes so new rates are used without a restart.
+ * <p>
+ * The new table is built on the watcher thread and then swapped in, round-ups never wait for a reload. A file that
+ * can not be read or parsed, for example one that is only half written, is logged and the rates in use are kept
+ * until the next change. Any change in the directory is checked, which also picks up files that are replaced by
+ * a rename or a symlink swap, and content that has not changed is not loaded again.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "roundup.currency-rates.file")
+public class CurrencyRateWatcher {
+
+    private final Path ratesFile;
+    // Waited after a change before reading so a file being written has time to be finished
+    private final Duration settleTime;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    public CurrencyRateWatcher(@Value("${roundup.currency-rates.file}") Path ratesFile,
+                               @Value("${roundup.currency-rates.settle-time:500ms}") Duration settleTime) {
+        this.ratesFile = ratesFile.toAbsolutePath();
+        this.settleTime = settleTime;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        // Fail at startup rather than quietly run with the bundled rates
+        useIfChanged(CurrencyRateTable.parse(Files.readAllBytes(ratesFile)));
+        watchService = ratesFile.getFileSystem().newWatchService();
+        ratesFile.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        watcher = Thread.ofPlatform().daemon().name("currency-rate-watcher").start(this::watch);
+        log.info("Watching {} for currency rate changes", ratesFile);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        watchService.close();
+        watcher.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Thread.sleep(settleTime.toMillis());
+                key.pollEvents();
+                if (!key.reset()) {
+                    // The directory was deleted or can no longer be read, no more changes will be seen
+                    log.error("Stopped watching {} for currency rate changes, its directory is no longer accessible. Keeping version: {}", ratesFile,
+                            CurrencyConverter.currentRates().getVersion());
+                    return;
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.info("Stopped watching {} for currency rate changes", ratesFile);
+        }
+    }
+
+    boolean isWatching() {
+        return watcher != null && watcher.isAlive();
+    }
+
+    void reload() {
+        try {
+            useIfChanged(CurrencyRateTable.parse(Files.readAllBytes(ratesFile)));
+        } catch (Exception e) {
+            log.error("Could not load currency rates from {}, keeping version: {} - Exception: {}", ratesFile,
+                    CurrencyConverter.currentRates().getVersion(), e.getMessage());
+        }
+    }
+
+    private static void useIfChanged(CurrencyRateTable rates) {
+        if (!rates.getVersion().equals(CurrencyConverter.currentRates().getVersion())) {
+            CurrencyConverter.useRates(rates);
+        }
+    }
+}
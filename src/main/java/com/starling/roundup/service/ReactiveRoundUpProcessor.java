@@ -0,0 +1,147 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.client.StarlingReactiveApiClient;
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.exception.InsufficientFundsException;
+import com.starling.roundup.exception.StarlingApiException;
+import com.starling.roundup.repository.RoundUpRequestRepository;
+import com.starling.roundup.util.CurrencyConverter;
+import com.starling.roundup.util.CurrencyRateTable;
+import com.starling.roundup.util.RoundUpAccumulator;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static com.starling.roundup.entity.Status.COMPLETED;
+import static com.starling.roundup.entity.Status.FAILED;
+import static com.starling.roundup.util.LoggingUtils.REQUEST_ID;
+import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
+
+/**
+ * Reactive version of {@link RoundUpAsyncService#processRoundUpAsync}, enabled with roundup.pipeline=reactive.
+ * The feed fetch, balance check and transfer are composed without blocking a thread while Starling responds,
+ * so a handful of event loop threads can carry all in-flight round-ups. The feed is parsed as it arrives, so like
+ * the blocking pipeline's streamed feed it is never held in memory as a whole. The status update still goes through
+ * JPA, which blocks, so it runs on the bounded elastic scheduler instead of the event loop.
+ */
+@Slf4j
+@Service
+@Primary
+@ConditionalOnProperty(name = "roundup.pipeline", havingValue = "reactive")
+public class ReactiveRoundUpProcessor implements RoundUpProcessor {
+
+    private final StarlingReactiveApiClient starlingApiClient;
+    private final RoundUpRequestRepository roundUpRequestRepository;
+    private final RoundUpStatusCache roundUpStatusCache;
+    private final RoundUpStatusNotifier roundUpStatusNotifier;
+    private final RoundUpGate roundUpGate;
+    private final RoundUpMetrics roundUpMetrics;
+
+    public ReactiveRoundUpProcessor(StarlingReactiveApiClient starlingApiClient, RoundUpRequestRepository roundUpRequestRepository,
+                                    RoundUpStatusCache roundUpStatusCache, RoundUpStatusNotifier roundUpStatusNotifier,
+                                    RoundUpGate roundUpGate, RoundUpMetrics roundUpMetrics) {
+        this.starlingApiClient = starlingApiClient;
+        this.roundUpRequestRepository = roundUpRequestRepository;
+        this.roundUpStatusCache = roundUpStatusCache;
+        this.roundUpStatusNotifier = roundUpStatusNotifier;
+        this.roundUpGate = roundUpGate;
+        this.roundUpMetrics = roundUpMetrics;
+    }
+
+    @Override
+    public void processRoundUpAsync(String authToken, String requestId, String accountUid, String maskedAccountUid, String goalUid, LocalDate weekCommencing) {
+        withRequestId(requestId, () -> {
+            log.info("RequestId: {}, Starting reactive round-up processing for accountUid: {}, weekCommencing: {}", requestId, maskedAccountUid, weekCommencing);
+            return subscribe(authToken, requestId, accountUid, maskedAccountUid, goalUid, weekCommencing);
+        });
+    }
+
+    private Disposable subscribe(String authToken, String requestId, String accountUid, String maskedAccountUid, String goalUid, LocalDate weekCommencing) {
+        long startNanos = System.nanoTime();
+        // Stays FAILED unless the COMPLETED status is recorded, whichever way the pipeline ends
+        AtomicReference<Status> outcome = new AtomicReference<>(FAILED);
+        CurrencyRateTable rates = CurrencyConverter.currentRates();
+        return starlingApiClient.streamTransactions(authToken, accountUid, maskedAccountUid, weekCommencing, () -> new RoundUpAccumulator(requestId, rates))
+                .doOnNext(accumulator -> roundUpMetrics.recordFeedItems(accumulator.getItemCount()))
+                .map(RoundUpAccumulator::getTotal)
+                .flatMap(totalRoundUpAmount -> withRequestId(requestId, () -> {
+                    if (totalRoundUpAmount == 0) {
+                        log.warn("RequestId: {}, No transactions are eligible for round-up.", requestId);
+                        return Mono.<Long>error(new StarlingApiException("No transactions eligible for round-up."));
+                    }
+                    return starlingApiClient.getAccountBalance(authToken, accountUid, maskedAccountUid)
+                            .flatMap(balance -> withRequestId(requestId, () -> {
+                                if (!RoundUpAsyncService.coversAmount(balance, totalRoundUpAmount)) {
+                                    log.warn("RequestId: {}, Insufficient funds for round-up transfer.", requestId);
+                                    return Mono.<Long>error(new InsufficientFundsException("Not enough funds available for transfer."));
+                                }
+                                return starlingApiClient.transferToSavingsGoal(authToken, accountUid, maskedAccountUid, goalUid, totalRoundUpAmount)
+                                        .thenReturn(totalRoundUpAmount);
+                            }));
+                }))
+                .flatMap(totalRoundUpAmount -> updateRoundUpStatus(requestId, accountUid, weekCommencing, COMPLETED, totalRoundUpAmount, rates.getVersion())
+                        .doOnSuccess(ignored -> withRequestId(requestId, () -> {
+                            outcome.set(COMPLETED);
+                            log.info("RequestId: {}, Successfully completed round-up transfer of {} minor units.", requestId, totalRoundUpAmount);
+                        })))
+                .onErrorResume(e -> withRequestId(requestId, () -> {
+                    // The client has already had a 202 response, record the failure so the round-up can be retried
+                    log.error("RequestId: {}, Error processing round-up: {}", requestId, e.getMessage());
+                    return updateRoundUpStatus(requestId, accountUid, weekCommencing, FAILED, 0, null);
+                }))
+                .doFinally(signal -> roundUpMetrics.recordProcessing(outcome.get(), startNanos))
+                .subscribe(null, e -> withRequestId(requestId, () -> {
+                    log.error("RequestId: {}, Could not record round-up status: {}", requestId, e.getMessage());
+                }));
+    }
+
+    private Mono<Void> updateRoundUpStatus(String requestId, String accountUid, LocalDate weekCommencing, Status status, long amount, String rateVersion) {
+        return Mono.<Void>fromRunnable(() -> withRequestId(requestId, () -> {
+                    if (log.isInfoEnabled()) {
+                        log.info("Updating round-up status for accountUid: {}, weekCommencing: {}, status: {}, amount: {}, rates: {}", maskSensitiveData(accountUid), weekCommencing,
+                                status, amount, rateVersion);
+                    }
+                    roundUpRequestRepository.updateStatusAndAmountByAccountAndWeek(accountUid, weekCommencing, status, amount, rateVersion);
+                    roundUpMetrics.recordStatus(status);
+                    roundUpStatusCache.put(accountUid, weekCommencing, status, amount);
+                    roundUpGate.record(accountUid, weekCommencing, status, amount);
+                    roundUpStatusNotifier.publish(accountUid, weekCommencing, status, amount);
+                }))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * The steps of the pipeline run on whichever event loop or elastic thread delivered the previous response, so
+     * the requestId is put in the MDC around each step rather than once for the round-up. Whatever the thread had
+     * in the MDC before is put back afterwards.
+     */
+    private static <T> T withRequestId(String requestId, Supplier<T> step) {
+        String previous = MDC.get(REQUEST_ID);
+        MDC.put(REQUEST_ID, requestId);
+        try {
+            return step.get();
+        } finally {
+            if (previous == null) {
+                MDC.remove(REQUEST_ID);
+            } else {
+                MDC.put(REQUEST_ID, previous);
+            }
+        }
+    }
+
+    private static void withRequestId(String requestId, Runnable step) {
+        withRequestId(requestId, () -> {
+            step.run();
+            return null;
+        });
+    }
+}
@@ -6,95 +6,332 @@ import com.starling.roundup.client.StarlingTransactionApiClient;
 import com.starling.roundup.entity.Status;
 import com.starling.roundup.exception.InsufficientFundsException;
 import com.starling.roundup.exception.StarlingApiException;
+import com.starling.roundup.jfr.RoundUpStageEvent;
 import com.starling.roundup.model.response.StarlingFeedResponse;
+import com.starling.roundup.model.response.StarlingBalanceResponse;
+import com.starling.roundup.model.response.StarlingFeedItem;
 import com.starling.roundup.repository.RoundUpRequestRepository;
+import com.starling.roundup.util.FeedSliceRoundUps;
+import com.starling.roundup.util.CurrencyConverter;
+import com.starling.roundup.util.CurrencyRateTable;
+import com.starling.roundup.util.RoundUpAccumulator;
+import com.starling.roundup.util.WeeklyRoundUps;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static com.starling.roundup.entity.Status.COMPLETED;
 import static com.starling.roundup.entity.Status.FAILED;
-import static com.starling.roundup.model.response.TransactionDirection.OUT;
-import static com.starling.roundup.util.Constants.GBP;
-import static com.starling.roundup.util.CurrencyConverter.convertToGBP;
+import static com.starling.roundup.jfr.RoundUpStageEvent.BALANCE_CHECK;
+import static com.starling.roundup.jfr.RoundUpStageEvent.COMPUTE;
+import static com.starling.roundup.jfr.RoundUpStageEvent.FEED_FETCH;
+import static com.starling.roundup.jfr.RoundUpStageEvent.STATUS_UPDATE;
+import static com.starling.roundup.jfr.RoundUpStageEvent.TRANSFER;
+import static com.starling.roundup.util.DateUtil.toStarlingDateFormat;
+import static com.starling.roundup.util.DateUtil.toStarlingEndDate;
+import static com.starling.roundup.util.DateUtil.toStarlingWeekSlices;
+import static com.starling.roundup.util.IdUtils.generateUUID;
+import static com.starling.roundup.util.LoggingUtils.REQUEST_ID;
 import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
 
 @Slf4j
 @Service
-public class RoundUpAsyncService {
+public class RoundUpAsyncService implements RoundUpProcessor {
 
     private final StarlingAccountApiClient accountsApiClient;
     private final StarlingGoalsApiClient goalsApiClient;
     private final StarlingTransactionApiClient transactionApiClient;
     private final RoundUpRequestRepository roundUpRequestRepository;
+    private final ThreadPoolTaskExecutor feedSliceExecutor;
+    private final RoundUpStatusCache roundUpStatusCache;
+    private final RoundUpStatusNotifier roundUpStatusNotifier;
+    private final RoundUpGate roundUpGate;
+    private final RoundUpMetrics roundUpMetrics;
 
-    public RoundUpAsyncService(StarlingAccountApiClient accountsApiClient, StarlingGoalsApiClient goalsApiClient, StarlingTransactionApiClient transactionApiClient, RoundUpRequestRepository roundUpRequestRepository) {
+    // When enabled the feed is parsed as it is read and never held in memory as a StarlingFeedResponse
+    @Value("${roundup.feed.streaming:true}")
+    private boolean streamingFeed;
+
+    // When greater than 0 the week is fetched as parallel slices of this many hours instead of one large call
+    @Value("${roundup.feed.slice-hours:0}")
+    private int feedSliceHours;
+
+    // When enabled a range of weeks is fetched as one streamed feed call, otherwise each week is processed on its own
+    @Value("${roundup.range.combined-fetch:true}")
+    private boolean combinedRangeFetch;
+
+    public RoundUpAsyncService(StarlingAccountApiClient accountsApiClient, StarlingGoalsApiClient goalsApiClient, StarlingTransactionApiClient transactionApiClient,
+                               RoundUpRequestRepository roundUpRequestRepository, @Qualifier("feedSliceExecutor") ThreadPoolTaskExecutor feedSliceExecutor,
+                               RoundUpStatusCache roundUpStatusCache, RoundUpStatusNotifier roundUpStatusNotifier,
+                               RoundUpGate roundUpGate, RoundUpMetrics roundUpMetrics) {
         this.accountsApiClient = accountsApiClient;
         this.goalsApiClient = goalsApiClient;
         this.transactionApiClient = transactionApiClient;
         this.roundUpRequestRepository = roundUpRequestRepository;
+        this.feedSliceExecutor = feedSliceExecutor;
+        this.roundUpStatusCache = roundUpStatusCache;
+        this.roundUpStatusNotifier = roundUpStatusNotifier;
+        this.roundUpGate = roundUpGate;
+        this.roundUpMetrics = roundUpMetrics;
     }
 
     @Async
+    @Override
     public void processRoundUpAsync(String authToken, String requestId, String accountUid, String maskedAccountUid, String goalUid, LocalDate weekCommencing) {
         log.info("RequestId: {}, Starting round-up processing asynchronously for accountUid: {}, weekCommencing: {}", requestId, maskedAccountUid, weekCommencing);
-        try {
-            StarlingFeedResponse response = transactionApiClient.fetchTransactions(authToken, accountUid, maskedAccountUid, weekCommencing);
-            log.info("RequestId: {}, Response received from Starling Settled Transactions API for round-up calculation.", requestId);
+        processRoundUp(authToken, requestId, accountUid, maskedAccountUid, goalUid, weekCommencing, generateUUID());
+    }
 
-            long totalRoundUpAmount = calculateRoundUpAmount(requestId, response);
+    /**
+     * Processes the round-up on the calling thread and records COMPLETED or FAILED, never throws.
+     * @param transferUid used for the transfer to the savings goal, passing the same value when a round-up is run
+     *                    again after a crash stops the money from being moved twice
+     */
+    public void processRoundUp(String authToken, String requestId, String accountUid, String maskedAccountUid, String goalUid, LocalDate weekCommencing,
+                               String transferUid) {
+        long startNanos = System.nanoTime();
+        Status outcome = FAILED;
+        // Every transaction of the round-up is converted with the rates current when it started
+        CurrencyRateTable rates = CurrencyConverter.currentRates();
+        MDC.put(REQUEST_ID, requestId);
+        try {
+            long totalRoundUpAmount = roundUpMetrics.getCalculationTime().record(
+                    () -> fetchRoundUpAmount(authToken, requestId, accountUid, maskedAccountUid, weekCommencing, rates));
             log.debug("RequestId: {}, Calculated total round-up amount: {} minor units.", requestId, totalRoundUpAmount);
 
             if (totalRoundUpAmount == 0) {
                 log.warn("RequestId: {}, No transactions are eligible for round-up.", requestId);
-                updateRoundUpStatus(accountUid, weekCommencing, FAILED, 0);
+                updateRoundUpStatus(requestId, accountUid, maskedAccountUid, weekCommencing, FAILED, 0, null);
                 throw new StarlingApiException("No transactions eligible for round-up.");
             }
 
-            if (!hasSufficientFunds(authToken, accountUid, totalRoundUpAmount)) {
+            boolean sufficientFunds = RoundUpStageEvent.record(BALANCE_CHECK, requestId, maskedAccountUid,
+                    () -> hasSufficientFunds(authToken, accountUid, totalRoundUpAmount));
+            if (!sufficientFunds) {
                 log.warn("RequestId: {}, Insufficient funds for round-up transfer.", requestId);
-                updateRoundUpStatus(accountUid, weekCommencing, FAILED, 0);
+                updateRoundUpStatus(requestId, accountUid, maskedAccountUid, weekCommencing, FAILED, 0, null);
                 throw new InsufficientFundsException("Not enough funds available for transfer.");
             }
 
-            goalsApiClient.transferToSavingsGoal(authToken, accountUid, goalUid, totalRoundUpAmount);
-            updateRoundUpStatus(accountUid, weekCommencing, COMPLETED, totalRoundUpAmount);
+            RoundUpStageEvent.record(TRANSFER, requestId, maskedAccountUid,
+                    () -> goalsApiClient.transferToSavingsGoal(authToken, accountUid, goalUid, totalRoundUpAmount, transferUid));
+            updateRoundUpStatus(requestId, accountUid, maskedAccountUid, weekCommencing, COMPLETED, totalRoundUpAmount, rates.getVersion());
+            outcome = COMPLETED;
             log.info("RequestId: {}, Successfully completed round-up transfer of {} minor units.", requestId, totalRoundUpAmount);
         } catch (Exception e) {
             // No need to throw exception as this is a void Async method, client would have already
-            // received a 202 response. Update status as FAILED.
+            // received a 202 response. Update status as FAILED, it can be started again, e.g. once an open
+            // circuit breaker lets calls to Starling through.
             log.error("RequestId: {}, Error processing round-up: {}", requestId, e.getMessage());
-            updateRoundUpStatus(accountUid, weekCommencing, FAILED, 0);
+            updateRoundUpStatus(requestId, accountUid, maskedAccountUid, weekCommencing, FAILED, 0, null);
+        } finally {
+            roundUpMetrics.recordProcessing(outcome, startNanos);
+            MDC.remove(REQUEST_ID);
+        }
+
+    }
+
+    /**
+     * With roundup.range.combined-fetch, the default, the weeks are processed with one transaction feed fetch
+     * covering all of them. That fetch is always streamed and never sliced, so roundup.feed.streaming and
+     * roundup.feed.slice-hours do not apply to it. The feed is bucketed by week in memory, the total for all weeks
+     * is moved with one balance check and one transfer, and each week's request is then marked with its own amount.
+     * Weeks with nothing to round up are marked FAILED the same way a single week is.
+     * <p>
+     * Without it each week is processed in turn by {@link #processRoundUp}, exactly as a single week would be.
+     */
+    @Async
+    @Override
+    public void processRoundUpRangeAsync(String authToken, String accountUid, String maskedAccountUid, String goalUid, Map<LocalDate, String> claimedWeeks) {
+        if (!combinedRangeFetch) {
+            claimedWeeks.forEach((weekCommencing, requestId) ->
+                    processRoundUp(authToken, requestId, accountUid, maskedAccountUid, goalUid, weekCommencing, generateUUID()));
+            return;
+        }
+        LocalDate firstWeek = claimedWeeks.keySet().iterator().next();
+        LocalDate lastWeek = firstWeek;
+        for (LocalDate week : claimedWeeks.keySet()) lastWeek = week;
+        // Weeks are processed together, the first requestId ties the log lines and stages together. Status updates
+        // are recorded against each week's own requestId
+        String requestId = claimedWeeks.get(firstWeek);
+        MDC.put(REQUEST_ID, requestId);
+        log.info("RequestId: {}, Starting round-up processing asynchronously for accountUid: {}, {} weeks commencing {} to {}",
+                requestId, maskedAccountUid, claimedWeeks.size(), firstWeek, lastWeek);
+        long startNanos = System.nanoTime();
+        // Weeks missing from here ended FAILED
+        Map<LocalDate, Status> outcomes = new HashMap<>();
+        CurrencyRateTable rates = CurrencyConverter.currentRates();
+        // Generated once so that a retried transfer is recognised by Starling rather than made again
+        String transferUid = generateUUID();
+        try {
+            String rangeStart = toStarlingDateFormat(firstWeek);
+            String rangeEnd = toStarlingEndDate(lastWeek);
+            WeeklyRoundUps weeklyRoundUps = RoundUpStageEvent.record(FEED_FETCH, requestId, maskedAccountUid,
+                    () -> transactionApiClient.streamTransactionsBetween(authToken, accountUid, maskedAccountUid, rangeStart, rangeEnd,
+                            () -> new WeeklyRoundUps(requestId, rates, claimedWeeks.keySet())));
+            log.info("RequestId: {}, Streamed {} transactions for round-up of {} weeks.", requestId, weeklyRoundUps.getItemCount(), claimedWeeks.size());
+            roundUpMetrics.recordFeedItems(weeklyRoundUps.getItemCount());
+
+            Map<LocalDate, Long> weeklyTotals = weeklyRoundUps.getTotals();
+            long totalRoundUpAmount = 0;
+            for (Map.Entry<LocalDate, Long> weeklyTotal : weeklyTotals.entrySet()) {
+                if (weeklyTotal.getValue() == 0) {
+                    log.warn("RequestId: {}, No transactions are eligible for round-up in week commencing {}.", requestId, weeklyTotal.getKey());
+                    updateWeekStatus(claimedWeeks, accountUid, maskedAccountUid, weeklyTotal.getKey(), FAILED, 0, null);
+                }
+                totalRoundUpAmount += weeklyTotal.getValue();
+            }
+
+            if (totalRoundUpAmount == 0) {
+                log.warn("RequestId: {}, No transactions are eligible for round-up in any week.", requestId);
+                return;
+            }
+
+            long rangeRoundUpAmount = totalRoundUpAmount;
+            boolean sufficientFunds = RoundUpStageEvent.record(BALANCE_CHECK, requestId, maskedAccountUid,
+                    () -> hasSufficientFunds(authToken, accountUid, rangeRoundUpAmount));
+            if (!sufficientFunds) {
+                log.warn("RequestId: {}, Insufficient funds for round-up transfer.", requestId);
+                weeklyTotals.keySet().forEach(week -> updateWeekStatus(claimedWeeks, accountUid, maskedAccountUid, week, FAILED, 0, null));
+                return;
+            }
+
+            RoundUpStageEvent.record(TRANSFER, requestId, maskedAccountUid,
+                    () -> goalsApiClient.transferToSavingsGoal(authToken, accountUid, goalUid, rangeRoundUpAmount, transferUid));
+            weeklyTotals.forEach((week, amount) -> {
+                if (amount > 0) {
+                    updateWeekStatus(claimedWeeks, accountUid, maskedAccountUid, week, COMPLETED, amount, rates.getVersion());
+                    outcomes.put(week, COMPLETED);
+                }
+            });
+            log.info("RequestId: {}, Successfully completed round-up transfer of {} minor units for {} weeks.", requestId, totalRoundUpAmount, claimedWeeks.size());
+        } catch (Exception e) {
+            // As with a single week the client has already had a 202 response, mark every week as FAILED so it can be retried
+            log.error("RequestId: {}, Error processing round-up of {} weeks: {}", requestId, claimedWeeks.size(), e.getMessage());
+            claimedWeeks.keySet().forEach(week -> updateWeekStatus(claimedWeeks, accountUid, maskedAccountUid, week, FAILED, 0, null));
+            outcomes.clear();
+        } finally {
+            // One processing time per week, the same as when each week is processed on its own
+            claimedWeeks.keySet().forEach(week -> roundUpMetrics.recordProcessing(outcomes.getOrDefault(week, FAILED), startNanos));
+            MDC.remove(REQUEST_ID);
         }
+    }
 
+    private void updateWeekStatus(Map<LocalDate, String> claimedWeeks, String accountUid, String maskedAccountUid, LocalDate weekCommencing,
+                                  Status status, long amount, String rateVersion) {
+        updateRoundUpStatus(claimedWeeks.get(weekCommencing), accountUid, maskedAccountUid, weekCommencing, status, amount, rateVersion);
     }
 
-    private static long calculateRoundUpAmount(String requestId, StarlingFeedResponse response) {
-        return response.getFeedItems().stream()
-                .filter(feedItem -> OUT.equals(feedItem.getDirection())) // Only look at transactions going out
-                .map(feedItem -> {
-                    if (GBP.equals(feedItem.getAmount().getCurrency())) {
-                        // If currency is GBP, no need to convert minor units
-                        return feedItem.getAmount().getMinorUnits();
-                    }
-                    // Convert to GBP and return minor units
-                    return convertToGBP(requestId, feedItem.getAmount());
-                })
-                .filter(amount -> amount % 100 != 0)  // If the amount is a whole pound, you can not round up
-                .mapToLong(amount -> 100 - (amount % 100))  // Calculate round-up amount for each transaction
-                .sum();
+    /**
+     * The sliced and streamed feeds are calculated as they are read, so they are recorded as a single FEED_FETCH stage
+     * and only the whole feed response has a separate COMPUTE stage.
+     */
+    private long fetchRoundUpAmount(String authToken, String requestId, String accountUid, String maskedAccountUid, LocalDate weekCommencing,
+                                    CurrencyRateTable rates) {
+        if (feedSliceHours > 0) {
+            return RoundUpStageEvent.record(FEED_FETCH, requestId, maskedAccountUid,
+                    () -> fetchRoundUpAmountInSlices(authToken, requestId, accountUid, maskedAccountUid, weekCommencing, rates));
+        }
+        if (streamingFeed) {
+            RoundUpAccumulator accumulator = RoundUpStageEvent.record(FEED_FETCH, requestId, maskedAccountUid,
+                    () -> transactionApiClient.streamTransactions(authToken, accountUid, maskedAccountUid, weekCommencing, () -> new RoundUpAccumulator(requestId, rates)));
+            log.info("RequestId: {}, Streamed {} transactions from Starling Settled Transactions API for round-up calculation.", requestId, accumulator.getItemCount());
+            roundUpMetrics.recordFeedItems(accumulator.getItemCount());
+            return accumulator.getTotal();
+        }
+        StarlingFeedResponse response = RoundUpStageEvent.record(FEED_FETCH, requestId, maskedAccountUid,
+                () -> transactionApiClient.fetchTransactions(authToken, accountUid, maskedAccountUid, weekCommencing));
+        log.info("RequestId: {}, Response received from Starling Settled Transactions API for round-up calculation.", requestId);
+        if (response.getFeedItems() != null) {
+            roundUpMetrics.recordFeedItems(response.getFeedItems().size());
+        }
+        return RoundUpStageEvent.record(COMPUTE, requestId, maskedAccountUid, () -> calculateRoundUpAmount(requestId, rates, response));
+    }
+
+    /**
+     * Fetches the week as several smaller windows at the same time. Each slice is retried on its own by the client,
+     * and transactions that fall on a slice boundary are only counted once.
+     */
+    private long fetchRoundUpAmountInSlices(String authToken, String requestId, String accountUid, String maskedAccountUid, LocalDate weekCommencing,
+                                            CurrencyRateTable rates) {
+        List<Pair<String, String>> slices = toStarlingWeekSlices(weekCommencing, feedSliceHours);
+        log.info("RequestId: {}, Fetching settled transactions in {} slices of {} hours.", requestId, slices.size(), feedSliceHours);
+        // Submitted as FutureTasks rather than CompletableFutures so that cancelling a slice interrupts the thread reading it
+        List<Future<FeedSliceRoundUps>> futures = slices.stream()
+                .map(slice -> feedSliceExecutor.submit(() -> transactionApiClient.streamTransactionsBetween(authToken, accountUid,
+                        maskedAccountUid, slice.getLeft(), slice.getRight(), () -> new FeedSliceRoundUps(requestId, rates, slice.getLeft(), slice.getRight()))))
+                .toList();
+        try {
+            List<FeedSliceRoundUps> sliceRoundUps = new ArrayList<>(futures.size());
+            for (Future<FeedSliceRoundUps> future : futures) {
+                sliceRoundUps.add(future.get());
+            }
+            return FeedSliceRoundUps.mergeTotal(sliceRoundUps);
+        } catch (ExecutionException e) {
+            // A slice failed even after its retries. Slices not started yet never run, and the ones still reading
+            // their feed stop at the next item, which releases their connection
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new StarlingApiException("An error occurred when fetching a feed slice: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new StarlingApiException("Interrupted waiting for feed slices", e);
+        }
+    }
+
+    static long calculateRoundUpAmount(String requestId, CurrencyRateTable rates, StarlingFeedResponse response) {
+        RoundUpAccumulator accumulator = new RoundUpAccumulator(requestId, rates);
+        for (StarlingFeedItem feedItem : response.getFeedItems()) {
+            accumulator.add(feedItem.getDirection(), feedItem.getAmount().getCurrencyCode(), feedItem.getAmount().getMinorUnits());
+        }
+        return accumulator.getTotal();
     }
 
     public boolean hasSufficientFunds(String authToken, String accountUid, long amountToTransfer) {
-        BigDecimal effectiveBalance = accountsApiClient.getAccountBalance(authToken, accountUid).getEffectiveBalance().getAmountInPounds();
+        return coversAmount(accountsApiClient.getAccountBalance(authToken, accountUid), amountToTransfer);
+    }
+
+    static boolean coversAmount(StarlingBalanceResponse balance, long amountToTransfer) {
+        BigDecimal effectiveBalance = balance.getEffectiveBalance().getAmountInPounds();
         return effectiveBalance.compareTo(BigDecimal.valueOf(amountToTransfer).divide(BigDecimal.valueOf(100))) >= 0;
     }
 
-    private void updateRoundUpStatus(String accountUid, LocalDate weekCommencing, Status status, long amount) {
-        log.info("Updating round-up status for accountUid: {}, weekCommencing: {}, status: {}, amount: {}", maskSensitiveData(accountUid), weekCommencing, status, amount);
-        roundUpRequestRepository.updateStatusAndAmountByAccountAndWeek(accountUid, weekCommencing, status, amount);
+    private void updateRoundUpStatus(String requestId, String accountUid, String maskedAccountUid, LocalDate weekCommencing, Status status, long amount,
+                                     String rateVersion) {
+        RoundUpStageEvent.record(STATUS_UPDATE, requestId, maskedAccountUid, () -> updateRoundUpStatus(accountUid, weekCommencing, status, amount, rateVersion));
+    }
+
+    public void updateRoundUpStatus(String accountUid, LocalDate weekCommencing, Status status, long amount) {
+        updateRoundUpStatus(accountUid, weekCommencing, status, amount, null);
+    }
+
+    /**
+     * @param rateVersion version of the currency rates the amount was calculated with, null when nothing was calculated
+     */
+    public void updateRoundUpStatus(String accountUid, LocalDate weekCommencing, Status status, long amount, String rateVersion) {
+        if (log.isInfoEnabled()) {
+            log.info("Updating round-up status for accountUid: {}, weekCommencing: {}, status: {}, amount: {}, rates: {}", maskSensitiveData(accountUid), weekCommencing,
+                    status, amount, rateVersion);
+        }
+        roundUpRequestRepository.updateStatusAndAmountByAccountAndWeek(accountUid, weekCommencing, status, amount, rateVersion);
+        roundUpMetrics.recordStatus(status);
+        roundUpStatusCache.put(accountUid, weekCommencing, status, amount);
+        roundUpGate.record(accountUid, weekCommencing, status, amount);
+        roundUpStatusNotifier.publish(accountUid, weekCommencing, status, amount);
     }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.starling.roundup.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.service.RoundUpStatusCache.CachedStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
+
+/**
+ * Idempotency gate for initiating a round-up, used when roundup.idempotency.mode is gate. A single Lua script
+ * either marks the account and week as IN_PROGRESS and lets the caller through, or returns the state that is
+ * already there, in one round trip to Redis and without touching the database. Only the caller that gets through
+ * reads and writes the round_up_requests row.
+ * The gate only holds IN_PROGRESS and COMPLETED. A FAILED round-up is removed so that the next request gets
+ * through and retries it. Both states expire, after which the database decides again. IN_PROGRESS must outlive the
+ * slowest round-up: the feed fetch, balance check and transfer each retry within their read timeouts, which comes
+ * to a few minutes at most, so the 30m default leaves a wide margin. A round-up still running when it expires is
+ * stopped from running twice by the database, as the next caller finds its row IN_PROGRESS.
+ * {@link #tryEnter} throws if Redis can not be reached, the caller then falls back to the database.
+ * Without Redis (the single-node profile) the gate is an in-JVM cache with the same expiry rules.
+ */
+@Slf4j
+@Component
+public class RoundUpGate {
+
+    private static final String KEY_PREFIX = "roundup-state:";
+    private static final String IN_PROGRESS = new CachedStatus(Status.IN_PROGRESS, 0).encode();
+
+    // KEYS[1] gate key, ARGV[1] the IN_PROGRESS state, ARGV[2] TTL in milliseconds. Returns nil when the caller got through
+    private static final String ENTER_SCRIPT = """
+            local current = redis.call('GET', KEYS[1])
+            if current then
+                return current
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return false
+            """;
+
+    private final Duration inProgressTtl;
+    private final Duration completedTtl;
+    // Either Redis or the local cache is used, the other is null
+    private final RedissonClient redissonClient;
+    private final RScript script;
+    private final Cache<String, String> localStates;
+
+    public RoundUpGate(ObjectProvider<RedissonClient> redissonClient,
+                       @Value("${roundup.idempotency.in-progress-ttl:30m}") Duration inProgressTtl,
+                       @Value("${roundup.idempotency.completed-ttl:7d}") Duration completedTtl,
+                       @Value("${roundup.idempotency.local-max-size:1000000}") long localMaxSize) {
+        this.inProgressTtl = inProgressTtl;
+        this.completedTtl = completedTtl;
+        this.redissonClient = redissonClient.getIfAvailable();
+        this.script = this.redissonClient == null ? null : this.redissonClient.getScript(StringCodec.INSTANCE);
+        this.localStates = this.redissonClient != null ? null : Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfter(new Expiry<String, String>() {
+                    @Override
+                    public long expireAfterCreate(String key, String state, long currentTime) {
+                        return ttlOf(CachedStatus.decode(state).status()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, String state, long currentTime, long currentDuration) {
+                        return ttlOf(CachedStatus.decode(state).status()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, String state, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return empty if the caller got through and must now process the round-up, otherwise the state that stopped it
+     * @throws org.redisson.client.RedisException if Redis can not be reached
+     */
+    public Optional<CachedStatus> tryEnter(String accountId, LocalDate weekCommencing) {
+        String key = key(accountId, weekCommencing);
+        String current = localStates != null
+                ? localStates.asMap().putIfAbsent(key, IN_PROGRESS)
+                : script.eval(RScript.Mode.READ_WRITE, ENTER_SCRIPT, RScript.ReturnType.VALUE,
+                        List.of(key), IN_PROGRESS, String.valueOf(inProgressTtl.toMillis()));
+        return current == null ? Optional.empty() : Optional.of(CachedStatus.decode(current));
+    }
+
+    /**
+     * Records the outcome of a round-up, or of a database read made by the caller that got through.
+     */
+    public void record(String accountId, LocalDate weekCommencing, Status status, long roundUpAmount) {
+        try {
+            if (status == Status.FAILED) {
+                release(accountId, weekCommencing);
+                return;
+            }
+            String key = key(accountId, weekCommencing);
+            String state = new CachedStatus(status, roundUpAmount).encode();
+            if (localStates != null) {
+                localStates.put(key, state);
+            } else {
+                redissonClient.<String>getBucket(key, StringCodec.INSTANCE).set(state, ttlOf(status).toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (Exception e) {
+            // Worst case the gate keeps saying IN_PROGRESS until it expires
+            log.warn("Could not record round-up state for accountId: {}, weekCommencing: {} - Exception: {}", maskSensitiveData(accountId), weekCommencing, e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the gate again, for a round-up that failed or could not be started.
+     */
+    public void release(String accountId, LocalDate weekCommencing) {
+        String key = key(accountId, weekCommencing);
+        if (localStates != null) {
+            localStates.invalidate(key);
+            return;
+        }
+        try {
+            redissonClient.getBucket(key, StringCodec.INSTANCE).delete();
+        } catch (Exception e) {
+            // The gate keeps saying IN_PROGRESS until it expires, the database still lets a retry through after that
+            log.warn("Could not release round-up gate for accountId: {}, weekCommencing: {} - Exception: {}", maskSensitiveData(accountId), weekCommencing, e.getMessage());
+        }
+    }
+
+    private Duration ttlOf(Status status) {
+        return status == Status.COMPLETED ? completedTtl : inProgressTtl;
+    }
+
+    private static String key(String accountId, LocalDate weekCommencing) {
+        return KEY_PREFIX + accountId + ":" + weekCommencing;
+    }
+}
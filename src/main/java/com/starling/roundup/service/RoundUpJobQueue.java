@@ -0,0 +1,255 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.client.StarlingServiceCredential;
+import com.starling.roundup.entity.JobState;
+import com.starling.roundup.entity.RoundUpJob;
+import com.starling.roundup.repository.RoundUpEnrolmentRepository;
+import com.starling.roundup.repository.RoundUpJobRepository;
+import com.starling.roundup.repository.RoundUpRequestRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.starling.roundup.entity.Status.FAILED;
+import static com.starling.roundup.entity.Status.IN_PROGRESS;
+import static com.starling.roundup.util.IdUtils.generateUUID;
+import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
+
+/**
+ * Durable alternative to {@link RoundUpAsyncService#processRoundUpAsync}, enabled with roundup.pipeline=queue.
+ * A round-up is saved as a {@link RoundUpJob} and picked up by a pool of worker threads on whichever instance
+ * claims it first, so adding instances adds workers. The worker holds a lease on the job which a heartbeat
+ * keeps extending. If the instance dies the lease runs out and another instance runs the job again with the same
+ * transferUid, so a transfer that had already been made is not made twice.
+ * <p>
+ * Client tokens are not stored with the job, so workers call Starling with the {@link StarlingServiceCredential}
+ * rather than with the token of the client that asked for the round-up. Only accounts enrolled in the weekly
+ * round-up into the same savings goal are queued, as enrolling is where the owner of the account agreed to have
+ * their round-ups run without them. The round-ups of any other account are run straight away by
+ * {@link RoundUpAsyncService} with the client's own token, the same as roundup.pipeline=blocking, and are not
+ * resumed if the instance dies.
+ */
+@Slf4j
+@Service
+@Primary
+@ConditionalOnProperty(name = "roundup.pipeline", havingValue = "queue")
+public class RoundUpJobQueue implements RoundUpProcessor {
+
+    private static final String WORKER_THREAD_PREFIX = "roundup-queue-worker-";
+    private static final String QUEUE = "roundup.pipeline=queue";
+
+    private final RoundUpJobRepository roundUpJobRepository;
+    private final RoundUpRequestRepository roundUpRequestRepository;
+    private final RoundUpEnrolmentRepository roundUpEnrolmentRepository;
+    private final RoundUpAsyncService roundUpAsyncService;
+    private final StarlingServiceCredential serviceCredential;
+    private final String workerId = "worker-" + generateUUID();
+    // Jobs this instance is running, their leases are extended by the heartbeat
+    private final Set<String> leasedJobIds = ConcurrentHashMap.newKeySet();
+    // Released on enqueue so an idle worker on this instance starts straight away rather than on its next poll
+    private final Semaphore jobsAvailable = new Semaphore(0);
+
+    @Value("${roundup.queue.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${roundup.queue.lease:2m}")
+    private Duration leaseDuration;
+
+    @Value("${roundup.queue.poll-interval:1s}")
+    private Duration pollInterval;
+
+    @Value("${roundup.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    private volatile boolean running;
+    private ExecutorService workers;
+    private ScheduledExecutorService heartbeat;
+
+    public RoundUpJobQueue(RoundUpJobRepository roundUpJobRepository, RoundUpRequestRepository roundUpRequestRepository,
+                           RoundUpEnrolmentRepository roundUpEnrolmentRepository, RoundUpAsyncService roundUpAsyncService,
+                           StarlingServiceCredential serviceCredential) {
+        this.roundUpJobRepository = roundUpJobRepository;
+        this.roundUpRequestRepository = roundUpRequestRepository;
+        this.roundUpEnrolmentRepository = roundUpEnrolmentRepository;
+        this.roundUpAsyncService = roundUpAsyncService;
+        this.serviceCredential = serviceCredential;
+    }
+
+    /**
+     * Saves the job with the IN_PROGRESS request, so every claimed round-up has a job for some worker to run.
+     */
+    @Override
+    public void recordClaim(String requestId, String accountUid, String goalUid, LocalDate weekCommencing) {
+        if (!isEnrolled(accountUid, goalUid)) {
+            log.info("RequestId: {}, accountUid: {} is not enrolled into this savings goal, running with the client's token instead of queueing", requestId,
+                    maskSensitiveData(accountUid));
+            return;
+        }
+        // The client's token is not stored, the job is run with the service credential
+        RoundUpJob job = new RoundUpJob(generateUUID(), requestId, accountUid, weekCommencing, goalUid, generateUUID(),
+                JobState.PENDING, null, null, 0, Instant.now());
+        roundUpJobRepository.save(job);
+        log.info("RequestId: {}, Queued round-up job: {} for accountUid: {}, weekCommencing: {}", requestId, job.getJobId(),
+                maskSensitiveData(accountUid), weekCommencing);
+    }
+
+    // A job saved by recordClaim only needs a worker on this instance waking, anything else is run with the client's token
+    @Override
+    public void processRoundUpAsync(String authToken, String requestId, String accountUid, String maskedAccountUid, String goalUid, LocalDate weekCommencing) {
+        if (roundUpJobRepository.existsByRequestId(requestId)) {
+            jobsAvailable.release();
+        } else {
+            roundUpAsyncService.processRoundUpAsync(authToken, requestId, accountUid, maskedAccountUid, goalUid, weekCommencing);
+        }
+    }
+
+    @Override
+    public void processRoundUpRangeAsync(String authToken, String accountUid, String maskedAccountUid, String goalUid, Map<LocalDate, String> claimedWeeks) {
+        Set<String> queuedRequestIds = roundUpJobRepository.findQueuedRequestIds(claimedWeeks.values());
+        Map<LocalDate, String> notQueued = new TreeMap<>(claimedWeeks);
+        notQueued.values().removeAll(queuedRequestIds);
+        jobsAvailable.release(queuedRequestIds.size());
+        if (!notQueued.isEmpty()) {
+            roundUpAsyncService.processRoundUpRangeAsync(authToken, accountUid, maskedAccountUid, goalUid, notQueued);
+        }
+    }
+
+    // Started once the application is ready so that jobs left behind by a crashed instance are resumed on startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Fails at startup rather than every queued round-up failing with a 401
+        serviceCredential.getAccessToken(QUEUE);
+        running = true;
+        workers = Executors.newFixedThreadPool(workerThreads, new CustomizableThreadFactory(WORKER_THREAD_PREFIX));
+        for (int i = 0; i < workerThreads; i++) {
+            workers.execute(this::pollJobs);
+        }
+        long heartbeatMillis = leaseDuration.toMillis() / 3;
+        heartbeat = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("roundup-queue-heartbeat-"));
+        heartbeat.scheduleAtFixedRate(this::extendLeases, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        log.info("Started {} round-up queue workers as {}", workerThreads, workerId);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (workers == null) {
+            return;
+        }
+        jobsAvailable.release(workerThreads);
+        workers.shutdown();
+        // Jobs still running after this keep their lease until it expires and are then picked up by another instance
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Round-up queue workers did not finish, {} jobs will be resumed once their lease expires", leasedJobIds.size());
+        }
+        heartbeat.shutdownNow();
+    }
+
+    private void pollJobs() {
+        while (running) {
+            try {
+                if (!runNextJob()) {
+                    jobsAvailable.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error polling round-up jobs: {}", e.getMessage());
+                sleepQuietly();
+            }
+        }
+    }
+
+    // Package-private so tests can run a job without starting the worker threads
+    boolean runNextJob() {
+        Instant now = Instant.now();
+        List<String> candidates = roundUpJobRepository.findClaimableJobIds(now, PageRequest.of(0, workerThreads));
+        for (String jobId : candidates) {
+            // Other workers, here or on other instances, may have seen the same candidates. Only one claim succeeds
+            if (roundUpJobRepository.claim(jobId, workerId, now, now.plus(leaseDuration)) == 1) {
+                leasedJobIds.add(jobId);
+                try {
+                    roundUpJobRepository.findById(jobId).ifPresent(this::runJob);
+                } finally {
+                    leasedJobIds.remove(jobId);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runJob(RoundUpJob job) {
+        String maskedAccountUid = maskSensitiveData(job.getAccountId());
+        if (!roundUpRequestRepository.existsByAccountIdAndWeekCommencingAndStatus(job.getAccountId(), job.getWeekCommencing(), IN_PROGRESS)) {
+            // The previous run finished the round-up but died before the job was marked done
+            log.info("RequestId: {}, Round-up for accountUid: {}, weekCommencing: {} is already finished", job.getRequestId(), maskedAccountUid, job.getWeekCommencing());
+        } else if (!isEnrolled(job.getAccountId(), job.getGoalUid())) {
+            // Enrolment was withdrawn after the job was queued, the service credential may no longer be used for the account
+            log.warn("RequestId: {}, accountUid: {} is no longer enrolled, not running round-up job: {}", job.getRequestId(), maskedAccountUid, job.getJobId());
+            roundUpAsyncService.updateRoundUpStatus(job.getAccountId(), job.getWeekCommencing(), FAILED, 0);
+        } else if (job.getAttempts() > maxAttempts) {
+            log.error("RequestId: {}, Giving up on round-up job: {} after {} attempts", job.getRequestId(), job.getJobId(), maxAttempts);
+            roundUpAsyncService.updateRoundUpStatus(job.getAccountId(), job.getWeekCommencing(), FAILED, 0);
+        } else {
+            if (job.getAttempts() > 1) {
+                log.warn("RequestId: {}, Resuming round-up job: {} after its lease expired, attempt {}", job.getRequestId(), job.getJobId(), job.getAttempts());
+            }
+            roundUpAsyncService.processRoundUp(serviceCredential.getAccessToken(QUEUE), job.getRequestId(), job.getAccountId(), maskedAccountUid, job.getGoalUid(),
+                    job.getWeekCommencing(), job.getTransferUid());
+        }
+        if (roundUpJobRepository.complete(job.getJobId(), workerId) == 0) {
+            log.warn("RequestId: {}, Lease on round-up job: {} was lost before it finished", job.getRequestId(), job.getJobId());
+        }
+    }
+
+    private boolean isEnrolled(String accountUid, String goalUid) {
+        return roundUpEnrolmentRepository.findById(accountUid)
+                .filter(enrolment -> enrolment.isActive() && enrolment.getSavingsGoalUid().equals(goalUid))
+                .isPresent();
+    }
+
+    private void extendLeases() {
+        if (leasedJobIds.isEmpty()) {
+            return;
+        }
+        try {
+            int extended = roundUpJobRepository.extendLeases(leasedJobIds, workerId, Instant.now().plus(leaseDuration));
+            if (extended < leasedJobIds.size()) {
+                log.warn("Only extended {} of {} round-up job leases, the rest have been taken over", extended, leasedJobIds.size());
+            }
+        } catch (Exception e) {
+            log.error("Error extending round-up job leases: {}", e.getMessage());
+        }
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollInterval.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.model.response.StatusResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Metrics of the round-up pipeline, whichever of the blocking, reactive or queue pipelines runs it. Meters are created
+ * up front so recording is a map lookup, and so every status shows up at zero before it first happens.
+ */
+@Component
+public class RoundUpMetrics {
+
+    private final Map<StatusResponse, Counter> initiations = new EnumMap<>(StatusResponse.class);
+    private final Map<Status, Counter> statusUpdates = new EnumMap<>(Status.class);
+    private final Map<Status, Timer> processingTimes = new EnumMap<>(Status.class);
+    private final Timer calculationTime;
+    private final DistributionSummary feedItems;
+
+    public RoundUpMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        // Without a registry, e.g. in unit tests, the global registry records nothing
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        for (StatusResponse outcome : StatusResponse.values()) {
+            initiations.put(outcome, Counter.builder("roundup.initiations")
+                    .description("Round-up requests by the status they were answered with")
+                    .tag("outcome", outcome.name())
+                    .register(registry));
+        }
+        for (Status status : Status.values()) {
+            statusUpdates.put(status, Counter.builder("roundup.status.updates")
+                    .description("Round-ups recorded with each status")
+                    .tag("status", status.name())
+                    .register(registry));
+            if (status == Status.IN_PROGRESS) {
+                // Processing always ends COMPLETED or FAILED
+                continue;
+            }
+            processingTimes.put(status, Timer.builder("roundup.processing")
+                    .description("Time from starting to process a round-up to recording its result")
+                    .tag("status", status.name())
+                    .register(registry));
+        }
+        calculationTime = Timer.builder("roundup.calculation")
+                .description("Time to fetch the week's feed and calculate its round-up, the streamed feed is calculated as it is read")
+                .register(registry);
+        feedItems = DistributionSummary.builder("roundup.feed.items")
+                .description("Transactions in the feed of one round-up")
+                .baseUnit("transactions")
+                .register(registry);
+    }
+
+    public void recordInitiation(StatusResponse outcome) {
+        initiations.get(outcome).increment();
+    }
+
+    public void recordStatus(Status status) {
+        statusUpdates.get(status).increment();
+    }
+
+    public void recordProcessing(Status status, long startNanos) {
+        processingTimes.get(status).record(System.nanoTime() - startNanos, NANOSECONDS);
+    }
+
+    public Timer getCalculationTime() {
+        return calculationTime;
+    }
+
+    public void recordFeedItems(long items) {
+        feedItems.record(items);
+    }
+}
@@ -0,0 +1,31 @@
+package com.starling.roundup.service;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Runs a claimed round-up in the background: fetches the week's transactions, transfers the round-up to the
+ * savings goal and updates the request to COMPLETED or FAILED. Returns as soon as the work has been started.
+ */
+public interface RoundUpProcessor {
+
+    /**
+     * Called in the same transaction that saves the claimed request as IN_PROGRESS, before
+     * {@link #processRoundUpAsync} or {@link #processRoundUpRangeAsync} is called for it. Anything the processor
+     * needs saved to run the round-up is saved here, so it can not be lost if the instance dies after the claim.
+     */
+    default void recordClaim(String requestId, String accountUid, String goalUid, LocalDate weekCommencing) {
+    }
+
+    void processRoundUpAsync(String authToken, String requestId, String accountUid, String maskedAccountUid, String goalUid, LocalDate weekCommencing);
+
+    /**
+     * Runs several claimed weeks of one account. By default each week is run as its own round-up, the same as
+     * a single week would be.
+     * @param claimedWeeks requestId of each week that was claimed for processing, ordered by week
+     */
+    default void processRoundUpRangeAsync(String authToken, String accountUid, String maskedAccountUid, String goalUid, Map<LocalDate, String> claimedWeeks) {
+        claimedWeeks.forEach((weekCommencing, requestId) ->
+                processRoundUpAsync(authToken, requestId, accountUid, maskedAccountUid, goalUid, weekCommencing));
+    }
+}
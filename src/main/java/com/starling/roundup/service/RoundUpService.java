@@ -2,19 +2,32 @@ package com.starling.roundup.service;
 
 import com.starling.roundup.entity.RoundUpRequest;
 import com.starling.roundup.entity.Status;
+import com.starling.roundup.jfr.RoundUpClaimEvent;
+import com.starling.roundup.lock.LockProvider;
+import com.starling.roundup.model.response.RoundUpBatchItemResponse;
+import com.starling.roundup.model.response.RoundUpBatchResponse;
 import com.starling.roundup.model.response.RoundUpStatusResponse;
 import com.starling.roundup.model.response.StatusResponse;
 import com.starling.roundup.repository.RoundUpRequestRepository;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static com.starling.roundup.entity.Status.*;
 import static com.starling.roundup.entity.Status.COMPLETED;
@@ -30,14 +43,35 @@ import static org.springframework.http.HttpStatus.CONFLICT;
 @Service
 public class RoundUpService {
 
+    private static final String LOCK_MODE = "lock";
+    private static final String DATABASE_MODE = "database";
+
     private final RoundUpRequestRepository roundUpRequestRepository;
     private final RoundUpAsyncService roundUpAsyncService;
-    private final RedissonClient redissonClient;
+    // RoundUpAsyncService, the reactive pipeline or the job queue, depending on roundup.pipeline
+    private final RoundUpProcessor roundUpProcessor;
+    private final LockProvider lockProvider;
+    private final RoundUpStatusCache roundUpStatusCache;
+    private final RoundUpGate roundUpGate;
+    private final RoundUpMetrics roundUpMetrics;
+    private final TransactionTemplate transactionTemplate;
+
+    // gate: one atomic Redis call decides who processes the round-up, lock: database read then a lock from the LockProvider,
+    // database: conditional insert or update on round_up_requests with no lock
+    @Value("${roundup.idempotency.mode:lock}")
+    private String idempotencyMode;
 
-    public RoundUpService(RoundUpRequestRepository roundUpRequestRepository, RoundUpAsyncService roundUpAsyncService, RedissonClient redissonClient) {
+    public RoundUpService(RoundUpRequestRepository roundUpRequestRepository, RoundUpAsyncService roundUpAsyncService, RoundUpProcessor roundUpProcessor,
+                          LockProvider lockProvider, RoundUpStatusCache roundUpStatusCache, RoundUpGate roundUpGate, RoundUpMetrics roundUpMetrics,
+                          TransactionTemplate transactionTemplate) {
         this.roundUpRequestRepository = roundUpRequestRepository;
         this.roundUpAsyncService = roundUpAsyncService;
-        this.redissonClient = redissonClient;
+        this.roundUpProcessor = roundUpProcessor;
+        this.lockProvider = lockProvider;
+        this.roundUpStatusCache = roundUpStatusCache;
+        this.roundUpGate = roundUpGate;
+        this.roundUpMetrics = roundUpMetrics;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
@@ -59,77 +93,377 @@ public class RoundUpService {
      * For instance, if the client is returned with an IN_PROGRESS or ALREADY_IN_PROGRESS status, it could display
      * a message to the user that the round-up is being processed. The client would then use smart polling
      * to check the status every second for say 5 seconds, then check every 5 seconds up to 30 seconds to prevent
-     * overloading the server.
+     * overloading the server. Rather than polling, the client can wait on the /wait or /stream status endpoints,
+     * which answer as soon as the round-up finishes (see {@link RoundUpStatusWatcher}).
+     * With roundup.idempotency.mode set to gate the database read and the lock are replaced by
+     * {@link RoundUpGate}, a single Lua script in Redis which records the account and week as IN_PROGRESS or returns
+     * the state already recorded. Only the request that gets through the gate reads and writes the database. If Redis
+     * can not be reached the round-up is claimed through the database instead, as in database mode.
      *
+     * @param authToken the client's Starling access token, used by the processing and never stored
      * @param accountUid
      * @param maskedAccountUid
      * @param goalUid
      * @param weekCommencing
      * @return
      */
-    public ResponseEntity<RoundUpStatusResponse> initiateRoundUp(String accountUid, String maskedAccountUid, String goalUid, LocalDate weekCommencing) {
-        log.info("Initiating round-up for accountUid: {}, goalUid: {}, weekCommencing: {}", maskedAccountUid, maskSensitiveData(goalUid), weekCommencing);
-        Optional<RoundUpRequest> existingRequest = roundUpRequestRepository.findByAccountIdAndWeekCommencing(accountUid, weekCommencing);
+    public ResponseEntity<RoundUpStatusResponse> initiateRoundUp(String authToken, String accountUid, String maskedAccountUid, String goalUid, LocalDate weekCommencing) {
+        if (log.isInfoEnabled()) {
+            log.info("Initiating round-up for accountUid: {}, goalUid: {}, weekCommencing: {}", maskedAccountUid, maskSensitiveData(goalUid), weekCommencing);
+        }
+        return initiateRoundUp(authToken, accountUid, maskedAccountUid, goalUid, weekCommencing,
+                () -> roundUpRequestRepository.findByAccountIdAndWeekCommencing(accountUid, weekCommencing));
+    }
+
+    /**
+     * Initiates many round-ups with the same idempotency rules as {@link #initiateRoundUp}. The existing requests for
+     * every account and week in the batch are loaded with a single query rather than one query per item. A failure
+     * for one item is reported as FAILED for that item and does not stop the rest of the batch. Repeats of the same
+     * account and week within a batch are only processed once.
+     * The weekCommencing of every item must already have been validated.
+     */
+    public RoundUpBatchResponse initiateRoundUpBatch(String authToken, List<com.starling.roundup.model.request.RoundUpRequest> roundUps) {
+        log.info("Initiating batch of {} round-ups", roundUps.size());
+        Set<String> accountIds = new HashSet<>();
+        Set<LocalDate> weeksCommencing = new HashSet<>();
+        roundUps.forEach(roundUp -> {
+            accountIds.add(roundUp.getAccountUid());
+            weeksCommencing.add(LocalDate.parse(roundUp.getWeekCommencing()));
+        });
+
+        // The IN query can return combinations of account and week that are not in the batch, these are never looked up
+        Map<String, RoundUpRequest> existingRequests = new HashMap<>();
+        roundUpRequestRepository.findByAccountIdInAndWeekCommencingIn(accountIds, weeksCommencing)
+                .forEach(request -> existingRequests.put(batchKey(request.getAccountId(), request.getWeekCommencing()), request));
+
+        Map<String, RoundUpStatusResponse> processed = new HashMap<>();
+        List<RoundUpBatchItemResponse> results = new ArrayList<>(roundUps.size());
+        for (com.starling.roundup.model.request.RoundUpRequest roundUp : roundUps) {
+            String accountUid = roundUp.getAccountUid();
+            LocalDate weekCommencing = LocalDate.parse(roundUp.getWeekCommencing());
+            String key = batchKey(accountUid, weekCommencing);
+
+            RoundUpStatusResponse status;
+            RoundUpStatusResponse previous = processed.get(key);
+            if (previous != null) {
+                status = previous.getStatus() == IN_PROGRESS ? new RoundUpStatusResponse(ALREADY_IN_PROGRESS) : previous;
+            } else {
+                status = initiateBatchItem(authToken, accountUid, roundUp.getSavingsGoalUid(), weekCommencing, () -> Optional.ofNullable(existingRequests.get(key)));
+                processed.put(key, status);
+            }
+            results.add(new RoundUpBatchItemResponse(accountUid, roundUp.getWeekCommencing(), status.getStatus(), status.getRoundUpAmount()));
+        }
+        log.info("Completed initiating batch of {} round-ups", roundUps.size());
+        return new RoundUpBatchResponse(results);
+    }
+
+    private RoundUpStatusResponse initiateBatchItem(String authToken, String accountUid, String goalUid, LocalDate weekCommencing,
+                                                    Supplier<Optional<RoundUpRequest>> existingRequest) {
+        String maskedAccountUid = maskSensitiveData(accountUid);
+        try {
+            return initiateRoundUp(authToken, accountUid, maskedAccountUid, goalUid, weekCommencing, existingRequest).getBody();
+        } catch (Exception e) {
+            log.error("Error occurred when initiating batch round-up for accountUid: {}, weekCommencing: {} - Exception: {}", maskedAccountUid, weekCommencing, e.getMessage());
+            return new RoundUpStatusResponse(StatusResponse.FAILED);
+        }
+    }
+
+    private static String batchKey(String accountUid, LocalDate weekCommencing) {
+        return accountUid + ":" + weekCommencing;
+    }
+
+    /**
+     * Applies the same checks as {@link #initiateRoundUp} but processes the round-up on the calling thread, for callers
+     * that limit how many round-ups run at once themselves, like the weekly schedule.
+     * @param authToken used to call Starling, for the schedule this is the {@link com.starling.roundup.client.StarlingServiceCredential}
+     * @return the status the round-up finished with, or why it was not started
+     */
+    public RoundUpStatusResponse runRoundUp(String authToken, String accountUid, String maskedAccountUid, String goalUid, LocalDate weekCommencing) {
+        // Processed right here, so there is nothing for the RoundUpProcessor to record
+        Claim claim = claimRoundUp(accountUid, maskedAccountUid, weekCommencing,
+                () -> roundUpRequestRepository.findByAccountIdAndWeekCommencing(accountUid, weekCommencing), request -> { });
+        if (claim.rejection() != null) {
+            return claim.rejection().getBody();
+        }
+        roundUpAsyncService.processRoundUp(authToken, claim.request().getRequestId(), accountUid, maskedAccountUid, goalUid, weekCommencing, generateUUID());
+        return checkRoundUpStatus(accountUid, maskedAccountUid, weekCommencing).getBody();
+    }
+
+    private ResponseEntity<RoundUpStatusResponse> initiateRoundUp(String authToken, String accountUid, String maskedAccountUid, String goalUid,
+                                                                  LocalDate weekCommencing, Supplier<Optional<RoundUpRequest>> existingRequest) {
+        Claim claim = claimRoundUp(accountUid, maskedAccountUid, weekCommencing, existingRequest,
+                request -> roundUpProcessor.recordClaim(request.getRequestId(), accountUid, goalUid, weekCommencing));
+        if (claim.rejection() != null) {
+            return claim.rejection();
+        }
+        RoundUpRequest request = claim.request();
+
+        // Process calling the Starling APIs, calculation and updating of database asynchronously
+        roundUpProcessor.processRoundUpAsync(authToken, request.getRequestId(), accountUid, maskedAccountUid, goalUid, weekCommencing);
+        log.info("Round-up processing started asynchronously for requestId: {}", request.getRequestId());
+
+        // Return a 202 accepted response with the requestID so the client can poll and check the porgress
+        // of the round up.
+        return ResponseEntity.accepted().body(new RoundUpStatusResponse(IN_PROGRESS));
+    }
+
+    /**
+     * Applies the idempotency checks for one account and week. If this caller is allowed to process the round-up the
+     * request is saved as IN_PROGRESS and returned in the claim, otherwise the claim holds the response to send back.
+     * @param existingRequest only called once the caller is known to be allowed through, or straight away in lock mode
+     * @param onClaimed called in the same transaction as the write of the IN_PROGRESS request, so anything it saves is
+     *                  committed, or rolled back, together with the claim
+     */
+    private Claim claimRoundUp(String accountUid, String maskedAccountUid, LocalDate weekCommencing, Supplier<Optional<RoundUpRequest>> existingRequest,
+                               Consumer<RoundUpRequest> onClaimed) {
+        RoundUpClaimEvent event = new RoundUpClaimEvent();
+        event.begin();
+        Claim claim = null;
+        try {
+            if (LOCK_MODE.equalsIgnoreCase(idempotencyMode)) {
+                claim = claimRoundUpWithLock(accountUid, maskedAccountUid, weekCommencing, existingRequest.get(), onClaimed);
+            } else if (DATABASE_MODE.equalsIgnoreCase(idempotencyMode)) {
+                claim = claimRoundUpWithDatabase(accountUid, maskedAccountUid, weekCommencing, existingRequest.get(), onClaimed);
+            } else {
+                claim = claimRoundUpWithGate(accountUid, maskedAccountUid, weekCommencing, existingRequest, onClaimed);
+            }
+            roundUpMetrics.recordInitiation(outcomeOf(claim));
+            return claim;
+        } finally {
+            // A claim that threw is still recorded, with a FAILED outcome
+            event.end();
+            if (event.shouldCommit()) {
+                event.requestId = claim != null && claim.request() != null ? claim.request().getRequestId() : "";
+                event.accountUid = maskedAccountUid;
+                event.weekCommencing = weekCommencing.toString();
+                event.mode = idempotencyMode;
+                event.outcome = claim != null ? outcomeOf(claim).name() : StatusResponse.FAILED.name();
+                event.commit();
+            }
+        }
+    }
 
+    private static StatusResponse outcomeOf(Claim claim) {
+        return claim.rejection() != null ? claim.rejection().getBody().getStatus() : IN_PROGRESS;
+    }
+
+    private Claim claimRoundUpWithGate(String accountUid, String maskedAccountUid, LocalDate weekCommencing, Supplier<Optional<RoundUpRequest>> existingRequest,
+                                       Consumer<RoundUpRequest> onClaimed) {
+        Optional<RoundUpStatusCache.CachedStatus> gateState;
+        try {
+            gateState = roundUpGate.tryEnter(accountUid, weekCommencing);
+        } catch (Exception e) {
+            // The database claim is safe on its own, so Redis being down does not stop round-ups from being started
+            log.warn("Round-up gate unavailable for accountUid: {}, weekCommencing: {}, claiming through the database - Exception: {}",
+                    maskedAccountUid, weekCommencing, e.getMessage());
+            return claimRoundUpWithDatabase(accountUid, maskedAccountUid, weekCommencing, existingRequest.get(), onClaimed);
+        }
+        if (gateState.isPresent()) {
+            log.info("Round-up gate for accountUid: {}, weekCommencing: {} is {}", maskedAccountUid, weekCommencing, gateState.get().status());
+            if (gateState.get().status() == COMPLETED) {
+                return Claim.rejected(ResponseEntity.ok(new RoundUpStatusResponse(ALREADY_COMPLETED, valueOf(gateState.get().roundUpAmount()))));
+            }
+            return Claim.rejected(ResponseEntity.status(CONFLICT).body(new RoundUpStatusResponse(ALREADY_IN_PROGRESS)));
+        }
+
+        log.debug("Passed round-up gate for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
+        try {
+            Optional<RoundUpRequest> request = existingRequest.get();
+            Optional<Claim> rejection = request.flatMap(existing -> rejectExistingRequest(existing, maskedAccountUid, weekCommencing));
+            if (rejection.isPresent()) {
+                // The gate had expired while the database still had the round-up, put back what the database says
+                roundUpGate.record(accountUid, weekCommencing, request.get().getStatus(), request.get().getRoundUpAmount());
+                return rejection.get();
+            }
+            return Claim.claimed(saveInProgressRequest(accountUid, maskedAccountUid, weekCommencing, request, onClaimed));
+        } catch (Exception e) {
+            log.error("Error occurred when initiating round-up for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing, e);
+            roundUpGate.release(accountUid, weekCommencing);
+            throw e;
+        }
+    }
+
+    /**
+     * Claims the round-up through the database alone, whichever caller's insert or update changes a row wins. This is
+     * correct with any number of instances because the unique constraint on account and week and the conditional
+     * update are enforced by the database.
+     */
+    private Claim claimRoundUpWithDatabase(String accountUid, String maskedAccountUid, LocalDate weekCommencing, Optional<RoundUpRequest> existingRequest,
+                                           Consumer<RoundUpRequest> onClaimed) {
         if (existingRequest.isPresent()) {
             RoundUpRequest request = existingRequest.get();
-            log.info("Found existing request with status: {}", request.getStatus());
-
-            // If request is already completed, return COMPLETED status with round-up amount
             if (request.getStatus() == COMPLETED) {
-                log.info("Round-up already completed for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
-                return ResponseEntity.ok(new RoundUpStatusResponse(ALREADY_COMPLETED, valueOf(request.getRoundUpAmount())));
+                // COMPLETED is never changed, so even a read made earlier, e.g. for a whole batch, is still right
+                return rejectExistingRequest(request, maskedAccountUid, weekCommencing).orElseThrow();
             }
-
-            // If request is in progress, return IN_PROGRESS response to prevent duplicate processing
-            if (request.getStatus() == Status.IN_PROGRESS) {
-                log.warn("Round-up already in progress for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
-                return ResponseEntity.status(CONFLICT).body(new RoundUpStatusResponse(ALREADY_IN_PROGRESS));
+            if (request.getStatus() == FAILED
+                    && writeClaim(() -> roundUpRequestRepository.retryFailed(accountUid, weekCommencing, request.getVersion()), request, onClaimed) == 1) {
+                log.info("Retrying failed round-up for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
+                request.setStatus(Status.IN_PROGRESS);
+                roundUpStatusCache.put(accountUid, weekCommencing, Status.IN_PROGRESS, 0);
+                return Claim.claimed(request);
             }
+            // IN_PROGRESS when it was read, or FAILED and retried by another request since. Either may have finished by now
+            log.info("Round-up for accountUid: {}, weekCommencing: {} is being processed by another request", maskedAccountUid, weekCommencing);
+            return rejectWithCurrentRequest(accountUid, maskedAccountUid, weekCommencing);
+        }
+
+        RoundUpRequest request = createNewRoundUpRequest(accountUid, weekCommencing);
+        int inserted;
+        try {
+            inserted = writeClaim(() -> roundUpRequestRepository.insertInProgressIfAbsent(request.getRequestId(), accountUid, weekCommencing), request, onClaimed);
+        } catch (DataIntegrityViolationException e) {
+            // Another request inserted the same account and week between the NOT EXISTS check and the insert
+            inserted = 0;
+        }
+        if (inserted == 1) {
+            log.info("Created new round-up request: {} for accountUid: {}, weekCommencing: {}", request.getRequestId(), maskedAccountUid, weekCommencing);
+            roundUpStatusCache.put(accountUid, weekCommencing, Status.IN_PROGRESS, 0);
+            return Claim.claimed(request);
+        }
+        return rejectWithCurrentRequest(accountUid, maskedAccountUid, weekCommencing);
+    }
+
+    // Lost to another request, answer with the row as it is now rather than as it was first read
+    private Claim rejectWithCurrentRequest(String accountUid, String maskedAccountUid, LocalDate weekCommencing) {
+        return roundUpRequestRepository.findByAccountIdAndWeekCommencing(accountUid, weekCommencing)
+                .flatMap(existing -> rejectExistingRequest(existing, maskedAccountUid, weekCommencing))
+                .orElseGet(() -> Claim.rejected(ResponseEntity.status(CONFLICT).body(new RoundUpStatusResponse(ALREADY_IN_PROGRESS))));
+    }
+
+    private Claim claimRoundUpWithLock(String accountUid, String maskedAccountUid, LocalDate weekCommencing, Optional<RoundUpRequest> existingRequest,
+                                       Consumer<RoundUpRequest> onClaimed) {
+        Optional<Claim> rejection = existingRequest.flatMap(request -> rejectExistingRequest(request, maskedAccountUid, weekCommencing));
+        if (rejection.isPresent()) {
+            return rejection.get();
         }
         // Unique lock with accountUid & week commencing to prevent race conditions where multiple
         // requests may try rounding up simultaneously. Using accountUid & weekCommencing as this
         // will be unique, although requestId will also be unique, the client will not know the requestId
-        RLock lock = redissonClient.getLock("roundup-lock:" + accountUid + ":" + weekCommencing);
-        if (lock.tryLock()) {
+        Optional<LockProvider.HeldLock> lock = lockProvider.tryLock("roundup-lock:" + accountUid + ":" + weekCommencing);
+        if (lock.isPresent()) {
             log.debug("Acquired lock to process round-up for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
-            try {
-                RoundUpRequest request;
-                // If the status is FAILED, it means there was an issue previously. You can retry for the same
-                // account and week by updating the status to IN_PROGRESS. In the future a retry count could
-                // be implemented to limit re-tries
-                if (existingRequest.isPresent() && existingRequest.get().getStatus() == FAILED) {
-                    request = existingRequest.get();
-                    request.setStatus(Status.IN_PROGRESS);
-                    log.info("Retrying failed round-up for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
-                } else {
-                    // Create a new round-up request for this week and account
-                    request = createNewRoundUpRequest(accountUid, weekCommencing);
-                    log.info("Created new round-up request: {} for accountUid: {}, weekCommencing: {}",request.getRequestId(), maskedAccountUid, weekCommencing);
-                }
-                roundUpRequestRepository.save(request);
-                log.debug("Round-up request: {} saved in DB", request.getRequestId());
-
-                // Process calling the Starling APIs, calculation and updating of database asynchronously
-                roundUpAsyncService.processRoundUpAsync("" ,request.getRequestId(), accountUid, maskedAccountUid, goalUid, weekCommencing);
-                log.info("Round-up processing started asynchronously for requestId: {}", request.getRequestId());
-
-                // Return a 202 accepted response with the requestID so the client can poll and check the porgress
-                // of the round up.
-                return ResponseEntity.accepted().body(new RoundUpStatusResponse(IN_PROGRESS));
+            try (LockProvider.HeldLock ignored = lock.get()) {
+                return Claim.claimed(saveInProgressRequest(accountUid, maskedAccountUid, weekCommencing, existingRequest, onClaimed));
             } catch (Exception e) {
                 log.error("Error occurred when initiating round-up for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing, e);
                 throw e;
-            }finally {
-                lock.unlock();
             }
         } else {
             log.debug("Could not acquire lock as round-up is already in progress for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
-            return ResponseEntity.ok(new RoundUpStatusResponse(ALREADY_IN_PROGRESS));
+            return Claim.rejected(ResponseEntity.ok(new RoundUpStatusResponse(ALREADY_IN_PROGRESS)));
+        }
+    }
+
+    private static Optional<Claim> rejectExistingRequest(RoundUpRequest request, String maskedAccountUid, LocalDate weekCommencing) {
+        log.info("Found existing request with status: {}", request.getStatus());
+
+        // If request is already completed, return COMPLETED status with round-up amount
+        if (request.getStatus() == COMPLETED) {
+            log.info("Round-up already completed for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
+            return Optional.of(Claim.rejected(ResponseEntity.ok(new RoundUpStatusResponse(ALREADY_COMPLETED, valueOf(request.getRoundUpAmount())))));
+        }
+
+        // If request is in progress, return IN_PROGRESS response to prevent duplicate processing
+        if (request.getStatus() == Status.IN_PROGRESS) {
+            log.warn("Round-up already in progress for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
+            return Optional.of(Claim.rejected(ResponseEntity.status(CONFLICT).body(new RoundUpStatusResponse(ALREADY_IN_PROGRESS))));
+        }
+        return Optional.empty();
+    }
+
+    private RoundUpRequest saveInProgressRequest(String accountUid, String maskedAccountUid, LocalDate weekCommencing, Optional<RoundUpRequest> existingRequest,
+                                                 Consumer<RoundUpRequest> onClaimed) {
+        RoundUpRequest request;
+        // If the status is FAILED, it means there was an issue previously. You can retry for the same
+        // account and week by updating the status to IN_PROGRESS. In the future a retry count could
+        // be implemented to limit re-tries
+        if (existingRequest.isPresent() && existingRequest.get().getStatus() == FAILED) {
+            request = existingRequest.get();
+            request.setStatus(Status.IN_PROGRESS);
+            log.info("Retrying failed round-up for accountUid: {}, weekCommencing: {}", maskedAccountUid, weekCommencing);
+        } else {
+            // Create a new round-up request for this week and account
+            request = createNewRoundUpRequest(accountUid, weekCommencing);
+            log.info("Created new round-up request: {} for accountUid: {}, weekCommencing: {}",request.getRequestId(), maskedAccountUid, weekCommencing);
+        }
+        RoundUpRequest inProgress = request;
+        writeClaim(() -> {
+            roundUpRequestRepository.save(inProgress);
+            return 1;
+        }, request, onClaimed);
+        roundUpStatusCache.put(accountUid, weekCommencing, Status.IN_PROGRESS, request.getRoundUpAmount());
+        log.debug("Round-up request: {} saved in DB", request.getRequestId());
+        return request;
+    }
+
+    /**
+     * Runs the write that claims the round-up and, if it changed a row, onClaimed in one transaction. A failure in
+     * either rolls back both, so there is never an IN_PROGRESS request without whatever onClaimed saves for it.
+     * @return rows changed by the write
+     */
+    private int writeClaim(Supplier<Integer> write, RoundUpRequest request, Consumer<RoundUpRequest> onClaimed) {
+        return transactionTemplate.execute(status -> {
+            int written = write.get();
+            if (written == 1) {
+                onClaimed.accept(request);
+            }
+            return written;
+        });
+    }
+
+    /**
+     * Initiates the round-up for a range of weeks of one account. Every week goes through the same idempotency
+     * checks as {@link #initiateRoundUp}, then the weeks that were claimed are handed to the {@link RoundUpProcessor}
+     * of the configured pipeline, see {@link RoundUpAsyncService#processRoundUpRangeAsync} for the blocking one.
+     * @param weeksCommencing validated Mondays of completed weeks, in order
+     */
+    public ResponseEntity<RoundUpBatchResponse> initiateRoundUpRange(String authToken, String accountUid, String maskedAccountUid, String goalUid,
+                                                                     List<LocalDate> weeksCommencing) {
+        log.info("Initiating round-up for accountUid: {}, goalUid: {}, weeks commencing {} to {}", maskedAccountUid, maskSensitiveData(goalUid),
+                weeksCommencing.get(0), weeksCommencing.get(weeksCommencing.size() - 1));
+        Map<LocalDate, RoundUpRequest> existingRequests = new HashMap<>();
+        roundUpRequestRepository.findByAccountIdInAndWeekCommencingIn(List.of(accountUid), weeksCommencing)
+                .forEach(request -> existingRequests.put(request.getWeekCommencing(), request));
+
+        Map<LocalDate, String> claimedWeeks = new TreeMap<>();
+        List<RoundUpBatchItemResponse> results = new ArrayList<>(weeksCommencing.size());
+        for (LocalDate weekCommencing : weeksCommencing) {
+            Claim claim = claimRoundUp(accountUid, maskedAccountUid, weekCommencing, () -> Optional.ofNullable(existingRequests.get(weekCommencing)),
+                    request -> roundUpProcessor.recordClaim(request.getRequestId(), accountUid, goalUid, weekCommencing));
+            RoundUpStatusResponse status;
+            if (claim.rejection() != null) {
+                status = claim.rejection().getBody();
+            } else {
+                claimedWeeks.put(weekCommencing, claim.request().getRequestId());
+                status = new RoundUpStatusResponse(IN_PROGRESS);
+            }
+            results.add(new RoundUpBatchItemResponse(accountUid, weekCommencing.toString(), status.getStatus(), status.getRoundUpAmount()));
+        }
+
+        if (claimedWeeks.isEmpty()) {
+            log.info("No weeks left to round-up for accountUid: {}", maskedAccountUid);
+            return ResponseEntity.ok(new RoundUpBatchResponse(results));
+        }
+        roundUpProcessor.processRoundUpRangeAsync(authToken, accountUid, maskedAccountUid, goalUid, claimedWeeks);
+        log.info("Round-up processing of {} weeks started asynchronously for accountUid: {}", claimedWeeks.size(), maskedAccountUid);
+        return ResponseEntity.accepted().body(new RoundUpBatchResponse(results));
+    }
+
+    private record Claim(RoundUpRequest request, ResponseEntity<RoundUpStatusResponse> rejection) {
+
+        static Claim claimed(RoundUpRequest request) {
+            return new Claim(request, null);
+        }
+
+        static Claim rejected(ResponseEntity<RoundUpStatusResponse> rejection) {
+            return new Claim(null, rejection);
         }
     }
 
     /**
+     * Returns the status for the account and week. Clients poll this, so the status is read from
+     * {@link RoundUpStatusCache} and the database is only queried when it is not cached on any instance.
      * @param accountId
      * @param maskedAccountId
      * @param weekCommencing
@@ -137,6 +471,12 @@ public class RoundUpService {
      */
     public ResponseEntity<RoundUpStatusResponse> checkRoundUpStatus(String accountId, String maskedAccountId, LocalDate weekCommencing) {
         log.info("Checking round-up status for accountId: {}, weekCommencing: {}", maskedAccountId, weekCommencing);
+        Optional<RoundUpStatusCache.CachedStatus> cachedStatus = roundUpStatusCache.get(accountId, weekCommencing);
+        if (cachedStatus.isPresent()) {
+            log.debug("Round-up status found in cache for accountId: {}, weekCommencing: {}", maskedAccountId, weekCommencing);
+            return ResponseEntity.ok(toStatusResponse(cachedStatus.get().status(), cachedStatus.get().roundUpAmount()));
+        }
+
         Optional<RoundUpRequest> roundUpRequest = roundUpRequestRepository.findByAccountIdAndWeekCommencing(accountId, weekCommencing);
 
         if (roundUpRequest.isEmpty()) {
@@ -146,10 +486,15 @@ public class RoundUpService {
 
         RoundUpRequest request = roundUpRequest.get();
         log.info("Round-up request found with status: {} for accountId: {}, weekCommencing: {}", request.getStatus(), maskedAccountId, weekCommencing);
+        roundUpStatusCache.putIfAbsent(accountId, weekCommencing, request.getStatus(), request.getRoundUpAmount());
+        return ResponseEntity.ok(toStatusResponse(request.getStatus(), request.getRoundUpAmount()));
+    }
+
+    static RoundUpStatusResponse toStatusResponse(Status status, long roundUpAmount) {
         RoundUpStatusResponse response = new RoundUpStatusResponse();
-        response.setStatus(fromStatus(request.getStatus()));
-        if (COMPLETED.equals(request.getStatus())) response.setRoundUpAmount(valueOf(request.getRoundUpAmount()));
-        return ResponseEntity.ok(response);
+        response.setStatus(fromStatus(status));
+        if (COMPLETED.equals(status)) response.setRoundUpAmount(valueOf(roundUpAmount));
+        return response;
     }
 
     private RoundUpRequest createNewRoundUpRequest(String accountUid, LocalDate weekCommencing) {
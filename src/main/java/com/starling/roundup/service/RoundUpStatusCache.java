@@ -0,0 +1,131 @@
+package com.starling.roundup.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.starling.roundup.entity.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.map.event.EntryCreatedListener;
+import org.redisson.api.map.event.EntryExpiredListener;
+import org.redisson.api.map.event.EntryRemovedListener;
+import org.redisson.api.map.event.EntryUpdatedListener;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
+
+/**
+ * Near cache of the round-up status for each account and week, so that clients polling the status endpoint are
+ * served from memory instead of the database. Entries live in a Redis map cache shared by every instance with a local
+ * copy in each JVM. A write on one instance invalidates the local copies on the others, which then read the new
+ * value from Redis on their next poll. Each shared entry expires roundup.status-cache.shared-ttl after it was last
+ * written and is then evicted from Redis, so the map does not grow with every round-up ever made. Invalidations
+ * missed while an instance is disconnected from Redis can not be replayed, its local copies are then only as fresh
+ * as roundup.status-cache.ttl.
+ * Every status change must be written here after it has been written to the database. Redis being unavailable
+ * never fails a request, reads fall back to the database. Without Redis (the single-node profile) the statuses
+ * are only cached in this JVM.
+ */
+@Slf4j
+@Component
+public class RoundUpStatusCache {
+
+    private static final String MAP_NAME = "roundup-statuses";
+    private static final char SEPARATOR = ':';
+
+    private final Cache<String, String> localStatuses;
+    // Null without Redis
+    private final RMapCache<String, String> sharedStatuses;
+    private final long sharedTtlMillis;
+
+    public RoundUpStatusCache(ObjectProvider<RedissonClient> redissonClient,
+                              @Value("${roundup.status-cache.size:100000}") int cacheSize,
+                              @Value("${roundup.status-cache.ttl:10m}") Duration timeToLive,
+                              @Value("${roundup.status-cache.shared-ttl:7d}") Duration sharedTimeToLive) {
+        this.localStatuses = Caffeine.newBuilder().maximumSize(cacheSize).expireAfterWrite(timeToLive).build();
+        this.sharedTtlMillis = sharedTimeToLive.toMillis();
+        RedissonClient redisson = redissonClient.getIfAvailable();
+        if (redisson == null) {
+            this.sharedStatuses = null;
+            return;
+        }
+        this.sharedStatuses = redisson.getMapCache(MAP_NAME, StringCodec.INSTANCE);
+        // Published by Redis to every instance, including this one, for any change to the shared map
+        sharedStatuses.addListener((EntryCreatedListener<String, String>) event -> localStatuses.invalidate(event.getKey()));
+        sharedStatuses.addListener((EntryUpdatedListener<String, String>) event -> localStatuses.invalidate(event.getKey()));
+        sharedStatuses.addListener((EntryRemovedListener<String, String>) event -> localStatuses.invalidate(event.getKey()));
+        sharedStatuses.addListener((EntryExpiredListener<String, String>) event -> localStatuses.invalidate(event.getKey()));
+    }
+
+    public Optional<CachedStatus> get(String accountId, LocalDate weekCommencing) {
+        try {
+            String key = key(accountId, weekCommencing);
+            // A missing value is not cached locally, so the next poll asks Redis again
+            String value = sharedStatuses == null ? localStatuses.getIfPresent(key) : localStatuses.get(key, sharedStatuses::get);
+            return value == null ? Optional.empty() : Optional.of(CachedStatus.decode(value));
+        } catch (Exception e) {
+            log.warn("Could not read cached round-up status for accountId: {}, weekCommencing: {} - Exception: {}", maskSensitiveData(accountId), weekCommencing, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes through a status that has just been saved to the database.
+     */
+    public void put(String accountId, LocalDate weekCommencing, Status status, long roundUpAmount) {
+        try {
+            String key = key(accountId, weekCommencing);
+            String value = new CachedStatus(status, roundUpAmount).encode();
+            // fastPut does not send the previous value back from Redis
+            if (sharedStatuses != null) {
+                sharedStatuses.fastPut(key, value, sharedTtlMillis, TimeUnit.MILLISECONDS);
+            }
+            localStatuses.put(key, value);
+        } catch (Exception e) {
+            log.warn("Could not cache round-up status for accountId: {}, weekCommencing: {} - Exception: {}", maskSensitiveData(accountId), weekCommencing, e.getMessage());
+        }
+    }
+
+    /**
+     * Caches a status read from the database. A status written through by {@link #put} while the database was being
+     * read is newer, so it is never replaced.
+     */
+    public void putIfAbsent(String accountId, LocalDate weekCommencing, Status status, long roundUpAmount) {
+        try {
+            String key = key(accountId, weekCommencing);
+            String value = new CachedStatus(status, roundUpAmount).encode();
+            if (sharedStatuses != null) {
+                sharedStatuses.fastPutIfAbsent(key, value, sharedTtlMillis, TimeUnit.MILLISECONDS);
+            } else {
+                localStatuses.asMap().putIfAbsent(key, value);
+            }
+        } catch (Exception e) {
+            log.warn("Could not cache round-up status for accountId: {}, weekCommencing: {} - Exception: {}", maskSensitiveData(accountId), weekCommencing, e.getMessage());
+        }
+    }
+
+    private static String key(String accountId, LocalDate weekCommencing) {
+        return accountId + SEPARATOR + weekCommencing;
+    }
+
+    public record CachedStatus(Status status, long roundUpAmount) {
+
+        // Stored as STATUS:amount so the value is readable with redis-cli and needs no serialiser, also used by RoundUpGate
+        String encode() {
+            return status.name() + SEPARATOR + roundUpAmount;
+        }
+
+        static CachedStatus decode(String value) {
+            int separator = value.indexOf(SEPARATOR);
+            return new CachedStatus(Status.valueOf(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.event.RoundUpStatusChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
+
+/**
+ * Fans out round-up completions to every instance. The instance that finishes a round-up publishes to a Redis
+ * topic, and each instance, including the publisher, republishes what it receives as a
+ * {@link RoundUpStatusChangedEvent} on the Spring application event bus for the clients waiting on it locally.
+ * Without Redis (the single-node profile) the event goes straight onto the local event bus.
+ */
+@Slf4j
+@Component
+public class RoundUpStatusNotifier {
+
+    private static final String TOPIC_NAME = "roundup-status-events";
+
+    // Null without Redis
+    private final RTopic topic;
+    private final ApplicationEventPublisher eventPublisher;
+    private int listenerId;
+
+    public RoundUpStatusNotifier(ObjectProvider<RedissonClient> redissonClient, ApplicationEventPublisher eventPublisher) {
+        RedissonClient redisson = redissonClient.getIfAvailable();
+        this.topic = redisson == null ? null : redisson.getTopic(TOPIC_NAME, StringCodec.INSTANCE);
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (topic == null) {
+            return;
+        }
+        listenerId = topic.addListener(String.class, (channel, message) -> {
+            try {
+                eventPublisher.publishEvent(RoundUpStatusChangedEvent.decode(message));
+            } catch (Exception e) {
+                log.error("Could not dispatch round-up status event: {}", e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (topic != null) {
+            topic.removeListener(listenerId);
+        }
+    }
+
+    /**
+     * Called after the new status has been saved, so a waiter that re-reads the status on the event sees it.
+     */
+    public void publish(String accountId, LocalDate weekCommencing, Status status, long roundUpAmount) {
+        RoundUpStatusChangedEvent event = new RoundUpStatusChangedEvent(accountId, weekCommencing, status, roundUpAmount);
+        if (topic == null) {
+            eventPublisher.publishEvent(event);
+            return;
+        }
+        try {
+            topic.publish(event.encode());
+        } catch (Exception e) {
+            // Other instances will not hear about it, their waiters time out and read the status instead
+            log.warn("Could not publish round-up status for accountId: {}, weekCommencing: {} - Exception: {}", maskSensitiveData(accountId), weekCommencing, e.getMessage());
+            eventPublisher.publishEvent(event);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.event.RoundUpStatusChangedEvent;
+import com.starling.roundup.model.response.RoundUpStatusResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static com.starling.roundup.model.response.StatusResponse.IN_PROGRESS;
+
+/**
+ * Holds the clients waiting for a round-up to finish, either as a long poll or as a server-sent event stream,
+ * and completes them when a {@link RoundUpStatusChangedEvent} arrives. Neither holds a request thread while waiting.
+ * A waiter is always registered before the current status is read, so a round-up that finishes in between is
+ * seen by the read if not by the event.
+ */
+@Slf4j
+@Component
+public class RoundUpStatusWatcher {
+
+    private static final String SSE_EVENT_NAME = "status";
+
+    private final RoundUpService roundUpService;
+    private final Duration maxWait;
+    private final Map<String, Set<Consumer<RoundUpStatusResponse>>> waiters = new ConcurrentHashMap<>();
+
+    public RoundUpStatusWatcher(RoundUpService roundUpService, @Value("${roundup.status-watch.max-wait:30s}") Duration maxWait) {
+        this.roundUpService = roundUpService;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Long poll: completes with the final status as soon as the round-up finishes, or with the status at the time
+     * once the wait runs out. Returns straight away if the round-up is not in progress.
+     */
+    public DeferredResult<ResponseEntity<RoundUpStatusResponse>> awaitStatus(String accountId, String maskedAccountId, LocalDate weekCommencing, Duration wait) {
+        Duration timeout = wait.compareTo(maxWait) > 0 ? maxWait : wait;
+        // A timeout of 0 would mean no timeout at all to the servlet container
+        DeferredResult<ResponseEntity<RoundUpStatusResponse>> result = new DeferredResult<>(Math.max(timeout.toMillis(), 1));
+        String key = key(accountId, weekCommencing);
+        Consumer<RoundUpStatusResponse> waiter = status -> result.setResult(ResponseEntity.ok(status));
+        register(key, waiter);
+        result.onCompletion(() -> unregister(key, waiter));
+        result.onTimeout(() -> result.setResult(roundUpService.checkRoundUpStatus(accountId, maskedAccountId, weekCommencing)));
+
+        ResponseEntity<RoundUpStatusResponse> current = roundUpService.checkRoundUpStatus(accountId, maskedAccountId, weekCommencing);
+        if (!isInProgress(current)) {
+            result.setResult(current);
+        }
+        return result;
+    }
+
+    /**
+     * Server-sent events: sends the current status, then the final status when the round-up finishes, and closes
+     * the stream. The stream is closed without a final status after the max wait.
+     */
+    public SseEmitter streamStatus(String accountId, String maskedAccountId, LocalDate weekCommencing) {
+        StatusStream stream = new StatusStream(new SseEmitter(maxWait.toMillis()));
+        String key = key(accountId, weekCommencing);
+        Consumer<RoundUpStatusResponse> waiter = status -> stream.send(status, true);
+        register(key, waiter);
+        stream.emitter.onCompletion(() -> unregister(key, waiter));
+        stream.emitter.onTimeout(stream.emitter::complete);
+
+        ResponseEntity<RoundUpStatusResponse> current = roundUpService.checkRoundUpStatus(accountId, maskedAccountId, weekCommencing);
+        stream.send(current.getBody(), !isInProgress(current));
+        log.debug("Streaming round-up status for accountId: {}, weekCommencing: {}", maskedAccountId, weekCommencing);
+        return stream.emitter;
+    }
+
+    @EventListener
+    public void onStatusChanged(RoundUpStatusChangedEvent event) {
+        Set<Consumer<RoundUpStatusResponse>> waiting = waiters.remove(key(event.accountId(), event.weekCommencing()));
+        if (waiting == null) {
+            return;
+        }
+        RoundUpStatusResponse status = RoundUpService.toStatusResponse(event.status(), event.roundUpAmount());
+        waiting.forEach(waiter -> waiter.accept(status));
+    }
+
+    private void register(String key, Consumer<RoundUpStatusResponse> waiter) {
+        waiters.computeIfAbsent(key, ignored -> ConcurrentHashMap.newKeySet()).add(waiter);
+    }
+
+    private void unregister(String key, Consumer<RoundUpStatusResponse> waiter) {
+        waiters.computeIfPresent(key, (ignored, waiting) -> {
+            waiting.remove(waiter);
+            return waiting.isEmpty() ? null : waiting;
+        });
+    }
+
+    private static boolean isInProgress(ResponseEntity<RoundUpStatusResponse> response) {
+        return response.getBody() != null && response.getBody().getStatus() == IN_PROGRESS;
+    }
+
+    private static String key(String accountId, LocalDate weekCommencing) {
+        return accountId + ":" + weekCommencing;
+    }
+
+    /**
+     * Sends are serialised so the final status can not overtake the initial one, and nothing is sent once the
+     * final status has gone.
+     */
+    private static final class StatusStream {
+
+        private final SseEmitter emitter;
+        private boolean finished;
+
+        private StatusStream(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private synchronized void send(RoundUpStatusResponse status, boolean last) {
+            if (finished) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(SSE_EVENT_NAME).data(status));
+                if (last) {
+                    finished = true;
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client has gone away
+                finished = true;
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
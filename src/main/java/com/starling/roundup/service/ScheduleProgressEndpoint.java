@@ -0,0 +1,28 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.model.response.ScheduledRunProgressResponse;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint showing the progress of the most recent weekly scheduled round-up, at GET /actuator/roundupschedule.
+ * It reports on every enrolled account at once rather than on the caller's own, so like jfr it is not exposed over
+ * the web by default. Expose it over JMX, or on a management port only operators can reach.
+ */
+@Component
+@Endpoint(id = "roundupschedule")
+public class ScheduleProgressEndpoint {
+
+    private final ScheduledRoundUpService scheduledRoundUpService;
+
+    public ScheduleProgressEndpoint(ScheduledRoundUpService scheduledRoundUpService) {
+        this.scheduledRoundUpService = scheduledRoundUpService;
+    }
+
+    // Null is answered with a 404 until the schedule has run for the first time
+    @ReadOperation
+    public ScheduledRunProgressResponse progress() {
+        return scheduledRoundUpService.getProgress().orElse(null);
+    }
+}
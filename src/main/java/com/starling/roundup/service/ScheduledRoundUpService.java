@@ -0,0 +1,207 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.client.StarlingServiceCredential;
+import com.starling.roundup.entity.RoundUpEnrolment;
+import com.starling.roundup.entity.ScheduledRun;
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.lock.LockProvider;
+import com.starling.roundup.model.response.RoundUpStatusResponse;
+import com.starling.roundup.model.response.ScheduledRunProgressResponse;
+import com.starling.roundup.repository.RoundUpEnrolmentRepository;
+import com.starling.roundup.repository.ScheduledRunRepository;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.starling.roundup.util.LoggingUtils.maskSensitiveData;
+import static java.time.DayOfWeek.MONDAY;
+
+/**
+ * Runs the round-up of the previous week for every enrolled account, once a week. Enrolments are walked in pages
+ * of roundup.schedule.page-size and the round-ups are started at the pace of the roundUpSchedule rate limiter,
+ * with at most roundup.schedule.max-concurrent running at once, so the weekly load on Starling is spread out.
+ * Progress is saved after every page. An interrupted run is resumed when the application next starts, and the round-ups
+ * of a page that was part done are simply skipped the second time by the usual idempotency checks.
+ * Only one instance runs a given week, the others find its lock held. Starling is called with the
+ * {@link StarlingServiceCredential}, as there is no client request to take a token from.
+ */
+@Slf4j
+@Service
+public class ScheduledRoundUpService {
+
+    private static final String RATE_LIMITER_NAME = "roundUpSchedule";
+    private static final String SCHEDULE = "the weekly round-up schedule";
+
+    private final RoundUpEnrolmentRepository roundUpEnrolmentRepository;
+    private final ScheduledRunRepository scheduledRunRepository;
+    private final RoundUpService roundUpService;
+    private final LockProvider lockProvider;
+    private final StarlingServiceCredential serviceCredential;
+    private final RateLimiter rateLimiter;
+    private final Semaphore runningRoundUps;
+    private final ExecutorService roundUpWorkers;
+    // Runs one week at a time, off the scheduler and startup threads
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("roundup-schedule-"));
+
+    @Value("${roundup.schedule.enabled:false}")
+    private boolean enabled;
+
+    @Value("${roundup.schedule.page-size:500}")
+    private int pageSize;
+
+    public ScheduledRoundUpService(RoundUpEnrolmentRepository roundUpEnrolmentRepository, ScheduledRunRepository scheduledRunRepository,
+                                   RoundUpService roundUpService, LockProvider lockProvider, StarlingServiceCredential serviceCredential,
+                                   RateLimiterRegistry rateLimiterRegistry, @Value("${roundup.schedule.max-concurrent:8}") int maxConcurrent) {
+        this.roundUpEnrolmentRepository = roundUpEnrolmentRepository;
+        this.scheduledRunRepository = scheduledRunRepository;
+        this.roundUpService = roundUpService;
+        this.lockProvider = lockProvider;
+        this.serviceCredential = serviceCredential;
+        this.rateLimiter = rateLimiterRegistry.rateLimiter(RATE_LIMITER_NAME);
+        this.runningRoundUps = new Semaphore(maxConcurrent);
+        this.roundUpWorkers = Executors.newFixedThreadPool(maxConcurrent, new CustomizableThreadFactory("roundup-schedule-worker-"));
+    }
+
+    // Fails at startup rather than every round-up of the week failing with a 401
+    @PostConstruct
+    void checkCredential() {
+        if (enabled) {
+            serviceCredential.getAccessToken(SCHEDULE);
+        }
+    }
+
+    public void enrol(String accountUid, String savingsGoalUid) {
+        roundUpEnrolmentRepository.save(new RoundUpEnrolment(accountUid, savingsGoalUid, true, Instant.now()));
+        log.info("Enrolled accountUid: {} in the weekly round-up", maskSensitiveData(accountUid));
+    }
+
+    // Only fires when roundup.schedule.enabled turns on scheduling, see SchedulingConfig
+    @Scheduled(cron = "${roundup.schedule.cron:0 0 2 * * MON}", zone = "UTC")
+    public void runPreviousWeek() {
+        LocalDate weekCommencing = LocalDate.now(ZoneOffset.UTC).with(MONDAY).minusWeeks(1);
+        coordinator.execute(() -> run(weekCommencing));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRun() {
+        if (!enabled) {
+            return;
+        }
+        scheduledRunRepository.findFirstByStatusOrderByWeekCommencingDesc(Status.IN_PROGRESS)
+                .ifPresent(run -> coordinator.execute(() -> run(run.getWeekCommencing())));
+    }
+
+    public Optional<ScheduledRunProgressResponse> getProgress() {
+        return scheduledRunRepository.findFirstByOrderByWeekCommencingDesc()
+                .map(run -> new ScheduledRunProgressResponse(run.getWeekCommencing().toString(), run.getStatus(),
+                        roundUpEnrolmentRepository.countByActiveTrue(), run.getProcessed(), run.getCompleted(), run.getFailed(),
+                        run.getSkipped(), run.getStartedAt(), run.getFinishedAt()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        coordinator.shutdownNow();
+        roundUpWorkers.shutdownNow();
+    }
+
+    void run(LocalDate weekCommencing) {
+        Optional<LockProvider.HeldLock> lock = lockProvider.tryLock("roundup-schedule:" + weekCommencing);
+        if (lock.isEmpty()) {
+            log.info("Scheduled round-up for weekCommencing: {} is being run by another instance", weekCommencing);
+            return;
+        }
+        try (LockProvider.HeldLock ignored = lock.get()) {
+            // Saved before the first page so that a run which dies part way through it is still found and resumed on startup
+            ScheduledRun run = scheduledRunRepository.findById(weekCommencing)
+                    .orElseGet(() -> scheduledRunRepository.save(
+                            new ScheduledRun(weekCommencing, Status.IN_PROGRESS, null, 0, 0, 0, 0, Instant.now(), null)));
+            if (run.getStatus() == Status.COMPLETED) {
+                log.info("Scheduled round-up for weekCommencing: {} has already completed", weekCommencing);
+                return;
+            }
+            log.info("Starting scheduled round-up for weekCommencing: {} after {} processed accounts", weekCommencing, run.getProcessed());
+
+            List<RoundUpEnrolment> page;
+            while (!(page = nextPage(run)).isEmpty()) {
+                runPage(page, run);
+                run.setLastAccountUid(page.get(page.size() - 1).getAccountUid());
+                scheduledRunRepository.save(run);
+                log.info("Scheduled round-up for weekCommencing: {} has processed {} accounts", weekCommencing, run.getProcessed());
+            }
+            run.setStatus(Status.COMPLETED);
+            run.setFinishedAt(Instant.now());
+            scheduledRunRepository.save(run);
+            log.info("Completed scheduled round-up for weekCommencing: {}, completed: {}, failed: {}, skipped: {}", weekCommencing,
+                    run.getCompleted(), run.getFailed(), run.getSkipped());
+        } catch (InterruptedException e) {
+            // Shutting down, the run carries on from the last saved page on the next start
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Scheduled round-up for weekCommencing: {} stopped - Exception: {}", weekCommencing, e.getMessage(), e);
+        }
+    }
+
+    private List<RoundUpEnrolment> nextPage(ScheduledRun run) {
+        String after = run.getLastAccountUid() == null ? "" : run.getLastAccountUid();
+        return roundUpEnrolmentRepository.findByActiveTrueAndAccountUidGreaterThanOrderByAccountUidAsc(after, Limit.of(pageSize));
+    }
+
+    private void runPage(List<RoundUpEnrolment> page, ScheduledRun run) throws InterruptedException {
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        CountDownLatch pageDone = new CountDownLatch(page.size());
+        String authToken = serviceCredential.getAccessToken(SCHEDULE);
+        for (RoundUpEnrolment enrolment : page) {
+            while (!rateLimiter.acquirePermission()) {
+                // Timed out waiting for a permit, keep waiting, nothing else is queued behind this thread
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            runningRoundUps.acquire();
+            roundUpWorkers.execute(() -> {
+                try {
+                    RoundUpStatusResponse status = roundUpService.runRoundUp(authToken, enrolment.getAccountUid(), maskSensitiveData(enrolment.getAccountUid()),
+                            enrolment.getSavingsGoalUid(), run.getWeekCommencing());
+                    switch (status.getStatus()) {
+                        case COMPLETED -> completed.incrementAndGet();
+                        case ALREADY_COMPLETED, ALREADY_IN_PROGRESS -> skipped.incrementAndGet();
+                        default -> failed.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    log.error("Scheduled round-up failed for accountUid: {} - Exception: {}", maskSensitiveData(enrolment.getAccountUid()), e.getMessage());
+                    failed.incrementAndGet();
+                } finally {
+                    runningRoundUps.release();
+                    pageDone.countDown();
+                }
+            });
+        }
+        pageDone.await();
+        run.setProcessed(run.getProcessed() + page.size());
+        run.setCompleted(run.getCompleted() + completed.get());
+        run.setFailed(run.getFailed() + failed.get());
+        run.setSkipped(run.getSkipped() + skipped.get());
+    }
+}
@@ -0,0 +1,55 @@
+package com.starling.roundup.util;
+
+/**
+ * ISO 4217 codes packed into an int, 5 bits for each of the three letters, so a currency can be compared with
+ * {@code ==} and looked up by binary search over the sorted codes in {@link CurrencyRateTable}. Every valid code is
+ * in {@code 0 .. MAX_CODE}, anything that is not three upper case letters is {@link #UNKNOWN}.
+ */
+public final class CurrencyCodes {
+
+    public static final int UNKNOWN = -1;
+    public static final int MAX_CODE = (1 << 15) - 1;
+    public static final int GBP = pack(Constants.GBP);
+
+    private CurrencyCodes() {
+    }
+
+    public static int pack(String currency) {
+        if (currency == null || currency.length() != 3) {
+            return UNKNOWN;
+        }
+        return pack(currency.charAt(0), currency.charAt(1), currency.charAt(2));
+    }
+
+    /**
+     * Packs a code held in a char buffer, such as the one a JSON parser reads into, without making a String.
+     */
+    public static int pack(char[] text, int offset, int length) {
+        if (length != 3) {
+            return UNKNOWN;
+        }
+        return pack(text[offset], text[offset + 1], text[offset + 2]);
+    }
+
+    public static String unpack(int code) {
+        if (code < 0 || code > MAX_CODE) {
+            return "UNKNOWN";
+        }
+        return new String(new char[]{letter(code >> 10), letter(code >> 5), letter(code)});
+    }
+
+    private static int pack(char first, char second, char third) {
+        if (!isLetter(first) || !isLetter(second) || !isLetter(third)) {
+            return UNKNOWN;
+        }
+        return (first - 'A') << 10 | (second - 'A') << 5 | (third - 'A');
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static char letter(int bits) {
+        return (char) ('A' + (bits & 0x1F));
+    }
+}
@@ -1,55 +1,61 @@
 package com.starling.roundup.util;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.starling.roundup.model.common.CurrencyMapping;
 import com.starling.roundup.model.common.Amount;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
 
-import static com.starling.roundup.util.Constants.GBP;
 import static java.math.BigDecimal.TEN;
 import static java.math.RoundingMode.HALF_UP;
 
 @Slf4j
 public class CurrencyConverter {
-    private static Map<String, CurrencyMapping> currencyRates = new HashMap<>();
+    // Replaced as a whole when the rates are reloaded, readers never lock
+    private static volatile CurrencyRateTable currentRates = CurrencyRateTable.empty();
 
     static {
-        try {
+        try (InputStream rates = CurrencyConverter.class.getResourceAsStream("/currencyRates.json")) {
             log.info("Loading currency mapping from currencyRates.json...");
-            ObjectMapper mapper = new ObjectMapper();
-            currencyRates = mapper.readValue(
-                    CurrencyConverter.class.getResourceAsStream("/currencyRates.json"),
-                    mapper.getTypeFactory().constructMapType(Map.class, String.class, CurrencyMapping.class)
-            );
-            log.info("Successfully loaded currency mappings");
+            currentRates = CurrencyRateTable.parse(rates.readAllBytes());
+            log.info("Successfully loaded currency mappings, version: {}", currentRates.getVersion());
         } catch (Exception e) {
             log.error("Failed to load currency rates.", e);
         }
     }
 
+    /**
+     * @return the rates to use for a round-up that is starting now
+     */
+    public static CurrencyRateTable currentRates() {
+        return currentRates;
+    }
+
+    /**
+     * Makes the given rates the ones used by round-ups started from now on. Round-ups already running keep the
+     * table they started with.
+     */
+    public static void useRates(CurrencyRateTable rates) {
+        CurrencyRateTable previous = currentRates;
+        currentRates = rates;
+        log.info("Currency rates changed from version: {} to version: {}", previous.getVersion(), rates.getVersion());
+    }
+
     public static long convertToGBP(String requestId, Amount amount) {
-        String currency = amount.getCurrency();
-        long minorUnits = amount.getMinorUnits();
-        log.debug("RequestId: {}, converting {} minor units from {} to GBP...", requestId, minorUnits, currency);
-        CurrencyMapping currencyMapping = currencyRates.get(currency);
-        if (currencyMapping == null) {
-            // If no conversion exists, return 0 which will ignore this transaction as currency is not supported
-            log.warn("RequestId: {}, Currency not supported: {}. Skipping round-up.", requestId, currency);
-            return 0L;
-        }
+        return currentRates.convertToGBP(requestId, amount.getCurrencyCode(), amount.getMinorUnits());
+    }
 
+    /**
+     * Reference conversion using BigDecimal. {@link FixedPointRate} must return exactly the same result and
+     * falls back to this when a conversion would overflow a long.
+     */
+    static long convertWithBigDecimal(long minorUnits, CurrencyMapping currencyMapping) {
         // Convert minor units to the real currency amount
         BigDecimal decimalCurrencyAmount = new BigDecimal(minorUnits).divide(TEN.pow(currencyMapping.getDecimalPlaces()), 10, HALF_UP);
         // Convert real currency to GBP
         BigDecimal gbpAmount = decimalCurrencyAmount.multiply(currencyMapping.getConversionRateToGBP());
         // Convert the GBP amount to minor units (pence)
-        long gbpMinorUnitsAmount = gbpAmount.multiply(new BigDecimal(100)).setScale(0, HALF_UP).longValue();
-        log.info("RequestId: {}, Converted {} to {} GBP minor units.", requestId, minorUnits, gbpMinorUnitsAmount);
-
-        return gbpMinorUnitsAmount;
+        return gbpAmount.multiply(new BigDecimal(100)).setScale(0, HALF_UP).longValue();
     }
-}
\ No newline at end of file
+}
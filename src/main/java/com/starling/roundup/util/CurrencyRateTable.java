@@ -0,0 +1,120 @@
+package com.starling.roundup.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.starling.roundup.model.common.CurrencyMapping;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One version of the currency rates, never changed once built. A round-up takes the table that is current when it
+ * starts and uses it for every transaction, so a reload part way through can not mix two sets of rates.
+ * <p>
+ * The version is taken from the content of the rates file, so every instance loading the same file reports the
+ * same version.
+ * <p>
+ * Rates are looked up by {@link CurrencyCodes packed currency code}. The codes with a rate are kept sorted in an
+ * int array, a few hundred bytes that stay in cache, and found with a binary search. Each {@link FixedPointRate} is
+ * held as parallel primitive arrays at the same index, so a conversion reads a few adjacent values rather than
+ * hashing a String and following references.
+ */
+@Slf4j
+public final class CurrencyRateTable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int VERSION_LENGTH = 12;
+
+    @Getter
+    private final String version;
+    // Packed currency codes with a rate, in ascending order. The rate of codes[i] is at index i of the arrays below
+    private final int[] codes;
+    private final boolean[] exact;
+    private final long[] factors;
+    private final long[] divisors;
+    // Only read when a conversion can not be done exactly with longs
+    private final CurrencyMapping[] mappings;
+
+    private CurrencyRateTable(String version, Map<Integer, FixedPointRate> rates) {
+        this.version = version;
+        this.codes = new int[rates.size()];
+        this.exact = new boolean[rates.size()];
+        this.factors = new long[rates.size()];
+        this.divisors = new long[rates.size()];
+        this.mappings = new CurrencyMapping[rates.size()];
+        int index = 0;
+        for (Map.Entry<Integer, FixedPointRate> rate : new TreeMap<>(rates).entrySet()) {
+            codes[index] = rate.getKey();
+            exact[index] = rate.getValue().isExact();
+            factors[index] = rate.getValue().getFactor();
+            divisors[index] = rate.getValue().getDivisor();
+            mappings[index] = rate.getValue().getMapping();
+            index++;
+        }
+    }
+
+    /**
+     * @param json content in the format of currencyRates.json, a CurrencyMapping for each currency code
+     * @throws IOException if the content is not valid, the table in use should then be kept
+     */
+    public static CurrencyRateTable parse(byte[] json) throws IOException {
+        Map<String, CurrencyMapping> mappings = MAPPER.readValue(json,
+                MAPPER.getTypeFactory().constructMapType(Map.class, String.class, CurrencyMapping.class));
+        Map<Integer, FixedPointRate> rates = new HashMap<>();
+        mappings.forEach((currency, mapping) -> {
+            int code = CurrencyCodes.pack(currency);
+            if (code == CurrencyCodes.UNKNOWN) {
+                throw new IllegalArgumentException("Not an ISO 4217 currency code: " + currency);
+            }
+            if (mapping == null || mapping.getConversionRateToGBP() == null) {
+                throw new IllegalArgumentException("No conversion rate for currency: " + currency);
+            }
+            rates.put(code, FixedPointRate.of(mapping));
+        });
+        return new CurrencyRateTable(versionOf(json), rates);
+    }
+
+    public static CurrencyRateTable empty() {
+        return new CurrencyRateTable("none", Map.of());
+    }
+
+    /**
+     * @param currency packed by {@link CurrencyCodes}
+     * @return the amount in GBP minor units, 0 if the currency has no rate so the transaction adds no round-up
+     */
+    public long convertToGBP(String requestId, int currency, long minorUnits) {
+        int index = Arrays.binarySearch(codes, currency);
+        if (index < 0) {
+            log.warn("RequestId: {}, Currency not supported: {}. Skipping round-up.", requestId, CurrencyCodes.unpack(currency));
+            return 0L;
+        }
+
+        long gbpMinorUnitsAmount = exact[index]
+                ? FixedPointRate.toGBPMinorUnits(minorUnits, factors[index], divisors[index], mappings[index])
+                : CurrencyConverter.convertWithBigDecimal(minorUnits, mappings[index]);
+        if (log.isDebugEnabled()) {
+            log.debug("RequestId: {}, Converted {} {} minor units to {} GBP minor units using rates {}.", requestId, minorUnits,
+                    CurrencyCodes.unpack(currency), gbpMinorUnitsAmount, version);
+        }
+        return gbpMinorUnitsAmount;
+    }
+
+    public int size() {
+        return mappings.length;
+    }
+
+    private static String versionOf(byte[] json) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json)).substring(0, VERSION_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
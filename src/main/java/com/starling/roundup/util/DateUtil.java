@@ -1,25 +1,51 @@
 package com.starling.roundup.util;
 
+import org.apache.commons.lang3.tuple.Pair;
+
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DateUtil {
 
-    private static final String STARLING_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+    private static final DateTimeFormatter STARLING_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HHmmss");
 
     public static String toStarlingDateFormat(LocalDate date) {
-        return date.atStartOfDay(ZoneOffset.UTC)
-                .format(DateTimeFormatter.ofPattern(STARLING_DATE_FORMAT));
+        return date.atStartOfDay(ZoneOffset.UTC).format(STARLING_DATE_FORMAT);
     }
 
     public static String toStarlingEndDate(LocalDate weekCommencing) {
         return toStarlingDateFormat(weekCommencing.plusDays(6));
     }
 
+    /**
+     * Splits the window used by {@link #toStarlingDateFormat} and {@link #toStarlingEndDate} for a week into
+     * consecutive slices of {@code sliceHours}. Neighbouring slices share their boundary timestamp, so a
+     * transaction on the boundary can be returned by both.
+     * @return start and end timestamp of each slice in the Starling API format
+     */
+    public static List<Pair<String, String>> toStarlingWeekSlices(LocalDate weekCommencing, int sliceHours) {
+        if (sliceHours <= 0) {
+            throw new IllegalArgumentException("sliceHours must be positive");
+        }
+        ZonedDateTime end = weekCommencing.plusDays(6).atStartOfDay(ZoneOffset.UTC);
+        List<Pair<String, String>> slices = new ArrayList<>();
+        ZonedDateTime sliceStart = weekCommencing.atStartOfDay(ZoneOffset.UTC);
+        while (sliceStart.isBefore(end)) {
+            ZonedDateTime sliceEnd = sliceStart.plusHours(sliceHours);
+            if (sliceEnd.isAfter(end)) sliceEnd = end;
+            slices.add(Pair.of(sliceStart.format(STARLING_DATE_FORMAT), sliceEnd.format(STARLING_DATE_FORMAT)));
+            sliceStart = sliceEnd;
+        }
+        return slices;
+    }
+
     public static String getCurrentDateTime() {
         LocalDateTime localDateTime = LocalDateTime.now();
         return localDateTime.format(DATE_FORMAT) + localDateTime.format(TIME_FORMAT);
@@ -0,0 +1,79 @@
+package com.starling.roundup.util;
+
+import com.starling.roundup.model.response.StreamedFeedItem;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Round-ups for one slice of a week. Neighbouring slices share their boundary timestamp, so only a transaction
+ * made exactly on the start or end of the slice can be returned by two slices. Those are kept per feedItemUid so
+ * the slices can be merged without counting them twice, every other transaction is added to the running total
+ * straight away and memory use does not grow with the size of the slice.
+ */
+@Getter
+public class FeedSliceRoundUps implements Consumer<StreamedFeedItem> {
+
+    private final String requestId;
+    private final CurrencyRateTable rates;
+    private final Instant sliceStart;
+    private final Instant sliceEnd;
+    // Round-ups of transactions on the start or end of the slice
+    private final Map<String, Long> boundaryRoundUps = new HashMap<>();
+    private long total;
+
+    /**
+     * @param sliceStart start of the slice in the Starling API format
+     * @param sliceEnd end of the slice in the Starling API format
+     */
+    public FeedSliceRoundUps(String requestId, CurrencyRateTable rates, String sliceStart, String sliceEnd) {
+        this.requestId = requestId;
+        this.rates = rates;
+        this.sliceStart = OffsetDateTime.parse(sliceStart).toInstant();
+        this.sliceEnd = OffsetDateTime.parse(sliceEnd).toInstant();
+    }
+
+    @Override
+    public void accept(StreamedFeedItem item) {
+        long roundUp = RoundUpAccumulator.roundUpOf(requestId, rates, item.getDirection(), item.getCurrencyCode(), item.getMinorUnits());
+        // Items without a feedItemUid can not be de-duplicated, they are counted as they are
+        if (item.getFeedItemUid() != null && mayBeInNeighbouringSlice(item.getTransactionTime())) {
+            boundaryRoundUps.put(item.getFeedItemUid(), roundUp);
+        } else {
+            total += roundUp;
+        }
+    }
+
+    /**
+     * @return total round-up across all slices, counting each boundary feedItemUid once
+     */
+    public static long mergeTotal(List<FeedSliceRoundUps> slices) {
+        Set<String> seen = new HashSet<>();
+        long total = 0;
+        for (FeedSliceRoundUps slice : slices) {
+            total += slice.total;
+            for (Map.Entry<String, Long> roundUp : slice.boundaryRoundUps.entrySet()) {
+                if (seen.add(roundUp.getKey())) {
+                    total += roundUp.getValue();
+                }
+            }
+        }
+        return total;
+    }
+
+    // Without a transaction time the item can not be placed, so it is treated as if it were on a boundary
+    private boolean mayBeInNeighbouringSlice(String transactionTime) {
+        if (transactionTime == null) {
+            return true;
+        }
+        Instant time = OffsetDateTime.parse(transactionTime).toInstant();
+        return time.equals(sliceStart) || time.equals(sliceEnd);
+    }
+}
@@ -0,0 +1,115 @@
+package com.starling.roundup.util;
+
+import com.starling.roundup.model.common.CurrencyMapping;
+
+import java.math.BigDecimal;
+
+/**
+ * A {@link CurrencyMapping} precomputed into integer form so that a conversion to GBP minor units is a
+ * multiply and a rounding divide on longs.
+ * <p>
+ * The BigDecimal conversion in {@link CurrencyConverter} works out to
+ * {@code HALF_UP(minorUnits * rate * 100 / 10^decimalPlaces)}. Writing the rate as {@code unscaledRate / 10^scale}
+ * that is {@code HALF_UP(minorUnits * unscaledRate / 10^(decimalPlaces + scale - 2))}, so the divisor (or
+ * multiplier when the exponent is negative) can be worked out once per currency. If the 128 bit product does
+ * not fit in a long the conversion falls back to the BigDecimal path, which keeps the result identical.
+ */
+public final class FixedPointRate {
+
+    // Largest power of ten that fits in a long
+    private static final int MAX_POWER_OF_TEN = 18;
+    // The BigDecimal path divides to 10 decimal places before applying the rate
+    private static final int BIG_DECIMAL_DIVISION_SCALE = 10;
+
+    private final CurrencyMapping mapping;
+    private final boolean exact;
+    private final long factor;
+    private final long divisor;
+
+    private FixedPointRate(CurrencyMapping mapping, boolean exact, long factor, long divisor) {
+        this.mapping = mapping;
+        this.exact = exact;
+        this.factor = factor;
+        this.divisor = divisor;
+    }
+
+    public static FixedPointRate of(CurrencyMapping mapping) {
+        BigDecimal rate = mapping.getConversionRateToGBP().stripTrailingZeros();
+        int decimalPlaces = mapping.getDecimalPlaces();
+        if (decimalPlaces < 0 || decimalPlaces > BIG_DECIMAL_DIVISION_SCALE || rate.unscaledValue().bitLength() > 63) {
+            // The BigDecimal path rounds the intermediate value in these cases, so only it can match itself
+            return new FixedPointRate(mapping, false, 0, 1);
+        }
+
+        long unscaledRate = rate.unscaledValue().longValue();
+        int exponent = decimalPlaces + rate.scale() - 2;
+        if (exponent > MAX_POWER_OF_TEN) {
+            return new FixedPointRate(mapping, false, 0, 1);
+        }
+        if (exponent > 0) {
+            return new FixedPointRate(mapping, true, unscaledRate, powerOfTen(exponent));
+        }
+        if (-exponent > MAX_POWER_OF_TEN) {
+            return new FixedPointRate(mapping, false, 0, 1);
+        }
+        long multiplier = powerOfTen(-exponent);
+        long high = Math.multiplyHigh(unscaledRate, multiplier);
+        long factor = unscaledRate * multiplier;
+        boolean fits = high == (factor >> 63);
+        return new FixedPointRate(mapping, fits, fits ? factor : 0, 1);
+    }
+
+    public long toGBPMinorUnits(long minorUnits) {
+        if (!exact) {
+            return CurrencyConverter.convertWithBigDecimal(minorUnits, mapping);
+        }
+        return toGBPMinorUnits(minorUnits, factor, divisor, mapping);
+    }
+
+    /**
+     * The exact conversion on its own, so that a rate can be held as primitives in {@link CurrencyRateTable}.
+     * @param mapping only used when the product overflows a long
+     */
+    static long toGBPMinorUnits(long minorUnits, long factor, long divisor, CurrencyMapping mapping) {
+        long high = Math.multiplyHigh(minorUnits, factor);
+        long product = minorUnits * factor;
+        if (high != (product >> 63)) {
+            // Product needs more than 64 bits, very large amounts take the slow path
+            return CurrencyConverter.convertWithBigDecimal(minorUnits, mapping);
+        }
+        if (divisor == 1) {
+            return product;
+        }
+        long quotient = product / divisor;
+        long remainder = Math.abs(product % divisor);
+        // HALF_UP rounds ties away from zero. remainder < divisor <= 10^18 so doubling can not overflow
+        if (remainder * 2 >= divisor) {
+            quotient += Long.signum(product);
+        }
+        return quotient;
+    }
+
+    public CurrencyMapping getMapping() {
+        return mapping;
+    }
+
+    boolean isExact() {
+        return exact;
+    }
+
+    long getFactor() {
+        return factor;
+    }
+
+    long getDivisor() {
+        return divisor;
+    }
+
+    private static long powerOfTen(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
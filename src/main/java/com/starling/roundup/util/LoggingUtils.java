@@ -2,6 +2,9 @@ package com.starling.roundup.util;
 
 public class LoggingUtils {
 
+    // MDC key of the round-up request being processed, written as a field of each JSON log line in the prod profile
+    public static final String REQUEST_ID = "requestId";
+
     // Only show last 4 digits of accountId
     public static String maskSensitiveData(String accountId) {
         if (accountId == null || accountId.length() < 4) {
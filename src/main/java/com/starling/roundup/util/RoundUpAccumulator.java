@@ -0,0 +1,57 @@
+package com.starling.roundup.util;
+
+import com.starling.roundup.model.response.StreamedFeedItem;
+import com.starling.roundup.model.response.TransactionDirection;
+import lombok.Getter;
+
+import java.util.function.Consumer;
+
+import static com.starling.roundup.model.response.TransactionDirection.OUT;
+
+/**
+ * Running total of the round-up for a set of transactions. Only transactions going out are rounded up, foreign
+ * amounts are converted to GBP first and whole pound amounts add nothing.
+ */
+@Getter
+public class RoundUpAccumulator implements Consumer<StreamedFeedItem> {
+
+    private final String requestId;
+    private final CurrencyRateTable rates;
+    private long total;
+    private long itemCount;
+
+    public RoundUpAccumulator(String requestId) {
+        this(requestId, CurrencyConverter.currentRates());
+    }
+
+    public RoundUpAccumulator(String requestId, CurrencyRateTable rates) {
+        this.requestId = requestId;
+        this.rates = rates;
+    }
+
+    @Override
+    public void accept(StreamedFeedItem item) {
+        add(item.getDirection(), item.getCurrencyCode(), item.getMinorUnits());
+    }
+
+    /**
+     * @param currency packed by {@link CurrencyCodes}
+     */
+    public void add(TransactionDirection direction, int currency, long minorUnits) {
+        itemCount++;
+        total += roundUpOf(requestId, rates, direction, currency, minorUnits);
+    }
+
+    /**
+     * @return the round-up in GBP minor units for a single transaction
+     */
+    public static long roundUpOf(String requestId, CurrencyRateTable rates, TransactionDirection direction, int currency, long minorUnits) {
+        if (!OUT.equals(direction)) {
+            return 0;
+        }
+        // If currency is GBP, no need to convert minor units
+        long amount = currency == CurrencyCodes.GBP ? minorUnits : rates.convertToGBP(requestId, currency, minorUnits);
+        // If the amount is a whole pound, you can not round up
+        return amount % 100 == 0 ? 0 : 100 - (amount % 100);
+    }
+}
@@ -1,5 +1,10 @@
 package com.starling.roundup.util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 /**
  * Utility class to return the token without the Bearer prefix.
  */
@@ -13,4 +18,17 @@ public class TokenUtils {
         }
         return bearerToken;
     }
+
+    /**
+     * SHA-256 of the token, used where a token needs to be a key without keeping the token itself around.
+     */
+    public static String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
 }
\ No newline at end of file
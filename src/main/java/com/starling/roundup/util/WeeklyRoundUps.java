@@ -0,0 +1,61 @@
+package com.starling.roundup.util;
+
+import com.starling.roundup.model.response.StreamedFeedItem;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static java.time.temporal.TemporalAdjusters.previousOrSame;
+
+/**
+ * Round-ups for a feed covering several weeks, bucketed by the Monday (UTC) of each transaction. Only the
+ * weeks passed in are kept, transactions in any other week are ignored.
+ * <p>
+ * A single week is fetched up to {@link DateUtil#toStarlingEndDate}, the start of the Sunday, so transactions
+ * later on the Sunday are left out here too. This keeps the amount for a week the same whichever way it was
+ * requested.
+ */
+public class WeeklyRoundUps implements Consumer<StreamedFeedItem> {
+
+    private final Map<LocalDate, RoundUpAccumulator> weeks = new LinkedHashMap<>();
+
+    public WeeklyRoundUps(String requestId, CurrencyRateTable rates, Collection<LocalDate> weeksCommencing) {
+        weeksCommencing.forEach(week -> weeks.put(week, new RoundUpAccumulator(requestId, rates)));
+    }
+
+    @Override
+    public void accept(StreamedFeedItem item) {
+        if (item.getTransactionTime() == null) {
+            return;
+        }
+        ZonedDateTime transactionTime = OffsetDateTime.parse(item.getTransactionTime()).atZoneSameInstant(ZoneOffset.UTC);
+        LocalDate transactionDate = transactionTime.toLocalDate();
+        if (transactionDate.getDayOfWeek() == DayOfWeek.SUNDAY && !transactionTime.equals(transactionDate.atStartOfDay(ZoneOffset.UTC))) {
+            return;
+        }
+        RoundUpAccumulator week = weeks.get(transactionDate.with(previousOrSame(DayOfWeek.MONDAY)));
+        if (week != null) {
+            week.accept(item);
+        }
+    }
+
+    /**
+     * @return round-up total in GBP minor units for each week
+     */
+    public Map<LocalDate, Long> getTotals() {
+        Map<LocalDate, Long> totals = new LinkedHashMap<>();
+        weeks.forEach((week, accumulator) -> totals.put(week, accumulator.getTotal()));
+        return totals;
+    }
+
+    public long getItemCount() {
+        return weeks.values().stream().mapToLong(RoundUpAccumulator::getItemCount).sum();
+    }
+}
@@ -0,0 +1,31 @@
+package com.starling.roundup;
+
+import com.starling.roundup.lock.LocalLockProvider;
+import com.starling.roundup.lock.LockProvider;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@ActiveProfiles("single-node")
+class SingleNodeApplicationTests {
+
+	@Autowired
+	private LockProvider lockProvider;
+
+	@Autowired
+	private ObjectProvider<RedissonClient> redissonClient;
+
+	@Test
+	void contextLoadsWithoutRedis() {
+		assertInstanceOf(LocalLockProvider.class, lockProvider);
+		assertNull(redissonClient.getIfAvailable());
+	}
+
+}
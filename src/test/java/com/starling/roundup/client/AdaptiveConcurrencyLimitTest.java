@@ -0,0 +1,51 @@
+package com.starling.roundup.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    void rejectsOnceLimitIsInFlight() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 0.5);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        limit.release(false);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void growsWhenUsedAndBacksOffWhenOverloaded() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 2, 5, 0.5);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        limit.release(false);
+        limit.release(false);
+        assertEquals(5, limit.getLimit(), "capped at the maximum");
+
+        limit.release(true);
+        assertEquals(2, limit.getLimit());
+        limit.release(true);
+        assertEquals(2, limit.getLimit(), "never drops below the minimum");
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, 0.9);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(false);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+}
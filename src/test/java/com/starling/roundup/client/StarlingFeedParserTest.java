@@ -0,0 +1,164 @@
+package com.starling.roundup.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.starling.roundup.model.response.StarlingFeedItem;
+import com.starling.roundup.model.response.StarlingFeedResponse;
+import com.starling.roundup.model.response.StreamedFeedItem;
+import com.starling.roundup.model.response.TransactionDirection;
+import com.starling.roundup.util.RoundUpAccumulator;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StarlingFeedParserTest {
+
+    private static final String FEED = """
+            {
+              "feedItems": [
+                {
+                  "feedItemUid": "11221122-1122-1122-1122-112211221122",
+                  "amount": { "currency": "GBP", "minorUnits": 435 },
+                  "sourceAmount": { "currency": "GBP", "minorUnits": 435 },
+                  "direction": "OUT",
+                  "transactionTime": "2025-03-03T10:15:30.000Z",
+                  "counterPartyName": "Coffee",
+                  "roundUp": { "goalCategoryUid": "x", "amount": { "currency": "GBP", "minorUnits": 65 } },
+                  "tags": ["a", {"b": [1, 2]}]
+                },
+                {
+                  "direction": "IN",
+                  "amount": { "minorUnits": 1000, "currency": "GBP" },
+                  "feedItemUid": "22221122-1122-1122-1122-112211221122"
+                },
+                {
+                  "feedItemUid": "33331122-1122-1122-1122-112211221122",
+                  "amount": { "currency": "USD", "minorUnits": 1234 },
+                  "direction": "OUT"
+                },
+                {
+                  "feedItemUid": "44441122-1122-1122-1122-112211221122",
+                  "amount": { "currency": "GBP", "minorUnits": 200 },
+                  "direction": "OUT"
+                },
+                {
+                  "feedItemUid": "55551122-1122-1122-1122-112211221122",
+                  "amount": { "currency": "JPY", "minorUnits": 500 },
+                  "direction": "OUT"
+                }
+              ],
+              "paging": { "next": null }
+            }
+            """;
+
+    @Test
+    void readsOnlyTheFieldsUsedForRoundUp() throws IOException {
+        List<String> items = new ArrayList<>();
+        StarlingFeedParser.parse(stream(FEED), item -> items.add(item.getDirection() + ":" + item.getCurrency() + ":" + item.getMinorUnits()));
+
+        assertEquals(List.of("OUT:GBP:435", "IN:GBP:1000", "OUT:USD:1234", "OUT:GBP:200", "OUT:JPY:500"), items);
+    }
+
+    @Test
+    void matchesRoundUpOfDeserialisedFeed() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        StarlingFeedResponse response = objectMapper.readValue(FEED, StarlingFeedResponse.class);
+        RoundUpAccumulator expected = new RoundUpAccumulator("test");
+        for (StarlingFeedItem item : response.getFeedItems()) {
+            expected.add(item.getDirection(), item.getAmount().getCurrencyCode(), item.getAmount().getMinorUnits());
+        }
+
+        RoundUpAccumulator streamed = new RoundUpAccumulator("test");
+        StarlingFeedParser.parse(stream(FEED), streamed);
+
+        assertEquals(expected.getTotal(), streamed.getTotal());
+        assertEquals(5, streamed.getItemCount());
+    }
+
+    @Test
+    void onlyReadsItemDetailsWhenAskedFor() throws IOException {
+        List<String> skipped = new ArrayList<>();
+        StarlingFeedParser.parse(stream(FEED), item -> skipped.add(item.getFeedItemUid() + "@" + item.getTransactionTime()));
+        List<String> read = new ArrayList<>();
+        StarlingFeedParser.parse(stream(FEED), true, item -> read.add(item.getFeedItemUid() + "@" + item.getTransactionTime()));
+
+        assertEquals(List.of("null@null", "null@null", "null@null", "null@null", "null@null"), skipped);
+        assertEquals("11221122-1122-1122-1122-112211221122@2025-03-03T10:15:30.000Z", read.get(0));
+        assertEquals("22221122-1122-1122-1122-112211221122@null", read.get(1));
+    }
+
+    @Test
+    void nonBlockingParserMatchesBlockingParserWhateverTheChunkSize() throws IOException {
+        RoundUpAccumulator blocking = new RoundUpAccumulator("test");
+        StarlingFeedParser.parse(stream(FEED), blocking);
+
+        for (int chunkSize : new int[] {1, 7, 4096}) {
+            RoundUpAccumulator nonBlocking = new RoundUpAccumulator("test");
+            StarlingFeedParser.NonBlockingFeedParser parser = StarlingFeedParser.nonBlocking(false, nonBlocking);
+            byte[] bytes = FEED.getBytes(UTF_8);
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                parser.feed(ByteBuffer.wrap(bytes, offset, Math.min(chunkSize, bytes.length - offset)));
+            }
+            parser.endOfInput();
+
+            assertEquals(blocking.getTotal(), nonBlocking.getTotal(), "chunk size " + chunkSize);
+            assertEquals(blocking.getItemCount(), nonBlocking.getItemCount(), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void nonBlockingParserRejectsFeedThatEndsPartWayThrough() throws IOException {
+        StarlingFeedParser.NonBlockingFeedParser parser = StarlingFeedParser.nonBlocking(false, item -> { });
+        parser.feed(ByteBuffer.wrap("{\"feedItems\":[]".getBytes(UTF_8)));
+
+        assertThrows(IOException.class, parser::endOfInput);
+    }
+
+    @Test
+    void treatsUnknownDirectionAsNotRoundable() throws IOException {
+        List<TransactionDirection> directions = new ArrayList<>();
+        StarlingFeedParser.parse(stream("{\"feedItems\":[{\"direction\":\"SIDEWAYS\",\"amount\":{\"currency\":\"GBP\",\"minorUnits\":1}}]}"),
+                (StreamedFeedItem item) -> directions.add(item.getDirection()));
+
+        assertEquals(1, directions.size());
+        assertNull(directions.get(0));
+    }
+
+    @Test
+    void handlesEmptyFeed() throws IOException {
+        RoundUpAccumulator accumulator = new RoundUpAccumulator("test");
+        StarlingFeedParser.parse(stream("{\"feedItems\":[]}"), accumulator);
+
+        assertEquals(0, accumulator.getTotal());
+        assertEquals(0, accumulator.getItemCount());
+    }
+
+    @Test
+    void stopsReadingWhenInterrupted() {
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedIOException.class, () -> StarlingFeedParser.parse(stream(FEED), new RoundUpAccumulator("test")));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void rejectsPayloadThatIsNotAnObject() {
+        assertThrows(IOException.class, () -> StarlingFeedParser.parse(stream("[]"), item -> { }));
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,101 @@
+package com.starling.roundup.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StarlingHedgerTest {
+
+    private StarlingHedger hedger;
+
+    @AfterEach
+    void tearDown() {
+        hedger.stop();
+    }
+
+    @Test
+    void usesHedgeAndCancelsSlowFirstAttempt() {
+        hedger = hedger(100);
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicBoolean firstCancelled = new AtomicBoolean();
+        CountDownLatch released = new CountDownLatch(1);
+
+        String result = hedger.call(StarlingEndpoint.BALANCE, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                StarlingHedger.onRequestCreated(() -> {
+                    firstCancelled.set(true);
+                    released.countDown();
+                    return true;
+                });
+                await(released);
+                return "slow";
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+        assertEquals(2, attempts.get());
+        assertTrue(firstCancelled.get());
+    }
+
+    @Test
+    void waitsForFirstAttemptWhenBudgetIsSpent() {
+        hedger = hedger(0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = hedger.call(StarlingEndpoint.BALANCE, () -> {
+            attempts.incrementAndGet();
+            sleep(100);
+            return "only";
+        });
+
+        assertEquals("only", result);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void surfacesFailureOfFirstAttemptWithoutHedging() {
+        hedger = hedger(100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> hedger.call(StarlingEndpoint.BALANCE, () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals("boom", e.getMessage());
+        assertEquals(1, attempts.get());
+    }
+
+    private static StarlingHedger hedger(double maxPercent) {
+        return new StarlingHedger(true, 95, Duration.ofMillis(20), Duration.ofMillis(20), maxPercent,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
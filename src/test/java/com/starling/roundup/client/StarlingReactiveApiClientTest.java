@@ -0,0 +1,158 @@
+package com.starling.roundup.client;
+
+import com.starling.roundup.exception.StarlingApiException;
+import com.starling.roundup.util.RoundUpAccumulator;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StarlingReactiveApiClientTest {
+
+    private static final String TOKEN = "token";
+    private static final String ACCOUNT_UID = "account-uid";
+    private static final String GOAL_UID = "goal-uid";
+    private static final LocalDate WEEK = LocalDate.of(2024, 1, 1);
+    private static final String FEED = """
+            {"feedItems":[
+              {"feedItemUid":"1","amount":{"currency":"GBP","minorUnits":435},"direction":"OUT","tags":[{"a":[1,2]}]},
+              {"feedItemUid":"2","amount":{"currency":"GBP","minorUnits":1000},"direction":"IN"},
+              {"feedItemUid":"3","amount":{"currency":"GBP","minorUnits":210},"direction":"OUT"}
+            ],"paging":{"next":null}}
+            """;
+
+    private final List<ClientRequest> requests = new ArrayList<>();
+    private final Queue<ClientResponse> responses = new ConcurrentLinkedQueue<>();
+    private final StarlingReactiveApiClient client = new StarlingReactiveApiClient(
+            WebClient.builder()
+                    .exchangeFunction(request -> {
+                        requests.add(request);
+                        return Mono.just(responses.remove());
+                    })
+                    .build(),
+            new StarlingTimeouts(),
+            RetryRegistry.of(RetryConfig.custom()
+                    .maxAttempts(3)
+                    .waitDuration(Duration.ofMillis(10))
+                    .retryExceptions(WebClientResponseException.ServiceUnavailable.class)
+                    .build()));
+
+    @Test
+    void streamsTheFeedAsItArrives() {
+        responses.add(json(HttpStatus.OK, chunks(FEED, 7)));
+
+        RoundUpAccumulator accumulator = client.streamTransactions(TOKEN, ACCOUNT_UID, "****", WEEK, () -> new RoundUpAccumulator("test")).block();
+
+        assertEquals(65 + 90, accumulator.getTotal());
+        assertEquals(3, accumulator.getItemCount());
+        assertEquals(HttpMethod.GET, requests.get(0).method());
+        assertEquals("Bearer " + TOKEN, requests.get(0).headers().getFirst("Authorization"));
+    }
+
+    @Test
+    void retriesTheFeedWithANewCollector() {
+        responses.add(json(HttpStatus.SERVICE_UNAVAILABLE, chunks("{}", 2)));
+        responses.add(json(HttpStatus.OK, chunks(FEED, 16)));
+
+        RoundUpAccumulator accumulator = client.streamTransactions(TOKEN, ACCOUNT_UID, "****", WEEK, () -> new RoundUpAccumulator("test")).block();
+
+        assertEquals(3, accumulator.getItemCount());
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void failsOnAFeedThatEndsPartWayThrough() {
+        responses.add(json(HttpStatus.OK, chunks(FEED.substring(0, FEED.indexOf("{\"feedItemUid\":\"2\"")), 7)));
+
+        // A cut off body is not a smaller feed, the round-up must not go ahead on part of the week
+        assertThrows(StarlingApiException.class,
+                () -> client.streamTransactions(TOKEN, ACCOUNT_UID, "****", WEEK, () -> new RoundUpAccumulator("test")).block());
+    }
+
+    @Test
+    void readsTheBalance() {
+        responses.add(json(HttpStatus.OK, chunks("{\"effectiveBalance\":{\"currency\":\"GBP\",\"minorUnits\":1234}}", 64)));
+
+        assertEquals(1234, client.getAccountBalance(TOKEN, ACCOUNT_UID, "****").block().getEffectiveBalance().getMinorUnits());
+    }
+
+    @Test
+    void retriedTransferReusesTheTransferUid() {
+        responses.add(json(HttpStatus.SERVICE_UNAVAILABLE, chunks("{}", 2)));
+        responses.add(json(HttpStatus.OK, chunks("{\"success\":true}", 64)));
+
+        client.transferToSavingsGoal(TOKEN, ACCOUNT_UID, "****", GOAL_UID, 155).block();
+
+        assertEquals(2, requests.size());
+        assertEquals(HttpMethod.PUT, requests.get(0).method());
+        assertEquals(requests.get(0).url(), requests.get(1).url());
+        assertTrue(requests.get(0).url().getPath().startsWith("/api/v2/account/" + ACCOUNT_UID + "/savings-goals/" + GOAL_UID + "/add-money/"));
+    }
+
+    @Test
+    void mapsAClientErrorWithoutRetrying() {
+        responses.add(json(HttpStatus.FORBIDDEN, chunks("{\"error\":\"forbidden\"}", 64)));
+
+        StarlingApiException e = assertThrows(StarlingApiException.class,
+                () -> client.transferToSavingsGoal(TOKEN, ACCOUNT_UID, "****", GOAL_UID, 155).block());
+
+        assertEquals(HttpStatus.FORBIDDEN, e.getStatus());
+        assertEquals("{\"error\":\"forbidden\"}", e.getResponseBody());
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void mapsAServerErrorOnceRetriesAreSpent() {
+        for (int i = 0; i < 3; i++) {
+            responses.add(json(HttpStatus.SERVICE_UNAVAILABLE, chunks("down", 64)));
+        }
+
+        StarlingApiException e = assertThrows(StarlingApiException.class, () -> client.getAccountBalance(TOKEN, ACCOUNT_UID, "****").block());
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+        assertEquals(3, requests.size());
+        assertNull(responses.peek());
+    }
+
+    private static ClientResponse json(HttpStatus status, Flux<DataBuffer> body) {
+        return ClientResponse.create(status)
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+
+    // Splits the body the way the network might, including in the middle of tokens
+    private static Flux<DataBuffer> chunks(String body, int size) {
+        byte[] bytes = body.getBytes(UTF_8);
+        List<DataBuffer> chunks = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += size) {
+            int length = Math.min(size, bytes.length - offset);
+            chunks.add(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(bytes, offset, offset + length)));
+        }
+        return Flux.fromIterable(chunks);
+    }
+}
@@ -0,0 +1,70 @@
+package com.starling.roundup.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedVirtualThreadExecutorTest {
+
+    private static final int PERMITS = 3;
+    private static final int TASKS = 20;
+
+    @Test
+    void neverRunsMoreTasksThanPermits() throws InterruptedException {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-", PERMITS);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        AsyncConfig.registerGauges(registry, executor);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        CountDownLatch permitsTaken = new CountDownLatch(PERMITS);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(TASKS);
+
+        for (int i = 0; i < TASKS; i++) {
+            executor.execute(() -> {
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                permitsTaken.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                    finished.countDown();
+                }
+            });
+        }
+
+        assertTrue(permitsTaken.await(5, SECONDS));
+        awaitGauge(registry, "roundup.executor.virtual.tasks.waiting", TASKS - PERMITS);
+        assertEquals(PERMITS, gauge(registry, "roundup.executor.virtual.tasks.running"));
+        assertEquals(TASKS, gauge(registry, "roundup.executor.virtual.threads.active"));
+
+        release.countDown();
+        assertTrue(finished.await(5, SECONDS));
+        assertEquals(PERMITS, mostRunning.get());
+        awaitGauge(registry, "roundup.executor.virtual.threads.active", 0);
+        assertEquals(0, gauge(registry, "roundup.executor.virtual.tasks.running"));
+        assertEquals(0, gauge(registry, "roundup.executor.virtual.tasks.waiting"));
+    }
+
+    // The gauges are updated by the task threads after the tasks themselves have signalled
+    private static void awaitGauge(MeterRegistry registry, String name, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(5);
+        while (gauge(registry, name) != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, gauge(registry, name), name);
+    }
+
+    private static int gauge(MeterRegistry registry, String name) {
+        return (int) registry.get(name).gauge().value();
+    }
+}
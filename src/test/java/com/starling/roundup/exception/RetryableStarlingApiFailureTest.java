@@ -0,0 +1,41 @@
+package com.starling.roundup.exception;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryableStarlingApiFailureTest {
+
+    private final RetryableStarlingApiFailure retryable = new RetryableStarlingApiFailure();
+
+    @Test
+    void retriesWrappedIoErrorsAndServerErrors() {
+        assertTrue(retryable.test(new StarlingApiException("timed out", new ResourceAccessException("timed out", new IOException()))));
+        assertTrue(retryable.test(new StarlingApiException(HttpStatus.SERVICE_UNAVAILABLE, "{}")));
+    }
+
+    @Test
+    void doesNotRetryClientErrorsOrRejectedCalls() {
+        assertFalse(retryable.test(new StarlingApiException(HttpStatus.BAD_REQUEST, "{}")));
+        assertFalse(retryable.test(new StarlingApiException("Starling API returned null for balance check.")));
+        assertFalse(retryable.test(new StarlingApiLimitExceededException("rate limit reached")));
+        assertFalse(retryable.test(CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("test"))));
+    }
+
+    @Test
+    void doesNotRetryOnAnInterruptedThread() {
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(retryable.test(new StarlingApiException("timed out", new ResourceAccessException("timed out", new IOException()))));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
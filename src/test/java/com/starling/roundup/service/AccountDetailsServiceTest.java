@@ -0,0 +1,100 @@
+package com.starling.roundup.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.starling.roundup.client.StarlingAccountApiClient;
+import com.starling.roundup.client.StarlingGoalsApiClient;
+import com.starling.roundup.exception.AccountOwnershipException;
+import com.starling.roundup.model.response.AccountDetailsResponse;
+import com.starling.roundup.model.response.SavingsGoal;
+import com.starling.roundup.model.response.StarlingAccount;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccountDetailsServiceTest {
+
+    private static final String TOKEN = "token";
+    private static final String ACCOUNT_UID = "account-uid";
+
+    private final StarlingAccountApiClient accountsApiClient = mock(StarlingAccountApiClient.class);
+    private final StarlingGoalsApiClient goalsApiClient = mock(StarlingGoalsApiClient.class);
+    private final Cache<String, List<SavingsGoal>> activeGoalsCache = Caffeine.newBuilder().build();
+    private AccountDetailsService service;
+
+    @BeforeEach
+    void setUp() {
+        StarlingAccount account = new StarlingAccount();
+        account.setAccountUid(ACCOUNT_UID);
+        when(accountsApiClient.getPrimaryAccount(TOKEN)).thenReturn(account);
+        service = new AccountDetailsService(accountsApiClient, goalsApiClient, Caffeine.newBuilder().build(), activeGoalsCache);
+    }
+
+    @Test
+    void repeatedCallsAreServedFromTheCache() {
+        when(goalsApiClient.getActiveGoals(TOKEN, ACCOUNT_UID)).thenReturn(List.of(new SavingsGoal("goal-uid", "Round-ups")));
+
+        service.getAccountDetails(TOKEN);
+        AccountDetailsResponse response = service.getAccountDetails(TOKEN);
+
+        assertEquals("goal-uid", response.getSavingsGoalList().get(0).getSavingsGoalUid());
+        verify(accountsApiClient, times(1)).getPrimaryAccount(TOKEN);
+        verify(goalsApiClient, times(1)).getActiveGoals(TOKEN, ACCOUNT_UID);
+    }
+
+    @Test
+    void creatingAGoalIsNotCachedAsAnEmptyList() {
+        when(goalsApiClient.getActiveGoals(TOKEN, ACCOUNT_UID)).thenReturn(emptyList());
+        when(goalsApiClient.createNewGoal(TOKEN, ACCOUNT_UID)).thenReturn(List.of(new SavingsGoal("new-goal-uid", "Round-ups")));
+
+        AccountDetailsResponse response = service.getAccountDetails(TOKEN);
+
+        assertNotNull(response.getMessage());
+        assertNull(activeGoalsCache.getIfPresent(ACCOUNT_UID));
+        service.getAccountDetails(TOKEN);
+        verify(goalsApiClient, times(2)).getActiveGoals(TOKEN, ACCOUNT_UID);
+    }
+
+    @Test
+    void ownerOfTheAccountAndGoalIsVerified() {
+        when(goalsApiClient.getActiveGoals(TOKEN, ACCOUNT_UID)).thenReturn(List.of(new SavingsGoal("goal-uid", "Round-ups")));
+
+        service.verifyOwnership(TOKEN, ACCOUNT_UID, "goal-uid");
+    }
+
+    @Test
+    void accountOfSomeoneElseIsRejected() {
+        assertThrows(AccountOwnershipException.class, () -> service.verifyOwnership(TOKEN, "someone-elses-account-uid", "goal-uid"));
+
+        // Their goals are never looked up, or cached, with this token
+        verify(goalsApiClient, never()).getActiveGoals(anyString(), anyString());
+    }
+
+    @Test
+    void goalOfAnotherAccountIsRejected() {
+        when(goalsApiClient.getActiveGoals(TOKEN, ACCOUNT_UID)).thenReturn(List.of(new SavingsGoal("goal-uid", "Round-ups")));
+
+        assertThrows(AccountOwnershipException.class, () -> service.verifyOwnership(TOKEN, ACCOUNT_UID, "someone-elses-goal-uid"));
+    }
+
+    @Test
+    void accountWithoutActiveGoalsIsRejected() {
+        when(goalsApiClient.getActiveGoals(TOKEN, ACCOUNT_UID)).thenReturn(emptyList());
+
+        assertThrows(AccountOwnershipException.class, () -> service.verifyOwnership(TOKEN, ACCOUNT_UID, "goal-uid"));
+        verify(goalsApiClient, never()).createNewGoal(anyString(), anyString());
+    }
+}
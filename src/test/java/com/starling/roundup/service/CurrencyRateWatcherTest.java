@@ -0,0 +1,119 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.util.CurrencyCodes;
+import com.starling.roundup.util.CurrencyConverter;
+import com.starling.roundup.util.CurrencyRateTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CurrencyRateWatcherTest {
+
+    private static final String RATES = """
+            { "USD": { "conversionRateToGBP": 0.75, "decimalPlaces": 2 } }""";
+    private static final String NEW_RATES = """
+            { "USD": { "conversionRateToGBP": 0.8, "decimalPlaces": 2 } }""";
+
+    @TempDir
+    private Path directory;
+
+    private CurrencyRateTable bundledRates;
+    private CurrencyRateWatcher watcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        bundledRates = CurrencyConverter.currentRates();
+        Files.writeString(directory.resolve("rates.json"), RATES);
+        watcher = new CurrencyRateWatcher(directory.resolve("rates.json"), Duration.ofMillis(50));
+        watcher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        watcher.stop();
+        // The rates are shared by every test in the JVM
+        CurrencyConverter.useRates(bundledRates);
+    }
+
+    @Test
+    void loadsTheFileOnStartup() throws IOException {
+        assertEquals(version(RATES), CurrencyConverter.currentRates().getVersion());
+    }
+
+    @Test
+    void swapsInAChangedFile() throws Exception {
+        // Written next to it and renamed over it, as a deployment would
+        Path written = Files.writeString(directory.resolve("rates.json.tmp"), NEW_RATES);
+        Files.move(written, directory.resolve("rates.json"), ATOMIC_MOVE);
+
+        String expected = version(NEW_RATES);
+        await(() -> CurrencyConverter.currentRates().getVersion().equals(expected));
+        assertEquals(800, CurrencyConverter.currentRates().convertToGBP("test", CurrencyCodes.pack("USD"), 1_000));
+    }
+
+    @Test
+    void keepsTheRatesInUseWhenTheFileIsHalfWritten() throws IOException {
+        CurrencyRateTable inUse = CurrencyConverter.currentRates();
+        Files.writeString(directory.resolve("rates.json"), NEW_RATES.substring(0, NEW_RATES.length() / 2));
+
+        watcher.reload();
+
+        assertSame(inUse, CurrencyConverter.currentRates());
+    }
+
+    @Test
+    void keepsTheRatesInUseWhenTheFileIsInvalid() throws IOException {
+        CurrencyRateTable inUse = CurrencyConverter.currentRates();
+        Files.writeString(directory.resolve("rates.json"), "{ \"USD\": { \"decimalPlaces\": 2 } }");
+
+        watcher.reload();
+
+        assertSame(inUse, CurrencyConverter.currentRates());
+    }
+
+    @Test
+    void doesNotReloadIdenticalContent() throws IOException {
+        CurrencyRateTable inUse = CurrencyConverter.currentRates();
+        Files.writeString(directory.resolve("rates.json"), RATES);
+
+        watcher.reload();
+
+        assertSame(inUse, CurrencyConverter.currentRates());
+    }
+
+    @Test
+    void stopsWatchingWhenTheDirectoryGoesAway() throws Exception {
+        CurrencyRateTable inUse = CurrencyConverter.currentRates();
+        Files.delete(directory.resolve("rates.json"));
+        Files.delete(directory);
+
+        await(() -> !watcher.isWatching());
+        assertSame(inUse, CurrencyConverter.currentRates());
+    }
+
+    private static String version(String rates) throws IOException {
+        return CurrencyRateTable.parse(rates.getBytes(UTF_8)).getVersion();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
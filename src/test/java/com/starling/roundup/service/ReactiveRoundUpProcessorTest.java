@@ -0,0 +1,106 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.client.StarlingReactiveApiClient;
+import com.starling.roundup.client.StarlingTimeouts;
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.repository.RoundUpRequestRepository;
+import com.starling.roundup.util.CurrencyConverter;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.starling.roundup.util.LoggingUtils.REQUEST_ID;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class ReactiveRoundUpProcessorTest {
+
+    private static final String ACCOUNT_UID = "account-uid";
+    private static final LocalDate WEEK = LocalDate.of(2024, 1, 1);
+    private static final String FEED = """
+            {"feedItems":[
+              {"amount":{"currency":"GBP","minorUnits":435},"direction":"OUT"},
+              {"amount":{"currency":"GBP","minorUnits":210},"direction":"OUT"}
+            ]}
+            """;
+
+    private final List<HttpMethod> methods = new CopyOnWriteArrayList<>();
+    private final RoundUpRequestRepository roundUpRequestRepository = mock(RoundUpRequestRepository.class);
+
+    @Test
+    void transfersTheRoundUpWithTheRequestIdInTheMdc() {
+        AtomicReference<String> requestIdWhenRecorded = new AtomicReference<>();
+        doAnswer(invocation -> {
+            requestIdWhenRecorded.set(MDC.get(REQUEST_ID));
+            return 1;
+        }).when(roundUpRequestRepository).updateStatusAndAmountByAccountAndWeek(eq(ACCOUNT_UID), eq(WEEK), any(), anyLong(), any());
+
+        processor(1000).processRoundUpAsync("token", "request-1", ACCOUNT_UID, "****", "goal-uid", WEEK);
+
+        verify(roundUpRequestRepository, timeout(5000))
+                .updateStatusAndAmountByAccountAndWeek(ACCOUNT_UID, WEEK, Status.COMPLETED, 65 + 90, CurrencyConverter.currentRates().getVersion());
+        assertEquals("request-1", requestIdWhenRecorded.get());
+        assertEquals(List.of(HttpMethod.GET, HttpMethod.GET, HttpMethod.PUT), methods);
+    }
+
+    @Test
+    void failsWithoutTransferringWhenFundsAreShort() {
+        processor(100).processRoundUpAsync("token", "request-1", ACCOUNT_UID, "****", "goal-uid", WEEK);
+
+        verify(roundUpRequestRepository, timeout(5000)).updateStatusAndAmountByAccountAndWeek(ACCOUNT_UID, WEEK, Status.FAILED, 0, null);
+        assertEquals(List.of(HttpMethod.GET, HttpMethod.GET), methods);
+    }
+
+    private ReactiveRoundUpProcessor processor(long balanceMinorUnits) {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(respond(request, balanceMinorUnits)))
+                .build();
+        StarlingReactiveApiClient client = new StarlingReactiveApiClient(webClient, new StarlingTimeouts(), RetryRegistry.ofDefaults());
+        RoundUpMetrics metrics = new RoundUpMetrics(new StaticListableBeanFactory(Map.of("meterRegistry", new SimpleMeterRegistry()))
+                .getBeanProvider(MeterRegistry.class));
+        return new ReactiveRoundUpProcessor(client, roundUpRequestRepository, mock(RoundUpStatusCache.class), mock(RoundUpStatusNotifier.class),
+                mock(RoundUpGate.class), metrics);
+    }
+
+    private ClientResponse respond(ClientRequest request, long balanceMinorUnits) {
+        methods.add(request.method());
+        String path = request.url().getPath();
+        String body;
+        if (path.endsWith("/settled-transactions-between")) {
+            body = FEED;
+        } else if (path.endsWith("/balance")) {
+            body = "{\"effectiveBalance\":{\"currency\":\"GBP\",\"minorUnits\":" + balanceMinorUnits + "}}";
+        } else {
+            body = "{\"success\":true}";
+        }
+        return ClientResponse.create(HttpStatus.OK)
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(UTF_8))))
+                .build();
+    }
+}
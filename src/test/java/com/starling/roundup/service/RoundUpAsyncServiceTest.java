@@ -0,0 +1,183 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.client.StarlingAccountApiClient;
+import com.starling.roundup.client.StarlingGoalsApiClient;
+import com.starling.roundup.client.StarlingTransactionApiClient;
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.exception.StarlingApiException;
+import com.starling.roundup.model.common.Amount;
+import com.starling.roundup.model.response.StarlingBalanceResponse;
+import com.starling.roundup.model.response.StreamedFeedItem;
+import com.starling.roundup.repository.RoundUpRequestRepository;
+import com.starling.roundup.util.CurrencyCodes;
+import com.starling.roundup.util.CurrencyConverter;
+import com.starling.roundup.util.WeeklyRoundUps;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.starling.roundup.model.response.TransactionDirection.OUT;
+import static com.starling.roundup.util.LoggingUtils.REQUEST_ID;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RoundUpAsyncServiceTest {
+
+    private static final String TOKEN = "token";
+    private static final String ACCOUNT_UID = "account-uid";
+    private static final String GOAL_UID = "goal-uid";
+    private static final LocalDate WEEK = LocalDate.of(2024, 1, 1);
+    private static final String FIRST_SLICE_START = "2024-01-01T00:00:00.000Z";
+
+    private final StarlingAccountApiClient accountsApiClient = mock(StarlingAccountApiClient.class);
+    private final StarlingGoalsApiClient goalsApiClient = mock(StarlingGoalsApiClient.class);
+    private final StarlingTransactionApiClient transactionApiClient = mock(StarlingTransactionApiClient.class);
+    private final RoundUpRequestRepository roundUpRequestRepository = mock(RoundUpRequestRepository.class);
+    private final ThreadPoolTaskExecutor feedSliceExecutor = new ThreadPoolTaskExecutor();
+    private final RoundUpAsyncService service;
+
+    RoundUpAsyncServiceTest() {
+        feedSliceExecutor.setCorePoolSize(2);
+        feedSliceExecutor.setMaxPoolSize(2);
+        feedSliceExecutor.initialize();
+        RoundUpMetrics metrics = new RoundUpMetrics(new StaticListableBeanFactory(Map.of("meterRegistry", new SimpleMeterRegistry()))
+                .getBeanProvider(MeterRegistry.class));
+        service = new RoundUpAsyncService(accountsApiClient, goalsApiClient, transactionApiClient, roundUpRequestRepository, feedSliceExecutor,
+                mock(RoundUpStatusCache.class), mock(RoundUpStatusNotifier.class), mock(RoundUpGate.class), metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        feedSliceExecutor.shutdown();
+    }
+
+    @Test
+    void rangeMovesEveryClaimedWeekWithOneTransfer() {
+        ReflectionTestUtils.setField(service, "combinedRangeFetch", true);
+        LocalDate secondWeek = WEEK.plusWeeks(1);
+        LocalDate emptyWeek = WEEK.plusWeeks(2);
+        Map<LocalDate, String> claimedWeeks = new LinkedHashMap<>();
+        claimedWeeks.put(WEEK, "request-1");
+        claimedWeeks.put(secondWeek, "request-2");
+        claimedWeeks.put(emptyWeek, "request-3");
+        List<String> requestIdsLogged = new ArrayList<>();
+        when(transactionApiClient.streamTransactionsBetween(eq(TOKEN), eq(ACCOUNT_UID), anyString(), eq("2024-01-01T00:00:00.000Z"),
+                eq("2024-01-21T00:00:00.000Z"), any())).thenAnswer(invocation -> {
+                    requestIdsLogged.add(MDC.get(REQUEST_ID));
+                    Supplier<WeeklyRoundUps> collectorFactory = invocation.getArgument(5);
+                    WeeklyRoundUps weeklyRoundUps = collectorFactory.get();
+                    weeklyRoundUps.accept(item("2024-01-02T09:00:00.000Z", 435));
+                    weeklyRoundUps.accept(item("2024-01-09T09:00:00.000Z", 210));
+                    weeklyRoundUps.accept(item("2024-01-10T09:00:00.000Z", 199));
+                    return weeklyRoundUps;
+                });
+        when(accountsApiClient.getAccountBalance(TOKEN, ACCOUNT_UID)).thenReturn(balance(10_000));
+
+        service.processRoundUpRangeAsync(TOKEN, ACCOUNT_UID, "****", GOAL_UID, claimedWeeks);
+
+        assertEquals(List.of("request-1"), requestIdsLogged);
+        assertNull(MDC.get(REQUEST_ID));
+        verify(goalsApiClient).transferToSavingsGoal(eq(TOKEN), eq(ACCOUNT_UID), eq(GOAL_UID), eq(65L + 90 + 1), anyString());
+        String rateVersion = CurrencyConverter.currentRates().getVersion();
+        verify(roundUpRequestRepository).updateStatusAndAmountByAccountAndWeek(ACCOUNT_UID, WEEK, Status.COMPLETED, 65, rateVersion);
+        verify(roundUpRequestRepository).updateStatusAndAmountByAccountAndWeek(ACCOUNT_UID, secondWeek, Status.COMPLETED, 91, rateVersion);
+        verify(roundUpRequestRepository).updateStatusAndAmountByAccountAndWeek(ACCOUNT_UID, emptyWeek, Status.FAILED, 0, null);
+    }
+
+    @Test
+    void rangeWithoutEnoughMoneyFailsEveryWeek() {
+        ReflectionTestUtils.setField(service, "combinedRangeFetch", true);
+        LocalDate secondWeek = WEEK.plusWeeks(1);
+        Map<LocalDate, String> claimedWeeks = new LinkedHashMap<>();
+        claimedWeeks.put(WEEK, "request-1");
+        claimedWeeks.put(secondWeek, "request-2");
+        when(transactionApiClient.streamTransactionsBetween(eq(TOKEN), eq(ACCOUNT_UID), anyString(), anyString(), anyString(), any()))
+                .thenAnswer(invocation -> {
+                    Supplier<WeeklyRoundUps> collectorFactory = invocation.getArgument(5);
+                    WeeklyRoundUps weeklyRoundUps = collectorFactory.get();
+                    weeklyRoundUps.accept(item("2024-01-02T09:00:00.000Z", 435));
+                    weeklyRoundUps.accept(item("2024-01-09T09:00:00.000Z", 210));
+                    return weeklyRoundUps;
+                });
+        when(accountsApiClient.getAccountBalance(TOKEN, ACCOUNT_UID)).thenReturn(balance(100));
+
+        service.processRoundUpRangeAsync(TOKEN, ACCOUNT_UID, "****", GOAL_UID, claimedWeeks);
+
+        verify(goalsApiClient, never()).transferToSavingsGoal(anyString(), anyString(), anyString(), anyLong(), anyString());
+        verify(roundUpRequestRepository).updateStatusAndAmountByAccountAndWeek(ACCOUNT_UID, WEEK, Status.FAILED, 0, null);
+        verify(roundUpRequestRepository).updateStatusAndAmountByAccountAndWeek(ACCOUNT_UID, secondWeek, Status.FAILED, 0, null);
+    }
+
+    @Test
+    void failedSliceCancelsTheOthers() throws InterruptedException {
+        ReflectionTestUtils.setField(service, "feedSliceHours", 24);
+        AtomicInteger slowSlicesStarted = new AtomicInteger();
+        AtomicInteger slowSlicesInterrupted = new AtomicInteger();
+        CountDownLatch slowSliceRunning = new CountDownLatch(1);
+        when(transactionApiClient.streamTransactionsBetween(eq(TOKEN), eq(ACCOUNT_UID), anyString(), anyString(), anyString(), any()))
+                .thenAnswer(invocation -> {
+                    if (FIRST_SLICE_START.equals(invocation.getArgument(3))) {
+                        slowSliceRunning.await();
+                        throw new StarlingApiException("Starling is down");
+                    }
+                    slowSlicesStarted.incrementAndGet();
+                    slowSliceRunning.countDown();
+                    try {
+                        // Stands in for a slow feed, only returns when the slice is cancelled
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException e) {
+                        slowSlicesInterrupted.incrementAndGet();
+                    }
+                    throw new StarlingApiException("Interrupted");
+                });
+
+        service.processRoundUp(TOKEN, "request-id", ACCOUNT_UID, "****", GOAL_UID, WEEK, "transfer-uid");
+
+        feedSliceExecutor.shutdown();
+        assertTrue(feedSliceExecutor.getThreadPoolExecutor().awaitTermination(5, SECONDS));
+        // Every slice that was running when the first one failed was interrupted, the queued ones never ran
+        assertEquals(slowSlicesStarted.get(), slowSlicesInterrupted.get());
+        assertTrue(slowSlicesStarted.get() < 5, "slices started: " + slowSlicesStarted.get());
+        verify(roundUpRequestRepository).updateStatusAndAmountByAccountAndWeek(ACCOUNT_UID, WEEK, Status.FAILED, 0, null);
+        verify(goalsApiClient, never()).transferToSavingsGoal(anyString(), anyString(), anyString(), anyLong(), anyString());
+    }
+
+    private static StreamedFeedItem item(String transactionTime, long minorUnits) {
+        StreamedFeedItem item = new StreamedFeedItem();
+        item.setTransactionTime(transactionTime);
+        item.setDirection(OUT);
+        item.setCurrencyCode(CurrencyCodes.GBP);
+        item.setMinorUnits(minorUnits);
+        return item;
+    }
+
+    private static StarlingBalanceResponse balance(long minorUnits) {
+        StarlingBalanceResponse balance = new StarlingBalanceResponse();
+        balance.setEffectiveBalance(new Amount("GBP", minorUnits));
+        return balance;
+    }
+}
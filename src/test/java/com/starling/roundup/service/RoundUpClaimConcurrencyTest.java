@@ -0,0 +1,169 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.entity.RoundUpRequest;
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.lock.LockProvider;
+import com.starling.roundup.model.response.RoundUpBatchItemResponse;
+import com.starling.roundup.model.response.StatusResponse;
+import com.starling.roundup.repository.RoundUpRequestRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.client.RedisConnectionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Claims the same account and week from many threads at once in database mode, and in gate mode with Redis down,
+ * against the H2 database, with the processing itself mocked out.
+ */
+@SpringBootTest
+@ActiveProfiles("single-node")
+class RoundUpClaimConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final LocalDate WEEK = LocalDate.of(2024, 1, 1);
+
+    @Autowired
+    private RoundUpRequestRepository roundUpRequestRepository;
+    @Autowired
+    private LockProvider lockProvider;
+    @Autowired
+    private RoundUpStatusCache roundUpStatusCache;
+    @Autowired
+    private RoundUpGate roundUpGate;
+    @Autowired
+    private RoundUpMetrics roundUpMetrics;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final RoundUpAsyncService roundUpAsyncService = mock(RoundUpAsyncService.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    private RoundUpRequestRepository repository;
+    private RoundUpService service;
+    private String accountUid;
+
+    @BeforeEach
+    void setUp() {
+        // Every call goes to the real repository unless a test says otherwise
+        repository = mock(RoundUpRequestRepository.class, delegatesTo(roundUpRequestRepository));
+        service = new RoundUpService(repository, roundUpAsyncService, roundUpAsyncService, lockProvider, roundUpStatusCache,
+                roundUpGate, roundUpMetrics, transactionTemplate);
+        ReflectionTestUtils.setField(service, "idempotencyMode", "database");
+        accountUid = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void onlyOneThreadClaimsANewWeek() throws Exception {
+        Map<StatusResponse, Long> outcomes = initiateFromEveryThread();
+
+        assertEquals(Map.of(StatusResponse.IN_PROGRESS, 1L, StatusResponse.ALREADY_IN_PROGRESS, (long) THREADS - 1), outcomes);
+        verify(roundUpAsyncService, times(1)).processRoundUpAsync(anyString(), anyString(), anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void onlyOneThreadRetriesAFailedWeek() throws Exception {
+        initiateRoundUp();
+        roundUpRequestRepository.updateStatusAndAmountByAccountAndWeek(accountUid, WEEK, Status.FAILED, 0, null);
+
+        Map<StatusResponse, Long> outcomes = initiateFromEveryThread();
+
+        assertEquals(Map.of(StatusResponse.IN_PROGRESS, 1L, StatusResponse.ALREADY_IN_PROGRESS, (long) THREADS - 1), outcomes);
+        verify(roundUpAsyncService, times(2)).processRoundUpAsync(anyString(), anyString(), anyString(), anyString(), anyString(), any());
+        assertEquals(Status.IN_PROGRESS, roundUpRequestRepository.findByAccountIdAndWeekCommencing(accountUid, WEEK).orElseThrow().getStatus());
+    }
+
+    @Test
+    void staleSnapshotIsAnsweredWithTheCurrentRow() {
+        initiateRoundUp();
+        RoundUpRequest claimed = roundUpRequestRepository.findByAccountIdAndWeekCommencing(accountUid, WEEK).orElseThrow();
+        roundUpRequestRepository.updateStatusAndAmountByAccountAndWeek(accountUid, WEEK, Status.COMPLETED, 135, "v1");
+
+        // The batch loaded the request before it was completed, once as FAILED and once as IN_PROGRESS
+        for (Status readAs : List.of(Status.FAILED, Status.IN_PROGRESS)) {
+            RoundUpRequest stale = new RoundUpRequest(claimed.getRequestId(), accountUid, WEEK, readAs, 0, null, claimed.getVersion());
+            doReturn(List.of(stale)).when(repository).findByAccountIdInAndWeekCommencingIn(any(), any());
+
+            RoundUpBatchItemResponse item = service.initiateRoundUpBatch("token", List.of(batchItem())).getResults().get(0);
+
+            assertEquals(StatusResponse.ALREADY_COMPLETED, item.getStatus(), readAs.name());
+            assertEquals("135", item.getRoundUpAmount(), readAs.name());
+        }
+    }
+
+    @Test
+    void claimsThroughTheDatabaseWhenTheGateIsDown() throws Exception {
+        RoundUpGate unreachableGate = mock(RoundUpGate.class);
+        when(unreachableGate.tryEnter(anyString(), any())).thenThrow(new RedisConnectionException("Unable to connect to Redis server"));
+        service = new RoundUpService(repository, roundUpAsyncService, roundUpAsyncService, lockProvider, roundUpStatusCache,
+                unreachableGate, roundUpMetrics, transactionTemplate);
+        ReflectionTestUtils.setField(service, "idempotencyMode", "gate");
+
+        Map<StatusResponse, Long> outcomes = initiateFromEveryThread();
+
+        assertEquals(Map.of(StatusResponse.IN_PROGRESS, 1L, StatusResponse.ALREADY_IN_PROGRESS, (long) THREADS - 1), outcomes);
+        verify(roundUpAsyncService, times(1)).processRoundUpAsync(anyString(), anyString(), anyString(), anyString(), anyString(), any());
+        assertEquals(Status.IN_PROGRESS, roundUpRequestRepository.findByAccountIdAndWeekCommencing(accountUid, WEEK).orElseThrow().getStatus());
+    }
+
+    private Map<StatusResponse, Long> initiateFromEveryThread() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<StatusResponse>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Callable<StatusResponse> claim = () -> {
+                start.await();
+                return initiateRoundUp();
+            };
+            results.add(executor.submit(claim));
+        }
+        start.countDown();
+        List<StatusResponse> outcomes = new ArrayList<>();
+        for (Future<StatusResponse> result : results) {
+            outcomes.add(result.get());
+        }
+        return outcomes.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+
+    private StatusResponse initiateRoundUp() {
+        return service.initiateRoundUp("token", accountUid, "****", "goal", WEEK).getBody().getStatus();
+    }
+
+    private com.starling.roundup.model.request.RoundUpRequest batchItem() {
+        com.starling.roundup.model.request.RoundUpRequest roundUp = new com.starling.roundup.model.request.RoundUpRequest();
+        roundUp.setAccountUid(accountUid);
+        roundUp.setSavingsGoalUid("goal");
+        roundUp.setWeekCommencing(WEEK.toString());
+        return roundUp;
+    }
+}
@@ -0,0 +1,175 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.service.RoundUpStatusCache.CachedStatus;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.config.Config;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the gate against an embedded Redis, and without Redis as on the single-node profile. Both must behave the same.
+ */
+class RoundUpGateTest {
+
+    private static final LocalDate WEEK = LocalDate.of(2025, 3, 3);
+    private static final Optional<CachedStatus> IN_PROGRESS = Optional.of(new CachedStatus(Status.IN_PROGRESS, 0));
+
+    private static RedisServer redisServer;
+    private static RedissonClient redisson;
+
+    private final String accountId = UUID.randomUUID().toString();
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + port);
+        redisson = Redisson.create(config);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redisson.shutdown();
+        redisServer.stop();
+    }
+
+    @Test
+    void scriptLetsTheFirstCallerThroughAndSetsTheInProgressTtl() {
+        RoundUpGate gate = gate(redisson, Duration.ofMinutes(30));
+
+        assertEquals(Optional.empty(), gate.tryEnter(accountId, WEEK));
+        assertEquals(IN_PROGRESS, gate.tryEnter(accountId, WEEK));
+
+        long ttlMillis = redisson.getBucket("roundup-state:" + accountId + ":" + WEEK, StringCodec.INSTANCE).remainTimeToLive();
+        assertTrue(ttlMillis > Duration.ofMinutes(29).toMillis() && ttlMillis <= Duration.ofMinutes(30).toMillis(), "TTL " + ttlMillis);
+    }
+
+    @Test
+    void scriptLetsOnlyOneOfManyCallersThrough() throws Exception {
+        assertEquals(1, callersThrough(gate(redisson, Duration.ofMinutes(30))));
+    }
+
+    @Test
+    void completedIsReturnedWithItsAmount() {
+        RoundUpGate gate = gate(redisson, Duration.ofMinutes(30));
+        gate.tryEnter(accountId, WEEK);
+
+        gate.record(accountId, WEEK, Status.COMPLETED, 158);
+
+        assertEquals(Optional.of(new CachedStatus(Status.COMPLETED, 158)), gate.tryEnter(accountId, WEEK));
+    }
+
+    @Test
+    void failedRoundUpReleasesTheGate() {
+        RoundUpGate gate = gate(redisson, Duration.ofMinutes(30));
+        gate.tryEnter(accountId, WEEK);
+
+        gate.record(accountId, WEEK, Status.FAILED, 0);
+
+        // The retry gets through, and holds the gate again
+        assertEquals(Optional.empty(), gate.tryEnter(accountId, WEEK));
+        assertEquals(IN_PROGRESS, gate.tryEnter(accountId, WEEK));
+    }
+
+    @Test
+    void inProgressExpires() throws InterruptedException {
+        RoundUpGate gate = gate(redisson, Duration.ofMillis(200));
+        gate.tryEnter(accountId, WEEK);
+
+        Thread.sleep(400);
+
+        assertEquals(Optional.empty(), gate.tryEnter(accountId, WEEK));
+    }
+
+    @Test
+    void localGateLetsOnlyOneOfManyCallersThrough() throws Exception {
+        assertEquals(1, callersThrough(gate(null, Duration.ofMinutes(30))));
+    }
+
+    @Test
+    void localGateRecordsAndReleasesLikeRedis() {
+        RoundUpGate gate = gate(null, Duration.ofMinutes(30));
+
+        assertEquals(Optional.empty(), gate.tryEnter(accountId, WEEK));
+        assertEquals(IN_PROGRESS, gate.tryEnter(accountId, WEEK));
+        gate.record(accountId, WEEK, Status.FAILED, 0);
+        assertEquals(Optional.empty(), gate.tryEnter(accountId, WEEK));
+        gate.record(accountId, WEEK, Status.COMPLETED, 158);
+        assertEquals(Optional.of(new CachedStatus(Status.COMPLETED, 158)), gate.tryEnter(accountId, WEEK));
+    }
+
+    @Test
+    void localInProgressExpiresButCompletedIsKept() throws InterruptedException {
+        RoundUpGate gate = gate(null, Duration.ofMillis(200));
+        String completedAccountId = UUID.randomUUID().toString();
+        gate.tryEnter(accountId, WEEK);
+        gate.tryEnter(completedAccountId, WEEK);
+        gate.record(completedAccountId, WEEK, Status.COMPLETED, 158);
+
+        Thread.sleep(400);
+
+        assertEquals(Optional.empty(), gate.tryEnter(accountId, WEEK));
+        assertEquals(Optional.of(new CachedStatus(Status.COMPLETED, 158)), gate.tryEnter(completedAccountId, WEEK));
+    }
+
+    private long callersThrough(RoundUpGate gate) throws Exception {
+        int callers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<CachedStatus>>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Callable<Optional<CachedStatus>> enter = () -> {
+                start.await();
+                return gate.tryEnter(accountId, WEEK);
+            };
+            results.add(executor.submit(enter));
+        }
+        start.countDown();
+        long through = 0;
+        for (Future<Optional<CachedStatus>> result : results) {
+            if (result.get().isEmpty()) {
+                through++;
+            } else {
+                assertEquals(IN_PROGRESS, result.get());
+            }
+        }
+        executor.shutdown();
+        return through;
+    }
+
+    private static RoundUpGate gate(RedissonClient redisson, Duration inProgressTtl) {
+        StaticListableBeanFactory beanFactory = redisson == null ? new StaticListableBeanFactory() : new StaticListableBeanFactory(Map.of("redissonClient", redisson));
+        ObjectProvider<RedissonClient> provider = beanFactory.getBeanProvider(RedissonClient.class);
+        return new RoundUpGate(provider, inProgressTtl, Duration.ofDays(7), 1000);
+    }
+}
@@ -0,0 +1,199 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.client.StarlingServiceCredential;
+import com.starling.roundup.entity.JobState;
+import com.starling.roundup.entity.RoundUpEnrolment;
+import com.starling.roundup.entity.RoundUpJob;
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.repository.RoundUpEnrolmentRepository;
+import com.starling.roundup.repository.RoundUpJobRepository;
+import com.starling.roundup.repository.RoundUpRequestRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs queued round-up jobs against the H2 database, with the round-up itself mocked out. Each queue stands in for
+ * a separate instance, with its own worker id.
+ */
+@SpringBootTest
+@ActiveProfiles("single-node")
+class RoundUpJobQueueTest {
+
+    private static final String SERVICE_TOKEN = "service-token";
+    private static final String GOAL_UID = "goal-uid";
+    private static final LocalDate WEEK = LocalDate.of(2024, 1, 1);
+
+    @Autowired
+    private RoundUpJobRepository roundUpJobRepository;
+
+    private final RoundUpRequestRepository roundUpRequestRepository = mock(RoundUpRequestRepository.class);
+    private final RoundUpEnrolmentRepository roundUpEnrolmentRepository = mock(RoundUpEnrolmentRepository.class);
+    private final RoundUpAsyncService roundUpAsyncService = mock(RoundUpAsyncService.class);
+    private String accountUid;
+
+    @BeforeEach
+    void setUp() {
+        accountUid = UUID.randomUUID().toString();
+        when(roundUpEnrolmentRepository.findById(accountUid)).thenReturn(Optional.of(new RoundUpEnrolment(accountUid, GOAL_UID, true, Instant.now())));
+        when(roundUpRequestRepository.existsByAccountIdAndWeekCommencingAndStatus(accountUid, WEEK, Status.IN_PROGRESS)).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        roundUpJobRepository.deleteAll();
+    }
+
+    @Test
+    void onlyOneWorkerClaimsAJob() throws Exception {
+        RoundUpJob job = recordClaim(queue(Duration.ofMinutes(2)));
+        int workers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> claims = new ArrayList<>();
+        Instant now = Instant.now();
+        for (int i = 0; i < workers; i++) {
+            String workerId = "worker-" + i;
+            Callable<Integer> claim = () -> {
+                start.await();
+                return roundUpJobRepository.claim(job.getJobId(), workerId, now, now.plusSeconds(120));
+            };
+            claims.add(executor.submit(claim));
+        }
+        start.countDown();
+
+        int claimed = 0;
+        for (Future<Integer> claim : claims) {
+            claimed += claim.get();
+        }
+        executor.shutdown();
+
+        assertEquals(1, claimed);
+        assertEquals(1, roundUpJobRepository.findById(job.getJobId()).orElseThrow().getAttempts());
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndTheOldOwnerLosesIt() {
+        RoundUpJob job = recordClaim(queue(Duration.ofMinutes(2)));
+        Instant now = Instant.now();
+        assertEquals(1, roundUpJobRepository.claim(job.getJobId(), "first", now, now.plusSeconds(60)));
+
+        assertEquals(0, roundUpJobRepository.claim(job.getJobId(), "second", now.plusSeconds(30), now.plusSeconds(90)));
+        assertEquals(1, roundUpJobRepository.claim(job.getJobId(), "second", now.plusSeconds(61), now.plusSeconds(121)));
+
+        RoundUpJob taken = roundUpJobRepository.findById(job.getJobId()).orElseThrow();
+        assertEquals("second", taken.getLeaseOwner());
+        assertEquals(2, taken.getAttempts());
+        assertEquals(0, roundUpJobRepository.extendLeases(List.of(job.getJobId()), "first", now.plusSeconds(180)));
+        assertEquals(0, roundUpJobRepository.complete(job.getJobId(), "first"));
+        assertEquals(1, roundUpJobRepository.complete(job.getJobId(), "second"));
+        assertEquals(JobState.DONE, roundUpJobRepository.findById(job.getJobId()).orElseThrow().getState());
+    }
+
+    @Test
+    void rerunAfterALostLeaseReusesTheTransferUid() throws InterruptedException {
+        RoundUpJobQueue crashing = queue(Duration.ofMillis(500));
+        RoundUpJob job = recordClaim(crashing);
+        // The first instance dies part way through the round-up, its lease is never extended or released
+        doThrow(new IllegalStateException("instance died")).when(roundUpAsyncService)
+                .processRoundUp(eq(SERVICE_TOKEN), eq("request-1"), eq(accountUid), anyString(), eq(GOAL_UID), eq(WEEK), eq(job.getTransferUid()));
+        assertThrows(IllegalStateException.class, crashing::runNextJob);
+        assertFalse(queue(Duration.ofMinutes(2)).runNextJob());
+
+        Thread.sleep(700);
+        reset(roundUpAsyncService);
+        assertTrue(queue(Duration.ofMinutes(2)).runNextJob());
+
+        verify(roundUpAsyncService).processRoundUp(eq(SERVICE_TOKEN), eq("request-1"), eq(accountUid), anyString(), eq(GOAL_UID), eq(WEEK), eq(job.getTransferUid()));
+        RoundUpJob rerun = roundUpJobRepository.findById(job.getJobId()).orElseThrow();
+        assertEquals(2, rerun.getAttempts());
+        assertEquals(JobState.DONE, rerun.getState());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        RoundUpJobQueue queue = queue(Duration.ofMinutes(2));
+        RoundUpJob job = recordClaim(queue);
+        // Three earlier runs lost their lease
+        job.setAttempts(3);
+        roundUpJobRepository.save(job);
+
+        assertTrue(queue.runNextJob());
+
+        verify(roundUpAsyncService, never()).processRoundUp(anyString(), anyString(), anyString(), anyString(), anyString(), any(), anyString());
+        verify(roundUpAsyncService).updateRoundUpStatus(accountUid, WEEK, Status.FAILED, 0);
+        assertEquals(JobState.DONE, roundUpJobRepository.findById(job.getJobId()).orElseThrow().getState());
+    }
+
+    @Test
+    void accountNotEnrolledRunsWithTheClientTokenInsteadOfQueueing() {
+        RoundUpJobQueue queue = queue(Duration.ofMinutes(2));
+        when(roundUpEnrolmentRepository.findById(accountUid)).thenReturn(Optional.of(new RoundUpEnrolment(accountUid, "other-goal", true, Instant.now())));
+
+        queue.recordClaim("request-1", accountUid, GOAL_UID, WEEK);
+        queue.processRoundUpAsync("client-token", "request-1", accountUid, "****", GOAL_UID, WEEK);
+
+        assertFalse(roundUpJobRepository.existsByRequestId("request-1"));
+        verify(roundUpAsyncService).processRoundUpAsync("client-token", "request-1", accountUid, "****", GOAL_UID, WEEK);
+    }
+
+    @Test
+    void jobIsNotRunOnceEnrolmentIsWithdrawn() {
+        RoundUpJobQueue queue = queue(Duration.ofMinutes(2));
+        recordClaim(queue);
+        when(roundUpEnrolmentRepository.findById(accountUid)).thenReturn(Optional.of(new RoundUpEnrolment(accountUid, GOAL_UID, false, Instant.now())));
+
+        assertTrue(queue.runNextJob());
+
+        verify(roundUpAsyncService, never()).processRoundUp(anyString(), anyString(), anyString(), anyString(), anyString(), any(), anyString());
+        verify(roundUpAsyncService).updateRoundUpStatus(accountUid, WEEK, Status.FAILED, 0);
+    }
+
+    private RoundUpJobQueue queue(Duration lease) {
+        RoundUpJobQueue queue = new RoundUpJobQueue(roundUpJobRepository, roundUpRequestRepository, roundUpEnrolmentRepository, roundUpAsyncService,
+                new StarlingServiceCredential(SERVICE_TOKEN));
+        ReflectionTestUtils.setField(queue, "workerThreads", 4);
+        ReflectionTestUtils.setField(queue, "leaseDuration", lease);
+        ReflectionTestUtils.setField(queue, "maxAttempts", 3);
+        return queue;
+    }
+
+    private RoundUpJob recordClaim(RoundUpJobQueue queue) {
+        queue.recordClaim("request-1", accountUid, GOAL_UID, WEEK);
+        return roundUpJobRepository.findAll().stream()
+                .filter(job -> job.getRequestId().equals("request-1"))
+                .findFirst()
+                .orElseThrow();
+    }
+}
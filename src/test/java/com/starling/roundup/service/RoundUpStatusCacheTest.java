@@ -0,0 +1,138 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.service.RoundUpStatusCache.CachedStatus;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RoundUpStatusCacheTest {
+
+    private static final LocalDate WEEK = LocalDate.of(2025, 3, 3);
+
+    private static RedisServer redisServer;
+    // One client per instance of the service, as each would have its own connection and listeners
+    private static RedissonClient firstNode;
+    private static RedissonClient secondNode;
+
+    // Unique per test, the shared map outlives each test
+    private final String accountId = UUID.randomUUID().toString();
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        firstNode = redisson(port);
+        secondNode = redisson(port);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        firstNode.shutdown();
+        secondNode.shutdown();
+        redisServer.stop();
+    }
+
+    @Test
+    void readsThroughToTheStatusWrittenByAnotherNode() {
+        RoundUpStatusCache writer = cache(firstNode, Duration.ofMinutes(10));
+        RoundUpStatusCache reader = cache(secondNode, Duration.ofMinutes(10));
+
+        assertEquals(Optional.empty(), reader.get(accountId, WEEK));
+        writer.put(accountId, WEEK, Status.COMPLETED, 158);
+
+        // The miss was not cached locally, so the second read goes to Redis
+        assertEquals(Optional.of(new CachedStatus(Status.COMPLETED, 158)), reader.get(accountId, WEEK));
+    }
+
+    @Test
+    void updateOnAnotherNodeInvalidatesTheLocalCopy() throws InterruptedException {
+        RoundUpStatusCache processingNode = cache(firstNode, Duration.ofMinutes(10));
+        RoundUpStatusCache pollingNode = cache(secondNode, Duration.ofMinutes(10));
+        processingNode.put(accountId, WEEK, Status.IN_PROGRESS, 0);
+        assertEquals(Optional.of(new CachedStatus(Status.IN_PROGRESS, 0)), pollingNode.get(accountId, WEEK));
+
+        processingNode.put(accountId, WEEK, Status.COMPLETED, 158);
+
+        // The invalidation arrives by pub/sub, well before the local copy would expire
+        awaitStatus(pollingNode, new CachedStatus(Status.COMPLETED, 158));
+    }
+
+    @Test
+    void putIfAbsentDoesNotReplaceANewerStatus() {
+        RoundUpStatusCache cache = cache(firstNode, Duration.ofMinutes(10));
+        cache.put(accountId, WEEK, Status.COMPLETED, 158);
+
+        // A status read from the database before the round-up completed
+        cache.putIfAbsent(accountId, WEEK, Status.IN_PROGRESS, 0);
+
+        assertEquals(Optional.of(new CachedStatus(Status.COMPLETED, 158)), cache(secondNode, Duration.ofMinutes(10)).get(accountId, WEEK));
+    }
+
+    @Test
+    void localCopyExpiresWhenTheInvalidationIsMissed() throws InterruptedException {
+        // Without Redis nothing invalidates the local copy, as for an instance that was disconnected from Redis
+        RoundUpStatusCache cache = cache(null, Duration.ofMillis(200));
+        cache.put(accountId, WEEK, Status.IN_PROGRESS, 0);
+        assertEquals(Optional.of(new CachedStatus(Status.IN_PROGRESS, 0)), cache.get(accountId, WEEK));
+
+        Thread.sleep(400);
+
+        // The caller then reads the COMPLETED status from the database rather than the stale IN_PROGRESS
+        assertEquals(Optional.empty(), cache.get(accountId, WEEK));
+    }
+
+    @Test
+    void sharedEntryExpiresAfterTheSharedTtl() throws InterruptedException {
+        RoundUpStatusCache writer = new RoundUpStatusCache(provider(firstNode), 100, Duration.ofMinutes(10), Duration.ofMillis(200));
+        writer.put(accountId, WEEK, Status.IN_PROGRESS, 0);
+
+        Thread.sleep(400);
+
+        assertEquals(Optional.empty(), cache(secondNode, Duration.ofMinutes(10)).get(accountId, WEEK));
+    }
+
+    private void awaitStatus(RoundUpStatusCache cache, CachedStatus expected) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(5);
+        while (!cache.get(accountId, WEEK).equals(Optional.of(expected)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Optional.of(expected), cache.get(accountId, WEEK));
+    }
+
+    private static RoundUpStatusCache cache(RedissonClient redisson, Duration timeToLive) {
+        return new RoundUpStatusCache(provider(redisson), 100, timeToLive, Duration.ofDays(7));
+    }
+
+    private static ObjectProvider<RedissonClient> provider(RedissonClient redisson) {
+        StaticListableBeanFactory beanFactory = redisson == null ? new StaticListableBeanFactory() : new StaticListableBeanFactory(Map.of("redissonClient", redisson));
+        return beanFactory.getBeanProvider(RedissonClient.class);
+    }
+
+    private static RedissonClient redisson(int port) {
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + port);
+        return Redisson.create(config);
+    }
+}
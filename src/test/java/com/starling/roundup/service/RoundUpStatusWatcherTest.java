@@ -0,0 +1,61 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.event.RoundUpStatusChangedEvent;
+import com.starling.roundup.model.response.RoundUpStatusResponse;
+import com.starling.roundup.model.response.StatusResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RoundUpStatusWatcherTest {
+
+    private static final String ACCOUNT_ID = "account-id";
+    private static final LocalDate WEEK_COMMENCING = LocalDate.of(2025, 3, 3);
+
+    private final RoundUpService roundUpService = mock(RoundUpService.class);
+    private final RoundUpStatusWatcher watcher = new RoundUpStatusWatcher(roundUpService, Duration.ofSeconds(30));
+
+    @Test
+    void longPollCompletesWhenTheRoundUpFinishes() {
+        when(roundUpService.checkRoundUpStatus(ACCOUNT_ID, "masked", WEEK_COMMENCING))
+                .thenReturn(ResponseEntity.ok(new RoundUpStatusResponse(StatusResponse.IN_PROGRESS)));
+
+        DeferredResult<ResponseEntity<RoundUpStatusResponse>> result = watcher.awaitStatus(ACCOUNT_ID, "masked", WEEK_COMMENCING, Duration.ofSeconds(10));
+        assertFalse(result.hasResult());
+
+        watcher.onStatusChanged(new RoundUpStatusChangedEvent(ACCOUNT_ID, WEEK_COMMENCING, Status.COMPLETED, 158));
+
+        ResponseEntity<?> response = assertInstanceOf(ResponseEntity.class, result.getResult());
+        RoundUpStatusResponse status = assertInstanceOf(RoundUpStatusResponse.class, response.getBody());
+        assertEquals(StatusResponse.COMPLETED, status.getStatus());
+        assertEquals("158", status.getRoundUpAmount());
+    }
+
+    @Test
+    void longPollReturnsStraightAwayWhenAlreadyFinished() {
+        when(roundUpService.checkRoundUpStatus(ACCOUNT_ID, "masked", WEEK_COMMENCING))
+                .thenReturn(ResponseEntity.ok(new RoundUpStatusResponse(StatusResponse.FAILED)));
+
+        DeferredResult<ResponseEntity<RoundUpStatusResponse>> result = watcher.awaitStatus(ACCOUNT_ID, "masked", WEEK_COMMENCING, Duration.ofSeconds(10));
+
+        assertTrue(result.hasResult());
+    }
+
+    @Test
+    void eventsAreEncodedForPubSub() {
+        RoundUpStatusChangedEvent event = new RoundUpStatusChangedEvent("11111111-2222-3333-4444-555555555555", WEEK_COMMENCING, Status.FAILED, 0);
+
+        assertEquals(event, RoundUpStatusChangedEvent.decode(event.encode()));
+    }
+}
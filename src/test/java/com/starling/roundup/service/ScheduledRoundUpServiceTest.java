@@ -0,0 +1,146 @@
+package com.starling.roundup.service;
+
+import com.starling.roundup.client.StarlingServiceCredential;
+import com.starling.roundup.entity.RoundUpEnrolment;
+import com.starling.roundup.entity.ScheduledRun;
+import com.starling.roundup.entity.Status;
+import com.starling.roundup.lock.LockProvider;
+import com.starling.roundup.model.response.RoundUpStatusResponse;
+import com.starling.roundup.model.response.StatusResponse;
+import com.starling.roundup.repository.RoundUpEnrolmentRepository;
+import com.starling.roundup.repository.ScheduledRunRepository;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScheduledRoundUpServiceTest {
+
+    private static final String TOKEN = "service-token";
+    private static final LocalDate WEEK = LocalDate.of(2024, 1, 1);
+
+    private final RoundUpEnrolmentRepository enrolmentRepository = mock(RoundUpEnrolmentRepository.class);
+    private final ScheduledRunRepository scheduledRunRepository = mock(ScheduledRunRepository.class);
+    private final RoundUpService roundUpService = mock(RoundUpService.class);
+    private final LockProvider lockProvider = mock(LockProvider.class);
+    // Rows of round_up_scheduled_runs, as the repository would hold them
+    private final Map<LocalDate, ScheduledRun> savedRuns = new ConcurrentHashMap<>();
+    private final List<RoundUpEnrolment> enrolments = new ArrayList<>();
+    private ScheduledRoundUpService service;
+
+    @BeforeEach
+    void setUp() {
+        for (String accountUid : List.of("a1", "a2", "a3", "a4", "a5")) {
+            enrolments.add(new RoundUpEnrolment(accountUid, "goal-" + accountUid, true, Instant.now()));
+        }
+        when(enrolmentRepository.findByActiveTrueAndAccountUidGreaterThanOrderByAccountUidAsc(anyString(), any(Limit.class)))
+                .thenAnswer(invocation -> {
+                    String after = invocation.getArgument(0);
+                    Limit limit = invocation.getArgument(1);
+                    return enrolments.stream().filter(enrolment -> enrolment.getAccountUid().compareTo(after) > 0)
+                            .limit(limit.max()).toList();
+                });
+        when(scheduledRunRepository.findById(WEEK)).thenAnswer(invocation -> Optional.ofNullable(savedRuns.get(WEEK)).map(this::copy));
+        when(scheduledRunRepository.save(any(ScheduledRun.class))).thenAnswer(invocation -> {
+            ScheduledRun run = invocation.getArgument(0);
+            savedRuns.put(run.getWeekCommencing(), copy(run));
+            return run;
+        });
+        when(lockProvider.tryLock("roundup-schedule:" + WEEK)).thenReturn(Optional.of(() -> { }));
+
+        service = new ScheduledRoundUpService(enrolmentRepository, scheduledRunRepository, roundUpService, lockProvider,
+                new StarlingServiceCredential(TOKEN), RateLimiterRegistry.ofDefaults(), 2);
+        ReflectionTestUtils.setField(service, "pageSize", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void runsEveryPageAndCountsTheOutcomes() {
+        roundUpFinishesWith("a1", StatusResponse.COMPLETED);
+        roundUpFinishesWith("a2", StatusResponse.ALREADY_COMPLETED);
+        roundUpFinishesWith("a3", StatusResponse.FAILED);
+        roundUpFinishesWith("a4", StatusResponse.COMPLETED);
+        when(roundUpService.runRoundUp(eq(TOKEN), eq("a5"), anyString(), eq("goal-a5"), eq(WEEK)))
+                .thenThrow(new IllegalStateException("boom"));
+
+        service.run(WEEK);
+
+        ScheduledRun run = savedRuns.get(WEEK);
+        assertEquals(Status.COMPLETED, run.getStatus());
+        assertEquals("a5", run.getLastAccountUid());
+        assertEquals(5, run.getProcessed());
+        assertEquals(2, run.getCompleted());
+        assertEquals(2, run.getFailed());
+        assertEquals(1, run.getSkipped());
+        verify(enrolmentRepository).findByActiveTrueAndAccountUidGreaterThanOrderByAccountUidAsc("a4", Limit.of(2));
+    }
+
+    @Test
+    void savesTheRunBeforeTheFirstPageSoACrashIsResumed() {
+        List<ScheduledRun> savedWhenFirstRoundUpStarted = new ArrayList<>();
+        when(roundUpService.runRoundUp(eq(TOKEN), anyString(), anyString(), anyString(), eq(WEEK))).thenAnswer(invocation -> {
+            if (savedWhenFirstRoundUpStarted.isEmpty()) {
+                savedWhenFirstRoundUpStarted.add(copy(savedRuns.get(WEEK)));
+            }
+            return new RoundUpStatusResponse(StatusResponse.COMPLETED);
+        });
+
+        service.run(WEEK);
+
+        ScheduledRun run = savedWhenFirstRoundUpStarted.get(0);
+        assertEquals(Status.IN_PROGRESS, run.getStatus());
+        assertNull(run.getLastAccountUid());
+        assertEquals(0, run.getProcessed());
+    }
+
+    @Test
+    void resumesAfterTheLastSavedPage() {
+        savedRuns.put(WEEK, new ScheduledRun(WEEK, Status.IN_PROGRESS, "a2", 2, 1, 0, 1, Instant.now(), null));
+        when(roundUpService.runRoundUp(eq(TOKEN), anyString(), anyString(), anyString(), eq(WEEK)))
+                .thenReturn(new RoundUpStatusResponse(StatusResponse.COMPLETED));
+
+        service.run(WEEK);
+
+        ScheduledRun run = savedRuns.get(WEEK);
+        assertEquals(Status.COMPLETED, run.getStatus());
+        assertEquals(5, run.getProcessed());
+        assertEquals(4, run.getCompleted());
+        assertEquals(1, run.getSkipped());
+        verify(roundUpService, never()).runRoundUp(eq(TOKEN), eq("a1"), anyString(), anyString(), eq(WEEK));
+        verify(roundUpService, never()).runRoundUp(eq(TOKEN), eq("a2"), anyString(), anyString(), eq(WEEK));
+    }
+
+    private void roundUpFinishesWith(String accountUid, StatusResponse status) {
+        when(roundUpService.runRoundUp(eq(TOKEN), eq(accountUid), anyString(), eq("goal-" + accountUid), eq(WEEK)))
+                .thenReturn(new RoundUpStatusResponse(status));
+    }
+
+    private ScheduledRun copy(ScheduledRun run) {
+        return new ScheduledRun(run.getWeekCommencing(), run.getStatus(), run.getLastAccountUid(), run.getProcessed(), run.getCompleted(),
+                run.getFailed(), run.getSkipped(), run.getStartedAt(), run.getFinishedAt());
+    }
+}
@@ -0,0 +1,45 @@
+package com.starling.roundup.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CurrencyCodesTest {
+
+    @Test
+    void packsEveryCodeToADistinctIndex() {
+        Set<Integer> codes = new HashSet<>();
+        for (char first = 'A'; first <= 'Z'; first++) {
+            for (char second = 'A'; second <= 'Z'; second++) {
+                for (char third = 'A'; third <= 'Z'; third++) {
+                    String currency = new String(new char[]{first, second, third});
+                    int code = CurrencyCodes.pack(currency);
+                    assertTrue(code >= 0 && code <= CurrencyCodes.MAX_CODE, currency);
+                    assertEquals(currency, CurrencyCodes.unpack(code));
+                    codes.add(code);
+                }
+            }
+        }
+        assertEquals(26 * 26 * 26, codes.size());
+    }
+
+    @Test
+    void packsFromACharBuffer() {
+        char[] buffer = "{\"currency\":\"USD\"}".toCharArray();
+
+        assertEquals(CurrencyCodes.pack("USD"), CurrencyCodes.pack(buffer, 13, 3));
+    }
+
+    @Test
+    void anythingElseIsUnknown() {
+        assertEquals(CurrencyCodes.UNKNOWN, CurrencyCodes.pack((String) null));
+        assertEquals(CurrencyCodes.UNKNOWN, CurrencyCodes.pack("usd"));
+        assertEquals(CurrencyCodes.UNKNOWN, CurrencyCodes.pack("GBPX"));
+        assertEquals(CurrencyCodes.UNKNOWN, CurrencyCodes.pack("G1P"));
+        assertEquals("UNKNOWN", CurrencyCodes.unpack(CurrencyCodes.UNKNOWN));
+    }
+}
@@ -0,0 +1,57 @@
+package com.starling.roundup.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CurrencyRateTableTest {
+
+    private static final String RATES = """
+            { "USD": { "conversionRateToGBP": 0.75, "decimalPlaces": 2 } }""";
+
+    @Test
+    void convertsWithTheRatesItWasBuiltFrom() throws IOException {
+        CurrencyRateTable rates = CurrencyRateTable.parse(RATES.getBytes(UTF_8));
+
+        assertEquals(1, rates.size());
+        assertEquals(926, rates.convertToGBP("test", CurrencyCodes.pack("USD"), 1_234));
+        assertEquals(0, rates.convertToGBP("test", CurrencyCodes.pack("EUR"), 1_234));
+    }
+
+    @Test
+    void findsEveryCurrencyInTheTable() throws IOException {
+        CurrencyRateTable rates = CurrencyRateTable.parse("""
+                { "USD": { "conversionRateToGBP": 0.75, "decimalPlaces": 2 },
+                  "AED": { "conversionRateToGBP": 0.2, "decimalPlaces": 2 },
+                  "ZAR": { "conversionRateToGBP": 0.05, "decimalPlaces": 2 },
+                  "JPY": { "conversionRateToGBP": 0.005, "decimalPlaces": 0 } }""".getBytes(UTF_8));
+
+        assertEquals(926, rates.convertToGBP("test", CurrencyCodes.pack("USD"), 1_234));
+        assertEquals(20, rates.convertToGBP("test", CurrencyCodes.pack("AED"), 100));
+        assertEquals(5, rates.convertToGBP("test", CurrencyCodes.pack("ZAR"), 100));
+        assertEquals(50, rates.convertToGBP("test", CurrencyCodes.pack("JPY"), 100));
+        assertEquals(0, rates.convertToGBP("test", CurrencyCodes.pack("AAA"), 100));
+        assertEquals(0, rates.convertToGBP("test", CurrencyCodes.pack("ZZZ"), 100));
+        assertEquals(0, rates.convertToGBP("test", CurrencyCodes.UNKNOWN, 100));
+    }
+
+    @Test
+    void versionDependsOnlyOnContent() throws IOException {
+        String version = CurrencyRateTable.parse(RATES.getBytes(UTF_8)).getVersion();
+
+        assertEquals(version, CurrencyRateTable.parse(RATES.getBytes(UTF_8)).getVersion());
+        assertNotEquals(version, CurrencyRateTable.parse(RATES.replace("0.75", "0.76").getBytes(UTF_8)).getVersion());
+    }
+
+    @Test
+    void rejectsCurrencyWithoutRate() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CurrencyRateTable.parse("{ \"USD\": { \"decimalPlaces\": 2 } }".getBytes(UTF_8)));
+        assertThrows(IOException.class, () -> CurrencyRateTable.parse("{ \"USD\": ".getBytes(UTF_8)));
+    }
+}
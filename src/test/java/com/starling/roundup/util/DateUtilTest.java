@@ -0,0 +1,41 @@
+package com.starling.roundup.util;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DateUtilTest {
+
+    private static final LocalDate WEEK_COMMENCING = LocalDate.of(2025, 3, 3);
+
+    @Test
+    void dailySlicesCoverTheSameWindowAsASingleCall() {
+        List<Pair<String, String>> slices = DateUtil.toStarlingWeekSlices(WEEK_COMMENCING, 24);
+
+        assertEquals(6, slices.size());
+        assertEquals(DateUtil.toStarlingDateFormat(WEEK_COMMENCING), slices.get(0).getLeft());
+        assertEquals(DateUtil.toStarlingEndDate(WEEK_COMMENCING), slices.get(slices.size() - 1).getRight());
+        for (int i = 1; i < slices.size(); i++) {
+            assertEquals(slices.get(i - 1).getRight(), slices.get(i).getLeft());
+        }
+    }
+
+    @Test
+    void lastSliceIsTruncatedToTheEndOfTheWindow() {
+        List<Pair<String, String>> slices = DateUtil.toStarlingWeekSlices(WEEK_COMMENCING, 100);
+
+        assertEquals(2, slices.size());
+        assertEquals("2025-03-07T04:00:00.000Z", slices.get(1).getLeft());
+        assertEquals("2025-03-09T00:00:00.000Z", slices.get(1).getRight());
+    }
+
+    @Test
+    void rejectsNonPositiveSliceSize() {
+        assertThrows(IllegalArgumentException.class, () -> DateUtil.toStarlingWeekSlices(WEEK_COMMENCING, 0));
+    }
+}
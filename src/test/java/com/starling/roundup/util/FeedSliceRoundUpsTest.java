@@ -0,0 +1,54 @@
+package com.starling.roundup.util;
+
+import com.starling.roundup.model.response.StreamedFeedItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.starling.roundup.model.response.TransactionDirection.OUT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FeedSliceRoundUpsTest {
+
+    private static final String MONDAY = "2024-01-01T00:00:00.000Z";
+    private static final String MONDAY_NOON = "2024-01-01T12:00:00.000Z";
+    private static final String TUESDAY = "2024-01-02T00:00:00.000Z";
+
+    @Test
+    void countsTransactionOnSharedBoundaryOnce() {
+        FeedSliceRoundUps first = new FeedSliceRoundUps("test", CurrencyConverter.currentRates(), MONDAY, MONDAY_NOON);
+        FeedSliceRoundUps second = new FeedSliceRoundUps("test", CurrencyConverter.currentRates(), MONDAY_NOON, TUESDAY);
+
+        first.accept(item("a", "2024-01-01T06:00:00.000Z", 435));
+        first.accept(item("b", MONDAY_NOON, 210));
+        second.accept(item("b", "2024-01-01T12:00:00Z", 210));
+        second.accept(item("c", "2024-01-01T18:30:00.000Z", 199));
+
+        assertEquals(65 + 90 + 1, FeedSliceRoundUps.mergeTotal(List.of(first, second)));
+    }
+
+    @Test
+    void onlyKeepsTransactionsThatMayBeInANeighbouringSlice() {
+        FeedSliceRoundUps slice = new FeedSliceRoundUps("test", CurrencyConverter.currentRates(), MONDAY, MONDAY_NOON);
+
+        slice.accept(item("a", "2024-01-01T06:00:00.000Z", 435));
+        slice.accept(item("b", "2024-01-01T07:00:00.000Z", 210));
+        slice.accept(item("c", MONDAY, 199));
+        slice.accept(item("d", null, 150));
+        slice.accept(item(null, MONDAY_NOON, 120));
+
+        assertEquals(65 + 90 + 80, slice.getTotal());
+        assertEquals(2, slice.getBoundaryRoundUps().size());
+        assertEquals(65 + 90 + 80 + 1 + 50, FeedSliceRoundUps.mergeTotal(List.of(slice)));
+    }
+
+    private static StreamedFeedItem item(String feedItemUid, String transactionTime, long minorUnits) {
+        StreamedFeedItem item = new StreamedFeedItem();
+        item.setFeedItemUid(feedItemUid);
+        item.setTransactionTime(transactionTime);
+        item.setDirection(OUT);
+        item.setCurrencyCode(CurrencyCodes.GBP);
+        item.setMinorUnits(minorUnits);
+        return item;
+    }
+}
@@ -0,0 +1,82 @@
+package com.starling.roundup.util;
+
+import com.starling.roundup.model.common.Amount;
+import com.starling.roundup.model.common.CurrencyMapping;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FixedPointRateTest {
+
+    private static final long[] EDGE_MINOR_UNITS = {
+            0, 1, -1, 2, 5, 49, 50, 51, 99, 100, 101, 149, 150, 151, 999, 1_000, 1_001, 9_999, 12_345, 20_000,
+            1_000_000, 123_456_789, Integer.MAX_VALUE, Integer.MIN_VALUE, 1L << 40, 1L << 53,
+            Long.MAX_VALUE / 10_000, Long.MAX_VALUE / 100, Long.MAX_VALUE, Long.MIN_VALUE + 1, Long.MIN_VALUE
+    };
+
+    static Stream<CurrencyMapping> mappings() {
+        return Stream.of(
+                mapping("0.75", 2), mapping("0.85", 2), mapping("0.00025", 3),
+                mapping("0.750", 2), mapping("1", 2), mapping("1.00", 0), mapping("0.5", 0), mapping("0.005", 2),
+                mapping("1.23456789", 2), mapping("0.0061234", 0), mapping("0.123456789012", 4),
+                mapping("158.5", 2), mapping("1E+3", 2), mapping("12345678.9", 3), mapping("0.0000000001", 1),
+                mapping("-0.75", 2), mapping("3", 10), mapping("0.3333333333", 10), mapping("2.5", 11),
+                mapping("92233720368547758.07", 2), mapping("0.00000000000000000001", 4));
+    }
+
+    @ParameterizedTest
+    @MethodSource("mappings")
+    void matchesBigDecimalConversionForEdgeAmounts(CurrencyMapping mapping) {
+        FixedPointRate rate = FixedPointRate.of(mapping);
+        for (long minorUnits : EDGE_MINOR_UNITS) {
+            assertEquals(CurrencyConverter.convertWithBigDecimal(minorUnits, mapping), rate.toGBPMinorUnits(minorUnits),
+                    () -> "minorUnits " + minorUnits + " at rate " + mapping.getConversionRateToGBP());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("mappings")
+    void matchesBigDecimalConversionForRandomAmounts(CurrencyMapping mapping) {
+        FixedPointRate rate = FixedPointRate.of(mapping);
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            long minorUnits = i % 2 == 0 ? random.nextInt(1_000_000) : random.nextLong() >> random.nextInt(64);
+            assertEquals(CurrencyConverter.convertWithBigDecimal(minorUnits, mapping), rate.toGBPMinorUnits(minorUnits),
+                    () -> "minorUnits " + minorUnits + " at rate " + mapping.getConversionRateToGBP());
+        }
+    }
+
+    @Test
+    void roundsHalfUpLikeBigDecimal() {
+        CurrencyMapping usd = mapping("0.75", 2);
+        FixedPointRate rate = FixedPointRate.of(usd);
+        // 0.02 USD * 0.75 = 1.5 pence, 0.06 USD * 0.75 = 4.5 pence
+        assertEquals(2, rate.toGBPMinorUnits(2));
+        assertEquals(5, rate.toGBPMinorUnits(6));
+        assertEquals(-2, rate.toGBPMinorUnits(-2));
+    }
+
+    @Test
+    void convertsCurrenciesFromCurrencyRatesJson() {
+        assertEquals(CurrencyConverter.convertWithBigDecimal(1_234, mapping("0.75", 2)),
+                CurrencyConverter.convertToGBP("test", new Amount("USD", 1_234)));
+        assertEquals(CurrencyConverter.convertWithBigDecimal(987, mapping("0.85", 2)),
+                CurrencyConverter.convertToGBP("test", new Amount("EUR", 987)));
+        assertEquals(CurrencyConverter.convertWithBigDecimal(45_678, mapping("0.00025", 3)),
+                CurrencyConverter.convertToGBP("test", new Amount("TND", 45_678)));
+        assertEquals(0, CurrencyConverter.convertToGBP("test", new Amount("XXX", 45_678)));
+    }
+
+    private static CurrencyMapping mapping(String rate, int decimalPlaces) {
+        CurrencyMapping mapping = new CurrencyMapping();
+        mapping.setConversionRateToGBP(new BigDecimal(rate));
+        mapping.setDecimalPlaces(decimalPlaces);
+        return mapping;
+    }
+}
@@ -0,0 +1,56 @@
+package com.starling.roundup.util;
+
+import com.starling.roundup.model.response.StreamedFeedItem;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static com.starling.roundup.model.response.TransactionDirection.OUT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WeeklyRoundUpsTest {
+
+    private static final LocalDate FIRST_WEEK = LocalDate.of(2024, 1, 1);
+    private static final LocalDate SECOND_WEEK = LocalDate.of(2024, 1, 8);
+
+    @Test
+    void bucketsByUtcMondayAndDropsTheRestOfSunday() {
+        WeeklyRoundUps weeklyRoundUps = new WeeklyRoundUps("test", CurrencyConverter.currentRates(), List.of(FIRST_WEEK, SECOND_WEEK));
+
+        weeklyRoundUps.accept(item("2024-01-01T00:00:00.000Z", 435));
+        // The start of the Sunday is the end of a single week fetch, so it is still counted
+        weeklyRoundUps.accept(item("2024-01-07T00:00:00.000Z", 210));
+        weeklyRoundUps.accept(item("2024-01-07T00:00:00.001Z", 199));
+        // Sunday 23:30 in UTC
+        weeklyRoundUps.accept(item("2024-01-08T00:30:00.000+01:00", 150));
+        weeklyRoundUps.accept(item("2024-01-08T00:00:00.000Z", 120));
+        // Monday 00:30 in UTC
+        weeklyRoundUps.accept(item("2024-01-07T19:30:00.000-05:00", 101));
+
+        assertEquals(Map.of(FIRST_WEEK, 65L + 90, SECOND_WEEK, 80L + 99), weeklyRoundUps.getTotals());
+    }
+
+    @Test
+    void ignoresWeeksNotAskedForAndItemsWithoutATime() {
+        WeeklyRoundUps weeklyRoundUps = new WeeklyRoundUps("test", CurrencyConverter.currentRates(), List.of(SECOND_WEEK));
+
+        weeklyRoundUps.accept(item("2024-01-03T12:00:00.000Z", 435));
+        weeklyRoundUps.accept(item("2024-01-15T12:00:00.000Z", 210));
+        weeklyRoundUps.accept(item(null, 199));
+        weeklyRoundUps.accept(item("2024-01-10T12:00:00.000Z", 150));
+
+        assertEquals(Map.of(SECOND_WEEK, 50L), weeklyRoundUps.getTotals());
+        assertEquals(1, weeklyRoundUps.getItemCount());
+    }
+
+    private static StreamedFeedItem item(String transactionTime, long minorUnits) {
+        StreamedFeedItem item = new StreamedFeedItem();
+        item.setTransactionTime(transactionTime);
+        item.setDirection(OUT);
+        item.setCurrencyCode(CurrencyCodes.GBP);
+        item.setMinorUnits(minorUnits);
+        return item;
+    }
+}